@@ -0,0 +1,154 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * OutputCapture keeps the last bytes the test thread prints to the console. The console streams
+ * are replaced once by the streams writing through to the original ones; the bytes printed by
+ * the thread between {@link #begin(int)} and {@link #end()} are also kept in a ring buffer of the
+ * fixed capacity, so the chatty test never buffers more than the capacity. The buffer is only
+ * allocated when the test prints, the silent test costs nothing.
+ *
+ * @author Dzung Nguyen
+ * @version $Id OutputCapture 2026-10-19 17:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public final class OutputCapture {
+  //~ class properties ========================================================
+  private static final ThreadLocal<RingBuffer> BUFFER = new ThreadLocal<>();
+  private static boolean installed;
+
+  //~ class members ===========================================================
+  private OutputCapture() {
+  }
+
+  /**
+   * Replaces the console streams by the capturing streams, only once for the JVM.
+   */
+  public static synchronized void install() {
+    if (installed) return;
+    installed = true;
+
+    System.setOut(new PrintStream(new CaptureOutputStream(System.out), true));
+    System.setErr(new PrintStream(new CaptureOutputStream(System.err), true));
+  }
+
+  /**
+   * Starts capturing the console output of the current thread.
+   *
+   * @param capacity the maximum number of bytes kept.
+   */
+  public static void begin(int capacity) {
+    BUFFER.set(new RingBuffer(capacity));
+  }
+
+  /**
+   * Stops capturing the console output of the current thread.
+   *
+   * @return the captured output, {@code null} if the thread was not captured.
+   */
+  public static RingBuffer end() {
+    RingBuffer buffer = BUFFER.get();
+    BUFFER.remove();
+    return buffer;
+  }
+
+  /**
+   * The fixed capacity buffer keeping the last bytes written to it, its storage is allocated on
+   * the first write.
+   */
+  public static final class RingBuffer {
+    private final int capacity;
+    private byte[] data;
+    private long written;
+
+    /**
+     * Creates {@link RingBuffer ring buffer} instance.
+     *
+     * @param capacity the maximum number of bytes kept.
+     */
+    public RingBuffer(int capacity) {
+      this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Writes the bytes, the oldest bytes are overwritten when the buffer is full.
+     *
+     * @param bytes the given bytes.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) {
+      if (length <= 0) return;
+      if (data == null) data = new byte[capacity];
+
+      written += length;
+      if (length > data.length) {
+        // only the last bytes are kept, they are placed as if written one by one.
+        offset += length - data.length;
+        length = data.length;
+      }
+
+      int position = (int) ((written - length) % data.length);
+      int firstLength = Math.min(length, data.length - position);
+      System.arraycopy(bytes, offset, data, position, firstLength);
+      System.arraycopy(bytes, offset + firstLength, data, 0, length - firstLength);
+    }
+
+    /**
+     * @return the kept bytes, the oldest first.
+     */
+    public synchronized byte[] toByteArray() {
+      if (data == null) return new byte[0];
+      if (written <= data.length) {
+        byte[] bytes = new byte[(int) written];
+        System.arraycopy(data, 0, bytes, 0, bytes.length);
+        return bytes;
+      }
+
+      // the buffer is full, the oldest byte is at the next write position.
+      int position = (int) (written % data.length);
+      byte[] bytes = new byte[data.length];
+      System.arraycopy(data, position, bytes, 0, data.length - position);
+      System.arraycopy(data, 0, bytes, data.length - position, position);
+      return bytes;
+    }
+
+    /**
+     * @return the number of bytes written but no longer kept.
+     */
+    public synchronized long getDroppedBytes() {
+      return Math.max(0L, written - capacity);
+    }
+  }
+
+  /**
+   * The stream writing through to the original console stream and to the buffer of the thread.
+   */
+  private static final class CaptureOutputStream extends OutputStream {
+    private final OutputStream original;
+
+    private CaptureOutputStream(OutputStream original) {
+      this.original = original;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      original.write(bytes, offset, length);
+      RingBuffer buffer = BUFFER.get();
+      if (buffer != null) buffer.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      original.flush();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.testng.util.Https;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProgressReporter counts the planned and completed test methods of this JVM and sends the
+ * progress snapshot at a fixed interval, so the test results only increase the counters. The
+ * snapshot is written to the spool directory when the agent pulls the results, otherwise it is
+ * submitted to the agent. The snapshot is taken while holding the lock and sent after releasing
+ * it, so the test threads never wait for the agent.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ProgressReporter 2026-10-19 17:30:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ProgressReporter {
+  //~ class properties ========================================================
+  private static final String PROGRESS_PATH = "listener/plugin/progress";
+
+  private final String runId = UUID.randomUUID().toString();
+  private final long jobInstanceId;
+  private final long interval;
+  private final File spoolDirectory;
+  private final long startTime = System.currentTimeMillis();
+  private final AtomicInteger planned = new AtomicInteger();
+  private final AtomicInteger passed = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+  private final Object spoolLock = new Object();
+  private ScheduledExecutorService scheduler;
+  private int runningTests;
+  private long sequence;
+  private long writtenSequence;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link ProgressReporter progress reporter} instance.
+   *
+   * @param jobInstanceId the given job instance identifier.
+   * @param interval the time in milliseconds between two snapshots.
+   * @param spoolDirectory the result spool directory, {@code null} if the results are submitted.
+   */
+  public ProgressReporter(long jobInstanceId, long interval, File spoolDirectory) {
+    this.jobInstanceId = jobInstanceId;
+    this.interval = interval;
+    this.spoolDirectory = spoolDirectory;
+  }
+
+  /**
+   * Adds the planned test methods of the starting test and starts sending the snapshots.
+   *
+   * @param methodCount the number of planned test methods.
+   */
+  public synchronized void plan(int methodCount) {
+    planned.addAndGet(methodCount);
+    runningTests++;
+    if (scheduler != null) return;
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "testng-progress");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        Snapshot snapshot;
+        synchronized (ProgressReporter.this) {
+          snapshot = take(false);
+        }
+        send(snapshot);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Counts the completed test method.
+   *
+   * @param status the given test status.
+   */
+  public void record(String status) {
+    if ("FAIL".equals(status)) failed.incrementAndGet();
+    else if ("SKIP".equals(status)) skipped.incrementAndGet();
+    else passed.incrementAndGet();
+  }
+
+  /**
+   * Sends the snapshot when the test finishes, the snapshot is marked finished when all planned
+   * test methods are completed. The snapshots stop until the next test starts.
+   */
+  public void finish() {
+    Snapshot snapshot;
+    synchronized (this) {
+      if (runningTests > 0 && --runningTests == 0 && scheduler != null) {
+        scheduler.shutdownNow();
+        scheduler = null;
+      }
+
+      snapshot = take(getCompleted() >= planned.get());
+    }
+
+    send(snapshot);
+  }
+
+  /**
+   * @param finished {@code true} if all planned test methods are completed.
+   * @return the JSON snapshot of the current progress.
+   */
+  public String snapshot(boolean finished) {
+    long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+    int completed = getCompleted();
+    double testsPerSecond = completed * 1000d / elapsed;
+    int remaining = Math.max(0, planned.get() - completed);
+    long eta = (completed == 0 ? -1L : (long) (remaining * (double) elapsed / completed));
+
+    return "{" +
+      "\"jobInstanceId\":" + jobInstanceId + "," +
+      "\"runId\":\"" + runId + "\"," +
+      "\"planned\":" + planned.get() + "," +
+      "\"completed\":" + completed + "," +
+      "\"passed\":" + passed.get() + "," +
+      "\"failed\":" + failed.get() + "," +
+      "\"skipped\":" + skipped.get() + "," +
+      "\"elapsedMillis\":" + elapsed + "," +
+      "\"testsPerSecond\":" + String.format(Locale.ROOT, "%.3f", testsPerSecond) + "," +
+      "\"etaMillis\":" + eta + "," +
+      "\"finished\":" + finished +
+      "}";
+  }
+
+  /**
+   * @return the number of completed test methods.
+   */
+  private int getCompleted() {
+    return passed.get() + failed.get() + skipped.get();
+  }
+
+  /**
+   * @return the numbered snapshot, the caller holds the lock.
+   */
+  private Snapshot take(boolean finished) {
+    return new Snapshot(++sequence, snapshot(finished).getBytes(Charset.forName("UTF-8")));
+  }
+
+  /**
+   * Sends the snapshot without holding the lock, the snapshot of the spool is replaced by the
+   * latest one and never by an older one.
+   */
+  private void send(Snapshot snapshot) {
+    if (spoolDirectory == null) {
+      Https.submit(PROGRESS_PATH, snapshot.content);
+      return;
+    }
+
+    File progressFile = new File(spoolDirectory, runId + ".progress");
+    File tempFile = new File(spoolDirectory, runId + "." + snapshot.sequence + ".progress.tmp");
+    try (OutputStream os = new FileOutputStream(tempFile)) {
+      os.write(snapshot.content);
+    } catch (IOException ioe) {
+      tempFile.delete();
+      return;
+    }
+
+    synchronized (spoolLock) {
+      if (snapshot.sequence < writtenSequence) {
+        tempFile.delete();
+        return;
+      }
+
+      writtenSequence = snapshot.sequence;
+      if (!tempFile.renameTo(progressFile)) {
+        progressFile.delete();
+        tempFile.renameTo(progressFile);
+      }
+    }
+  }
+
+  /**
+   * The progress snapshot and its order.
+   */
+  private static final class Snapshot {
+    private final long sequence;
+    private final byte[] content;
+
+    private Snapshot(long sequence, byte[] content) {
+      this.sequence = sequence;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * ResourceProbe reads the platform MXBeans when the test method starts and ends, the usage of
+ * the test is the difference. The thread CPU time and allocated bytes belong to the test thread;
+ * the heap used and the garbage collections are of the whole JVM, so they also count the tests
+ * running in parallel. Only the most expensive tests by thread CPU time are kept for the summary.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ResourceProbe 2026-10-19 18:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ResourceProbe {
+  //~ class properties ========================================================
+  private static final Comparator<Usage> BY_CPU_TIME = new Comparator<Usage>() {
+    @Override
+    public int compare(Usage first, Usage second) {
+      return Long.compare(first.cpuTime, second.cpuTime);
+    }
+  };
+
+  private final ThreadLocal<long[]> startSample = new ThreadLocal<>();
+  private final Map<String, PriorityQueue<Usage>> expensiveTests = new HashMap<>();
+  private final int topCount;
+  private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+  private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final boolean cpuTimeSupported;
+  private final boolean allocatedBytesSupported;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link ResourceProbe resource probe} instance.
+   *
+   * @param topCount the number of most expensive tests kept for the summary.
+   */
+  public ResourceProbe(int topCount) {
+    this.topCount = topCount;
+    this.cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+    this.allocatedBytesSupported = threadBean instanceof com.sun.management.ThreadMXBean
+      && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()
+      && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemoryEnabled();
+  }
+
+  /**
+   * Samples the resources when the test method starts on the current thread.
+   */
+  public void begin() {
+    startSample.set(sample());
+  }
+
+  /**
+   * Samples the resources when the test method ends on the current thread.
+   *
+   * @param testName the name of the running test the method belongs to.
+   * @param methodName the qualified name of the test method.
+   * @return the resource usage of the test method, {@code null} if it was not sampled at start.
+   */
+  public Usage end(String testName, String methodName) {
+    long[] start = startSample.get();
+    startSample.remove();
+    if (start == null) return null;
+
+    long[] end = sample();
+    Usage usage = new Usage(methodName, end[0] - start[0], end[1] - start[1], end[2] - start[2],
+      cpuTimeSupported ? end[3] - start[3] : -1L, allocatedBytesSupported ? end[4] - start[4] : -1L);
+
+    synchronized (expensiveTests) {
+      PriorityQueue<Usage> tests = expensiveTests.get(testName);
+      if (tests == null) {
+        tests = new PriorityQueue<>(topCount + 1, BY_CPU_TIME);
+        expensiveTests.put(testName, tests);
+      }
+
+      tests.add(usage);
+      if (tests.size() > topCount) tests.poll();
+    }
+
+    return usage;
+  }
+
+  /**
+   * Removes the most expensive test methods of the given test.
+   *
+   * @param testName the name of the finished test.
+   * @return the summary, {@code null} if no test method was sampled.
+   */
+  public String summary(String testName) {
+    List<Usage> tests;
+    synchronized (expensiveTests) {
+      PriorityQueue<Usage> queue = expensiveTests.remove(testName);
+      if (queue == null || queue.isEmpty()) return null;
+      tests = new ArrayList<>(queue);
+    }
+    Collections.sort(tests, Collections.reverseOrder(BY_CPU_TIME));
+
+    StringBuilder summary = new StringBuilder("[TestNG Resources] most expensive test methods of ")
+      .append(testName).append(" by thread CPU time:");
+    for (Usage usage : tests) {
+      summary.append(String.format("%n  %s cpu=%d ms, allocated=%d KB, heap-delta=%d KB, gc=%d (%d ms)",
+        usage.methodName, usage.cpuTime / 1000000L, usage.allocatedBytes / 1024L,
+        usage.heapUsed / 1024L, usage.gcCount, usage.gcTime));
+    }
+
+    return summary.toString();
+  }
+
+  /**
+   * @return the heap used, GC count, GC time, thread CPU time and thread allocated bytes.
+   */
+  private long[] sample() {
+    long gcCount = 0L;
+    long gcTime = 0L;
+    for (GarbageCollectorMXBean gcBean : gcBeans) {
+      gcCount += Math.max(0L, gcBean.getCollectionCount());
+      gcTime += Math.max(0L, gcBean.getCollectionTime());
+    }
+
+    return new long[]{
+      memoryBean.getHeapMemoryUsage().getUsed(),
+      gcCount,
+      gcTime,
+      cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0L,
+      allocatedBytesSupported
+        ? ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId())
+        : 0L
+    };
+  }
+
+  /**
+   * The resources used by one test method.
+   */
+  public static final class Usage {
+    private final String methodName;
+    private final long heapUsed;
+    private final long gcCount;
+    private final long gcTime;
+    private final long cpuTime;
+    private final long allocatedBytes;
+
+    private Usage(String methodName, long heapUsed, long gcCount, long gcTime, long cpuTime, long allocatedBytes) {
+      this.methodName = methodName;
+      this.heapUsed = heapUsed;
+      this.gcCount = gcCount;
+      this.gcTime = gcTime;
+      this.cpuTime = cpuTime;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return the JSON object of the usage, the unsupported values are {@code -1}.
+     */
+    public String toJson() {
+      return "{" +
+        "\"heapUsedDelta\":" + heapUsed + "," +
+        "\"gcCount\":" + gcCount + "," +
+        "\"gcTimeMillis\":" + gcTime + "," +
+        "\"cpuTimeNanos\":" + cpuTime + "," +
+        "\"allocatedBytes\":" + allocatedBytes +
+        "}";
+    }
+  }
+}
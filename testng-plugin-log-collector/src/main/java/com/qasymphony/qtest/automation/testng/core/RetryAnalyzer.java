@@ -0,0 +1,125 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.testng.util.Https;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RetryAnalyzer re-executes the failed test method in the same JVM while the retry budget of the
+ * run lasts. Each method invocation is retried once: TestNG 6.8 never leaves its retry loop once
+ * the retried invocation asks for another retry. The failed attempt which is retried is marked,
+ * so only the final result is reported together with the number of attempts. The attempts are
+ * counted on the results, so the invocations of the same method are retried apart.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RetryAnalyzer 2026-10-19 18:30:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RetryAnalyzer implements IRetryAnalyzer {
+  //~ class properties ========================================================
+  public static final String RETRIED_ATTRIBUTE = "qtest.retried";
+  public static final String ATTEMPT_ATTRIBUTE = "qtest.attempt";
+  private static final String RETRY_BUDGET = "TESTNG_RETRY_BUDGET";
+
+  // the budget belongs to the job, the runner daemon runs several jobs in one JVM.
+  private static String budgetJobInstanceId;
+  private static AtomicInteger remainingRetries;
+
+  // TestNG runs the retry attempt on the thread of the failed attempt.
+  private static final ThreadLocal<ITestResult> RETRIED_RESULT = new ThreadLocal<>();
+
+  //~ class members ===========================================================
+  @Override
+  public boolean retry(ITestResult result) {
+    ITestResult retried = RETRIED_RESULT.get();
+    if (retried != null && isSameInvocation(retried, result)) return false;
+    if (!isEnabled() || getAttempts(result) > 1 || !acquireRetry()) return false;
+
+    result.setAttribute(RETRIED_ATTRIBUTE, Boolean.TRUE);
+    RETRIED_RESULT.set(result);
+    return true;
+  }
+
+  /**
+   * Marks the given started result as the retry attempt when the previous result of the thread was
+   * the retried attempt of the same invocation.
+   *
+   * @param result the started test result.
+   */
+  public static void onStart(ITestResult result) {
+    ITestResult retried = RETRIED_RESULT.get();
+    RETRIED_RESULT.remove();
+
+    if (retried != null && isSameInvocation(retried, result)) {
+      result.setAttribute(ATTEMPT_ATTRIBUTE, getAttempts(retried) + 1);
+    }
+  }
+
+  /**
+   * @return the number of times the given result was attempted, {@code 1} if it was not retried.
+   */
+  public static int getAttempts(ITestResult result) {
+    Object attempt = result.getAttribute(ATTEMPT_ATTRIBUTE);
+    return (attempt instanceof Integer) ? (Integer) attempt : 1;
+  }
+
+  /**
+   * @return {@code true} if the given result is the failed attempt which is retried.
+   */
+  public static boolean isRetried(ITestResult result) {
+    return Boolean.TRUE.equals(result.getAttribute(RETRIED_ATTRIBUTE));
+  }
+
+  /**
+   * @return {@code true} if the failed tests are retried.
+   */
+  public static boolean isEnabled() {
+    return getInt(RETRY_BUDGET, 0) > 0;
+  }
+
+  /**
+   * @return {@code true} if the retry budget of the running job is not used up.
+   */
+  private static synchronized boolean acquireRetry() {
+    String jobInstanceId = getVariable("JOB_INSTANCE_ID");
+    if (remainingRetries == null || !String.valueOf(jobInstanceId).equals(budgetJobInstanceId)) {
+      budgetJobInstanceId = String.valueOf(jobInstanceId);
+      remainingRetries = new AtomicInteger(Math.max(0, getInt(RETRY_BUDGET, 0)));
+    }
+
+    return remainingRetries.getAndDecrement() > 0;
+  }
+
+  /**
+   * @return {@code true} if both results run the same method of the same instance with the same
+   * parameters.
+   */
+  private static boolean isSameInvocation(ITestResult retried, ITestResult result) {
+    return retried.getMethod() == result.getMethod()
+      && retried.getInstance() == result.getInstance()
+      && Arrays.deepEquals(retried.getParameters(), result.getParameters());
+  }
+
+  /**
+   * @return the integer value of the given job variable.
+   */
+  private static int getInt(String name, int defaultValue) {
+    String value = getVariable(name);
+    try {
+      return Https.isEmpty(value) ? defaultValue : Integer.parseInt(value.trim());
+    } catch (NumberFormatException nfe) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return the value of the given job variable.
+   */
+  static String getVariable(String name) {
+    String value = System.getenv(name);
+    return Https.isEmpty(value) ? System.getProperty(name) : value;
+  }
+}
@@ -0,0 +1,110 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.testng.util.Https;
+import org.testng.IAnnotationTransformer;
+import org.testng.IAnnotationTransformer2;
+import org.testng.annotations.IConfigurationAnnotation;
+import org.testng.annotations.IDataProviderAnnotation;
+import org.testng.annotations.IFactoryAnnotation;
+import org.testng.annotations.ITestAnnotation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RetryTransformer sets the {@link RetryAnalyzer retry analyzer} to the test methods without
+ * their own analyzer when the failed tests are retried. Only the methods invoked once are retried:
+ * TestNG 6.8 shares the failure context between the invocations of a method, so once one of them
+ * is retried it reruns every later invocation and never leaves the retry loop of a failed rerun.
+ * <p>
+ * The plugin registers it with the {@code -listener} option of the job. TestNG 6.8 keeps only one
+ * annotation transformer, so the transformers among the user listeners given by the
+ * {@code TESTNG_RETRY_LISTENERS} variable are called first.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RetryTransformer 2026-10-19 18:30:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RetryTransformer implements IAnnotationTransformer2 {
+  //~ class properties ========================================================
+  private static final String RETRY_LISTENERS = "TESTNG_RETRY_LISTENERS";
+
+  private final List<IAnnotationTransformer> transformers = createTransformers();
+
+  //~ class members ===========================================================
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+    for (IAnnotationTransformer transformer : transformers) {
+      transformer.transform(annotation, testClass, testConstructor, testMethod);
+    }
+
+    if (annotation.getRetryAnalyzer() == null && isInvokedOnce(annotation) && RetryAnalyzer.isEnabled()) {
+      annotation.setRetryAnalyzer(RetryAnalyzer.class);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void transform(IConfigurationAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+    for (IAnnotationTransformer transformer : transformers) {
+      if (transformer instanceof IAnnotationTransformer2) {
+        ((IAnnotationTransformer2) transformer).transform(annotation, testClass, testConstructor, testMethod);
+      }
+    }
+  }
+
+  @Override
+  public void transform(IDataProviderAnnotation annotation, Method method) {
+    for (IAnnotationTransformer transformer : transformers) {
+      if (transformer instanceof IAnnotationTransformer2) {
+        ((IAnnotationTransformer2) transformer).transform(annotation, method);
+      }
+    }
+  }
+
+  @Override
+  public void transform(IFactoryAnnotation annotation, Method method) {
+    for (IAnnotationTransformer transformer : transformers) {
+      if (transformer instanceof IAnnotationTransformer2) {
+        ((IAnnotationTransformer2) transformer).transform(annotation, method);
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if the annotated method is invoked once, without the data provider.
+   */
+  private static boolean isInvokedOnce(ITestAnnotation annotation) {
+    return annotation.getInvocationCount() <= 1 && Https.isEmpty(annotation.getDataProvider());
+  }
+
+  /**
+   * @return the annotation transformers among the user listeners of the job.
+   */
+  private static List<IAnnotationTransformer> createTransformers() {
+    List<IAnnotationTransformer> transformers = new ArrayList<>();
+    String listeners = RetryAnalyzer.getVariable(RETRY_LISTENERS);
+    if (Https.isEmpty(listeners)) return transformers;
+
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) classLoader = RetryTransformer.class.getClassLoader();
+
+    for (String listener : listeners.split(",")) {
+      if (Https.isEmpty(listener.trim())) continue;
+
+      try {
+        Class<?> listenerClass = Class.forName(listener.trim(), true, classLoader);
+        if (IAnnotationTransformer.class.isAssignableFrom(listenerClass) && listenerClass != RetryTransformer.class) {
+          transformers.add((IAnnotationTransformer) listenerClass.newInstance());
+        }
+      } catch (Exception | LinkageError e) {
+        System.err.println("[TestNG Retry] could not create the transformer " + listener.trim() + ", message: " + e.getMessage());
+      }
+    }
+
+    return transformers;
+  }
+}
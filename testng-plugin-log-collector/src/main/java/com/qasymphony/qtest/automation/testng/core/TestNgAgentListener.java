@@ -1,15 +1,22 @@
 package com.qasymphony.qtest.automation.testng.core;
 
+import com.qasymphony.qtest.automation.testng.util.AttachmentUploader;
 import com.qasymphony.qtest.automation.testng.util.Https;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
+import org.testng.Reporter;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -21,51 +28,165 @@ import java.util.UUID;
  */
 public class TestNgAgentListener implements ITestListener {
   //~ class properties ========================================================
+  private static final String RESULT_JOURNAL_DIR = "TESTNG_RESULT_JOURNAL_DIR";
+  private static final String RESULT_SPOOL_DIR = "TESTNG_RESULT_SPOOL_DIR";
+  private static final String PROGRESS_INTERVAL = "TESTNG_PROGRESS_INTERVAL_SECONDS";
+  private static final String OUTPUT_CAPTURE = "TESTNG_OUTPUT_CAPTURE";
+  private static final String OUTPUT_CAPTURE_KB = "TESTNG_OUTPUT_CAPTURE_KB";
+  private static final String CAPTURE_FAILED = "failed";
+  private static final String CAPTURE_ALL = "all";
+  private static final int DEFAULT_CAPTURE_KB = 64;
+  private static final String RESOURCE_METRICS = "TESTNG_RESOURCE_METRICS";
+  private static final String RESOURCE_TOP = "TESTNG_RESOURCE_TOP";
+  private static final int DEFAULT_RESOURCE_TOP = 10;
+  private static final String ATTACHMENT_UPLOAD = "TESTNG_ATTACHMENT_UPLOAD";
+  private static final String ATTACHMENT_MAX_KB = "TESTNG_ATTACHMENT_MAX_KB";
+  private static final String ATTACHMENT_CONCURRENCY = "TESTNG_ATTACHMENT_CONCURRENCY";
+  private static final int DEFAULT_ATTACHMENT_MAX_KB = 10 * 1024;
+  private static final int DEFAULT_ATTACHMENT_CONCURRENCY = 2;
+
+  /**
+   * The attribute of the test result holding the files or paths of the extra attachments, such as
+   * the screenshots; they are uploaded with the test log.
+   */
+  public static final String ATTACHMENTS_ATTRIBUTE = "qtest.attachments";
+
   private Long jobInstanceId;
   private String logBasePath;
+  private PrintWriter resultJournal;
+  private boolean resultJournalResolved;
+  private OutputStream resultSpool;
+  private boolean resultSpoolResolved;
+  private File resultSpoolDirectory;
+  private ProgressReporter progressReporter;
+  private boolean progressReporterResolved;
+  private String outputCapture;
+  private int outputCaptureBytes;
+  private ResourceProbe resourceProbe;
+  private boolean resourceProbeResolved;
+  private AttachmentUploader attachmentUploader;
+  private boolean attachmentUploaderResolved;
 
   //~ class members ===========================================================
   @Override
-  public void onTestStart(ITestResult result) {}
+  public void onTestStart(ITestResult result) {
+    RetryAnalyzer.onStart(result);
+    if (isOutputCaptured()) OutputCapture.begin(outputCaptureBytes);
+
+    ResourceProbe probe = resolveResourceProbe();
+    if (probe != null) probe.begin();
+  }
 
   @Override
   public void onTestSuccess(ITestResult result) {
-    String testLog = toJsonString(result, "PASS");
-    Https.submitLog(testLog.getBytes(Charset.forName("UTF-8")));
+    report(result, "PASS");
   }
 
   @Override
   public void onTestFailure(ITestResult result) {
-    String testLog = toJsonString(result, "FAIL");
-    Https.submitLog(testLog.getBytes(Charset.forName("UTF-8")));
+    report(result, "FAIL");
   }
 
   @Override
   public void onTestSkipped(ITestResult result) {
-    String testLog = toJsonString(result, "SKIP");
-    Https.submitLog(testLog.getBytes(Charset.forName("UTF-8")));
+    report(result, "SKIP");
   }
 
   @Override
   public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
-    String testLog = toJsonString(result, "PASS");
-    Https.submitLog(testLog.getBytes(Charset.forName("UTF-8")));
+    report(result, "PASS");
   }
 
   @Override
   public void onStart(ITestContext context) {
-
+    ProgressReporter reporter = resolveProgressReporter();
+    if (reporter != null) reporter.plan(context.getAllTestMethods().length);
   }
 
   @Override
   public void onFinish(ITestContext context) {
+    ProgressReporter reporter = resolveProgressReporter();
+    if (reporter != null) reporter.finish();
+
+    ResourceProbe probe = resolveResourceProbe();
+    String summary = (probe == null ? null : probe.summary(context.getName()));
+    if (summary != null) System.out.println(summary);
+  }
+
+  /**
+   * Reports the test result to agent, the result is written to the spool instead when the agent
+   * pulls the results.
+   *
+   * @param result the given test result.
+   * @param status the given test status.
+   */
+  private void report(ITestResult result, String status) {
+    ResourceProbe probe = resolveResourceProbe();
+    ResourceProbe.Usage usage = (probe == null ? null : probe.end(result.getTestContext().getName(),
+      result.getTestClass().getRealClass().getCanonicalName() + "#" + result.getMethod().getMethodName()));
+    OutputCapture.RingBuffer consoleOutput = OutputCapture.end();
+
+    // the failed attempt is retried, only the final attempt is reported.
+    if (RetryAnalyzer.isRetried(result)) return;
+
+    String testLog = toJsonString(result, status, consoleOutput, usage);
+    if (!writeResultSpool(testLog)) {
+      Https.submitLog(testLog.getBytes(Charset.forName("UTF-8")));
+    }
+    writeResultJournal(result, status);
+
+    ProgressReporter reporter = resolveProgressReporter();
+    if (reporter != null) reporter.record(status);
+  }
 
+  /**
+   * Appends the test log as one line to the result spool of this JVM, the plugin returns the
+   * complete lines to the agent in batches.
+   *
+   * @param testLog the given test log.
+   * @return {@code true} if the test log is written to the spool.
+   */
+  private synchronized boolean writeResultSpool(String testLog) {
+    OutputStream spool = resolveResultSpool();
+    if (spool == null) return false;
+
+    try {
+      spool.write((testLog + "\n").getBytes(Charset.forName("UTF-8")));
+      spool.flush();
+      return true;
+    } catch (IOException ioe) {
+      // submit the test log instead.
+      return false;
+    }
+  }
+
+  /**
+   * Writes the test result to the result journal, the plugin uses the journal to keep the test
+   * duration history.
+   *
+   * @param result the given test result.
+   * @param status the given test status.
+   */
+  private synchronized void writeResultJournal(ITestResult result, String status) {
+    PrintWriter writer = resolveResultJournal();
+    if (writer == null) return;
+
+    writer.print(result.getTestClass().getRealClass().getCanonicalName() + "#" + result.getMethod().getMethodName());
+    writer.print('\t');
+    writer.print(status);
+    writer.print('\t');
+    writer.print(result.getStartMillis() <= 0 ? System.currentTimeMillis() : result.getStartMillis());
+    writer.print('\t');
+    writer.print(result.getEndMillis() <= 0 ? System.currentTimeMillis() : result.getEndMillis());
+    writer.print('\n');
+    writer.flush();
   }
 
   /**
    * @return the json object of the given test result.
    */
-  private String toJsonString(ITestResult result, String status) {
+  private String toJsonString(ITestResult result, String status, OutputCapture.RingBuffer consoleOutput,
+                              ResourceProbe.Usage usage) {
     StringBuilder testLogBuilder = new StringBuilder("{");
 
     testLogBuilder.append(quote("jobInstanceId")).append(":").append(resolveJobInstanceId()).append(",");
@@ -74,27 +195,85 @@ public class TestNgAgentListener implements ITestListener {
     testLogBuilder.append(quote("status")).append(":").append(quote(status)).append(",");
     testLogBuilder.append(quote("startTime")).append(":").append((result.getStartMillis() <= 0 ? System.currentTimeMillis() : result.getStartMillis())).append(",");
     testLogBuilder.append(quote("endTime")).append(":").append((result.getEndMillis() <= 0 ? System.currentTimeMillis() : result.getEndMillis()));
+    int attempts = RetryAnalyzer.getAttempts(result);
+    if (attempts > 1) {
+      testLogBuilder.append(",");
+      testLogBuilder.append(quote("attempts")).append(":").append(attempts);
+    }
+    if (usage != null) {
+      testLogBuilder.append(",");
+      testLogBuilder.append(quote("resources")).append(":").append(usage.toJson());
+    }
 
     // build the test log.
-    String testLogFile = writeExceptionToLog(result.getThrowable());
+    String testLogFile = writeTestLog(result, status, consoleOutput);
     if (testLogFile != null) {
       testLogBuilder.append(",");
       testLogBuilder.append(quote("logPath")).append(":").append(quote(testLogFile));
     }
+
+    // the agent reads the uploaded attachments instead of the files.
+    AttachmentUploader uploader = resolveAttachmentUploader();
+    if (uploader != null) {
+      String attachmentId = (testLogFile == null ? null : uploader.upload(resolveJobInstanceId(), new File(testLogFile)));
+      if (attachmentId != null) {
+        testLogBuilder.append(",");
+        testLogBuilder.append(quote("attachmentId")).append(":").append(quote(attachmentId));
+      }
+      appendAttachments(testLogBuilder, uploader, result.getAttribute(ATTACHMENTS_ATTRIBUTE));
+    }
     testLogBuilder.append("}");
 
     return testLogBuilder.toString();
   }
 
   /**
-   * @return the exception log file.
+   * Uploads the extra attachments of the test and appends the uploaded ones to the test log.
+   *
+   * @param testLogBuilder the given test log builder.
+   * @param uploader the given attachment uploader.
+   * @param attachments the collection of files or paths, ignored if it is not a collection.
+   */
+  private void appendAttachments(StringBuilder testLogBuilder, AttachmentUploader uploader, Object attachments) {
+    if (!(attachments instanceof Collection)) return;
+
+    StringBuilder attachmentsBuilder = new StringBuilder();
+    for (Object attachment : (Collection<?>) attachments) {
+      File attachmentFile = (attachment instanceof File ? (File) attachment
+        : attachment == null ? null : new File(attachment.toString()));
+      String attachmentId = (attachmentFile == null ? null : uploader.upload(resolveJobInstanceId(), attachmentFile));
+      if (attachmentId == null) continue;
+
+      if (attachmentsBuilder.length() > 0) attachmentsBuilder.append(",");
+      attachmentsBuilder.append("{").append(quote("attachmentId")).append(":").append(quote(attachmentId)).append(",");
+      attachmentsBuilder.append(quote("name")).append(":").append(quote(attachmentFile.getName())).append("}");
+    }
+
+    if (attachmentsBuilder.length() > 0) {
+      testLogBuilder.append(",");
+      testLogBuilder.append(quote("attachments")).append(":[").append(attachmentsBuilder).append("]");
+    }
+  }
+
+  /**
+   * Writes the exception and the captured output of the test to the log attachment, the output
+   * is only written for the failed tests unless all of them are captured.
+   *
+   * @return the log file, {@code null} if there is nothing to write.
    */
-  private String writeExceptionToLog(Throwable cause) {
-    if (cause != null) {
+  private String writeTestLog(ITestResult result, String status, OutputCapture.RingBuffer consoleOutput) {
+    Throwable cause = result.getThrowable();
+    boolean outputWritten = isOutputCaptured() && ("FAIL".equals(status) || CAPTURE_ALL.equals(outputCapture));
+    List<String> reporterOutput = (outputWritten ? Reporter.getOutput(result) : null);
+    boolean hasOutput = (reporterOutput != null && !reporterOutput.isEmpty())
+      || (outputWritten && consoleOutput != null && consoleOutput.toByteArray().length > 0);
+
+    if (cause != null || hasOutput) {
       File logFile = new File(resolveLogBasePath(), UUID.randomUUID().toString() + ".txt");
       try {
         PrintWriter writer = new PrintWriter(new FileWriter(logFile));
-        cause.printStackTrace(writer);
+        if (cause != null) cause.printStackTrace(writer);
+        if (outputWritten) writeOutput(writer, reporterOutput, consoleOutput);
         closeQuietly(writer);
       } catch (IOException ioe) {
         // never mind, I don't want to handle this exception.
@@ -107,6 +286,43 @@ public class TestNgAgentListener implements ITestListener {
     return null;
   }
 
+  /**
+   * Writes the last bytes of the reporter output and of the console output, each of them is
+   * limited to the capture size.
+   *
+   * @param writer the given log writer.
+   * @param reporterOutput the lines logged to the TestNG reporter.
+   * @param consoleOutput the captured console output.
+   */
+  private void writeOutput(PrintWriter writer, List<String> reporterOutput, OutputCapture.RingBuffer consoleOutput) {
+    if (reporterOutput != null && !reporterOutput.isEmpty()) {
+      OutputCapture.RingBuffer reporterBuffer = new OutputCapture.RingBuffer(outputCaptureBytes);
+      byte[] lineSeparator = System.lineSeparator().getBytes(Charset.defaultCharset());
+      for (String line : reporterOutput) {
+        byte[] bytes = String.valueOf(line).getBytes(Charset.defaultCharset());
+        reporterBuffer.write(bytes, 0, bytes.length);
+        reporterBuffer.write(lineSeparator, 0, lineSeparator.length);
+      }
+
+      writeOutput(writer, "Reporter output", reporterBuffer);
+    }
+
+    if (consoleOutput != null) writeOutput(writer, "Console output", consoleOutput);
+  }
+
+  /**
+   * Writes the captured output under the given title.
+   */
+  private static void writeOutput(PrintWriter writer, String title, OutputCapture.RingBuffer output) {
+    byte[] bytes = output.toByteArray();
+    if (bytes.length == 0) return;
+
+    writer.println();
+    writer.println("---- " + title + (output.getDroppedBytes() > 0 ? " (last " + bytes.length + " bytes, " + output.getDroppedBytes() + " bytes dropped)" : "") + " ----");
+    writer.print(new String(bytes, Charset.defaultCharset()));
+    writer.println();
+  }
+
   /**
    * Close the writer.
    *
@@ -137,6 +353,182 @@ public class TestNgAgentListener implements ITestListener {
     return logBasePath;
   }
 
+  /**
+   * @return the result spool stream, {@code null} if the agent does not pull the results.
+   */
+  private OutputStream resolveResultSpool() {
+    if (!resultSpoolResolved) {
+      resultSpoolResolved = true;
+
+      String resultSpoolDir = System.getenv(RESULT_SPOOL_DIR);
+      if (Https.isEmpty(resultSpoolDir)) {
+        resultSpoolDir = System.getProperty(RESULT_SPOOL_DIR);
+      }
+
+      if (!Https.isEmpty(resultSpoolDir) && new File(resultSpoolDir).isDirectory()) {
+        try {
+          resultSpool = new FileOutputStream(new File(resultSpoolDir, UUID.randomUUID().toString() + ".spool"), true);
+          resultSpoolDirectory = new File(resultSpoolDir);
+        } catch (IOException ioe) {
+          // never mind, the test logs are submitted to the agent.
+        }
+      }
+    }
+
+    return resultSpool;
+  }
+
+  /**
+   * @return the progress reporter, {@code null} if the progress is not required.
+   */
+  private synchronized ProgressReporter resolveProgressReporter() {
+    if (!progressReporterResolved) {
+      progressReporterResolved = true;
+
+      String progressInterval = System.getenv(PROGRESS_INTERVAL);
+      if (Https.isEmpty(progressInterval)) {
+        progressInterval = System.getProperty(PROGRESS_INTERVAL);
+      }
+
+      long interval = 0L;
+      try {
+        if (!Https.isEmpty(progressInterval)) interval = Long.parseLong(progressInterval.trim()) * 1000L;
+      } catch (NumberFormatException nfe) {
+        // never mind, the progress is not sent.
+      }
+
+      if (interval > 0L) {
+        // the snapshot goes to the spool when the test logs do.
+        resolveResultSpool();
+        progressReporter = new ProgressReporter(resolveJobInstanceId(), interval, resultSpoolDirectory);
+      }
+    }
+
+    return progressReporter;
+  }
+
+  /**
+   * @return the result journal writer, {@code null} if the journal is not required.
+   */
+  private PrintWriter resolveResultJournal() {
+    if (!resultJournalResolved) {
+      resultJournalResolved = true;
+
+      String resultJournalDir = System.getenv(RESULT_JOURNAL_DIR);
+      if (Https.isEmpty(resultJournalDir)) {
+        resultJournalDir = System.getProperty(RESULT_JOURNAL_DIR);
+      }
+
+      if (!Https.isEmpty(resultJournalDir) && new File(resultJournalDir).isDirectory()) {
+        File journalFile = new File(resultJournalDir, UUID.randomUUID().toString() + ".journal");
+        try {
+          resultJournal = new PrintWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), "UTF-8"));
+        } catch (IOException ioe) {
+          // never mind, the journal is only used to optimize next runs.
+        }
+      }
+    }
+
+    return resultJournal;
+  }
+
+  /**
+   * @return {@code true} if the output of the tests is captured.
+   */
+  private synchronized boolean isOutputCaptured() {
+    if (outputCapture == null) {
+      String capture = System.getenv(OUTPUT_CAPTURE);
+      if (Https.isEmpty(capture)) {
+        capture = System.getProperty(OUTPUT_CAPTURE, CAPTURE_FAILED);
+      }
+      outputCapture = capture.trim().toLowerCase();
+
+      String captureKb = System.getenv(OUTPUT_CAPTURE_KB);
+      if (Https.isEmpty(captureKb)) {
+        captureKb = System.getProperty(OUTPUT_CAPTURE_KB);
+      }
+      int captureSize = DEFAULT_CAPTURE_KB;
+      try {
+        if (!Https.isEmpty(captureKb)) captureSize = Integer.parseInt(captureKb.trim());
+      } catch (NumberFormatException nfe) {
+        // never mind, the default size is used.
+      }
+      outputCaptureBytes = Math.max(1, captureSize) * 1024;
+
+      if (CAPTURE_FAILED.equals(outputCapture) || CAPTURE_ALL.equals(outputCapture)) OutputCapture.install();
+    }
+
+    return CAPTURE_FAILED.equals(outputCapture) || CAPTURE_ALL.equals(outputCapture);
+  }
+
+  /**
+   * @return the resource probe, {@code null} if the resources of the tests are not recorded.
+   */
+  private synchronized ResourceProbe resolveResourceProbe() {
+    if (!resourceProbeResolved) {
+      resourceProbeResolved = true;
+
+      String resourceMetrics = System.getenv(RESOURCE_METRICS);
+      if (Https.isEmpty(resourceMetrics)) {
+        resourceMetrics = System.getProperty(RESOURCE_METRICS);
+      }
+
+      if ("true".equalsIgnoreCase(resourceMetrics == null ? null : resourceMetrics.trim())) {
+        String resourceTop = System.getenv(RESOURCE_TOP);
+        if (Https.isEmpty(resourceTop)) {
+          resourceTop = System.getProperty(RESOURCE_TOP);
+        }
+
+        int topCount = DEFAULT_RESOURCE_TOP;
+        try {
+          if (!Https.isEmpty(resourceTop)) topCount = Integer.parseInt(resourceTop.trim());
+        } catch (NumberFormatException nfe) {
+          // never mind, the default number of tests is kept.
+        }
+        resourceProbe = new ResourceProbe(Math.max(1, topCount));
+      }
+    }
+
+    return resourceProbe;
+  }
+
+  /**
+   * @return the attachment uploader, {@code null} if the attachments are not uploaded.
+   */
+  private synchronized AttachmentUploader resolveAttachmentUploader() {
+    if (!attachmentUploaderResolved) {
+      attachmentUploaderResolved = true;
+
+      String attachmentUpload = System.getenv(ATTACHMENT_UPLOAD);
+      if (Https.isEmpty(attachmentUpload)) {
+        attachmentUpload = System.getProperty(ATTACHMENT_UPLOAD);
+      }
+
+      if ("true".equalsIgnoreCase(attachmentUpload == null ? null : attachmentUpload.trim())) {
+        long maxBytes = Math.max(1, getInt(ATTACHMENT_MAX_KB, DEFAULT_ATTACHMENT_MAX_KB)) * 1024L;
+        attachmentUploader = new AttachmentUploader(maxBytes, getInt(ATTACHMENT_CONCURRENCY, DEFAULT_ATTACHMENT_CONCURRENCY));
+      }
+    }
+
+    return attachmentUploader;
+  }
+
+  /**
+   * @return the integer value of the given job variable, the default value if it is not set.
+   */
+  private static int getInt(String name, int defaultValue) {
+    String value = System.getenv(name);
+    if (Https.isEmpty(value)) {
+      value = System.getProperty(name);
+    }
+
+    try {
+      return Https.isEmpty(value) ? defaultValue : Integer.parseInt(value.trim());
+    } catch (NumberFormatException nfe) {
+      return defaultValue;
+    }
+  }
+
   /**
    * @return the job instance identifier.
    */
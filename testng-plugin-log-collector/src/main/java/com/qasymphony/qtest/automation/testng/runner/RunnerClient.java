@@ -0,0 +1,306 @@
+package com.qasymphony.qtest.automation.testng.runner;
+
+import com.qasymphony.qtest.automation.testng.util.Https;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RunnerClient runs the TestNG command on the warm {@link RunnerDaemon runner daemon} of the
+ * command classpath, the daemon is started when it is not running yet. The client runs the
+ * command in its own JVM when the daemon is busy or could not be reached. The client arguments
+ * are the TestNG command, the daemon directory is given by the {@code TESTNG_RUNNER_DAEMON_DIR}
+ * environment variable.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RunnerClient 2026-10-19 12:40:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RunnerClient {
+  //~ class properties ========================================================
+  private static final String TESTNG_MAIN_CLASS = "org.testng.TestNG";
+  private static final String DEFAULT_IDLE_MINUTES = "30";
+  private static final long STARTUP_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+  private static final int NOT_SERVED = -1;
+
+  // the job variables read by the collector, the daemon gets them as system properties.
+  private static final List<String> JOB_VARIABLES = Arrays.asList(
+    "AGENT_SERVER_URL", "JOB_INSTANCE_ID", "LOG_PATH", "TESTNG_RESULT_JOURNAL_DIR", "TESTNG_RESULT_SPOOL_DIR",
+    "TESTNG_PROGRESS_INTERVAL_SECONDS", "TESTNG_OUTPUT_CAPTURE", "TESTNG_OUTPUT_CAPTURE_KB",
+    "TESTNG_RESOURCE_METRICS", "TESTNG_RESOURCE_TOP", "TESTNG_RETRY_BUDGET", "TESTNG_ATTACHMENT_UPLOAD",
+    "TESTNG_ATTACHMENT_MAX_KB", "TESTNG_ATTACHMENT_CONCURRENCY"
+  );
+
+  //~ class members ===========================================================
+  private RunnerClient() {}
+
+  /**
+   * Runs the TestNG command.
+   *
+   * @param args the TestNG command and its options.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println("[TestNG Daemon] no TestNG command to run.");
+      System.exit(2);
+    }
+
+    String daemonDir = getVariable(RunnerDaemon.DAEMON_DIR, null);
+    int mainIndex = Arrays.asList(args).indexOf(TESTNG_MAIN_CLASS);
+
+    int status = NOT_SERVED;
+    if (!Https.isEmpty(daemonDir) && mainIndex > 0) {
+      try {
+        status = runOnDaemon(new File(daemonDir), args, mainIndex);
+      } catch (IOException ioe) {
+        System.err.println("[TestNG Daemon] could not run on daemon, message: " + ioe.getMessage());
+      }
+    }
+
+    if (status == NOT_SERVED) status = fork(args);
+    System.exit(status);
+  }
+
+  /**
+   * Runs the command on the daemon of its classpath.
+   *
+   * @return the TestNG status, {@link #NOT_SERVED} if the daemon did not run the command.
+   */
+  private static int runOnDaemon(File daemonDirectory, String[] args, int mainIndex) throws IOException {
+    // the JVM options and the classpath identify the daemon.
+    List<String> jvmOptions = new ArrayList<>();
+    String classPath = ".";
+    for (int index = 1; index < mainIndex; index++) {
+      if ("-classpath".equals(args[index]) || "-cp".equals(args[index])) {
+        if (++index < mainIndex) classPath = args[index];
+      } else if (args[index].startsWith("-") && !"-jar".equals(args[index])) {
+        jvmOptions.add(args[index]);
+      } else {
+        return NOT_SERVED;
+      }
+    }
+
+    if (!daemonDirectory.exists()) daemonDirectory.mkdirs();
+
+    File workingDirectory = new File(".").getAbsoluteFile();
+    String fingerprint = md5Hex(workingDirectory + "|" + args[0] + "|" + jvmOptions + "|" + classPath);
+    File stateFile = new File(daemonDirectory, fingerprint + ".daemon");
+    String[] testNgArgs = Arrays.copyOfRange(args, mainIndex + 1, args.length);
+
+    for (int attempt = 0; attempt < 2; attempt++) {
+      String[] state = readState(stateFile);
+      if (state == null) {
+        startDaemon(daemonDirectory, fingerprint, stateFile, args[0], jvmOptions, classPath);
+        state = awaitState(stateFile);
+        if (state == null) return NOT_SERVED;
+      }
+
+      try (Socket socket = new Socket(InetAddress.getByName(null), Integer.parseInt(state[0]))) {
+        return run(socket, state[1], testNgArgs);
+      } catch (ConnectException ce) {
+        // the daemon is gone, start a new one.
+        stateFile.delete();
+      }
+    }
+
+    return NOT_SERVED;
+  }
+
+  /**
+   * Sends the run to the daemon and copies the run output to the client output.
+   *
+   * @return the TestNG status, {@link #NOT_SERVED} if the daemon is busy.
+   */
+  private static int run(Socket socket, String token, String[] testNgArgs) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    out.writeUTF(token);
+
+    Map<String, String> properties = new LinkedHashMap<>();
+    for (String variable : JOB_VARIABLES) {
+      String value = getVariable(variable, null);
+      if (!Https.isEmpty(value)) properties.put(variable, value);
+    }
+
+    out.writeInt(properties.size());
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      out.writeUTF(property.getKey());
+      out.writeUTF(property.getValue());
+    }
+
+    out.writeInt(testNgArgs.length);
+    for (String testNgArg : testNgArgs) out.writeUTF(testNgArg);
+    out.flush();
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    byte[] buffer = new byte[8192];
+    try {
+      while (true) {
+        int frameType = in.readUnsignedByte();
+        switch (frameType) {
+          case RunnerDaemon.FRAME_EXIT:
+            return in.readInt();
+          case RunnerDaemon.FRAME_BUSY:
+            return NOT_SERVED;
+          default:
+            int length = in.readInt();
+            if (buffer.length < length) buffer = new byte[length];
+            in.readFully(buffer, 0, length);
+
+            if (frameType == RunnerDaemon.FRAME_STDERR) {
+              System.err.write(buffer, 0, length);
+              System.err.flush();
+            } else {
+              System.out.write(buffer, 0, length);
+              System.out.flush();
+            }
+        }
+      }
+    } catch (EOFException eofe) {
+      // the suite may have partly run, running it again would report its tests twice.
+      System.err.println("[TestNG Daemon] the daemon stopped before the run finished.");
+      return 1;
+    }
+  }
+
+  /**
+   * Starts the daemon in background, only one client starts the daemon of a classpath.
+   */
+  private static void startDaemon(File daemonDirectory, String fingerprint, File stateFile, String javaCommand,
+                                  List<String> jvmOptions, String classPath) throws IOException {
+    File lockFile = new File(daemonDirectory, fingerprint + ".lock");
+    if (lockFile.exists() && System.currentTimeMillis() - lockFile.lastModified() > STARTUP_TIMEOUT) {
+      lockFile.delete();
+    }
+
+    if (!lockFile.createNewFile()) return;
+
+    try {
+      List<String> command = new ArrayList<>();
+      command.add(javaCommand);
+      command.addAll(jvmOptions);
+      command.add("-classpath");
+      command.add(getClientLibPath());
+      command.add(RunnerDaemon.class.getName());
+      command.add(stateFile.getAbsolutePath());
+      command.add(getVariable(RunnerDaemon.DAEMON_IDLE_MINUTES, DEFAULT_IDLE_MINUTES));
+      command.add(classPath);
+
+      ProcessBuilder processBuilder = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(daemonDirectory, fingerprint + ".log")));
+
+      // the daemon serves many jobs, it must not see the variables of this job.
+      processBuilder.environment().keySet().removeAll(JOB_VARIABLES);
+      processBuilder.start().getOutputStream().close();
+
+      awaitState(stateFile);
+    } finally {
+      lockFile.delete();
+    }
+  }
+
+  /**
+   * @return the daemon state, {@code null} if the daemon did not start in time.
+   */
+  private static String[] awaitState(File stateFile) {
+    long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+    while (System.currentTimeMillis() < deadline) {
+      String[] state = readState(stateFile);
+      if (state != null) return state;
+
+      try {
+        Thread.sleep(100L);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return the daemon port and token, {@code null} if the state file does not exist.
+   */
+  static String[] readState(File stateFile) {
+    if (!stateFile.isFile()) return null;
+
+    try (InputStream is = new FileInputStream(stateFile)) {
+      byte[] content = new byte[(int) stateFile.length()];
+      int read = 0;
+      while (read < content.length) {
+        int count = is.read(content, read, content.length - read);
+        if (count < 0) break;
+        read += count;
+      }
+
+      String[] state = new String(content, 0, read, Charset.forName("UTF-8")).trim().split(" ");
+      return state.length == 2 ? state : null;
+    } catch (IOException ioe) {
+      return null;
+    }
+  }
+
+  /**
+   * Runs the command in its own JVM.
+   *
+   * @return the command exit code.
+   */
+  private static int fork(String[] args) throws IOException, InterruptedException {
+    return new ProcessBuilder(args).inheritIO().start().waitFor();
+  }
+
+  /**
+   * @return the jar of this client, the daemon is started from the same jar.
+   */
+  private static String getClientLibPath() throws IOException {
+    try {
+      return new File(RunnerClient.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+    } catch (Exception ex) {
+      throw new IOException("Could not resolve the runner location", ex);
+    }
+  }
+
+  /**
+   * @return the environment variable or the system property of the given name.
+   */
+  private static String getVariable(String name, String defaultValue) {
+    String value = System.getenv(name);
+    if (Https.isEmpty(value)) value = System.getProperty(name, defaultValue);
+    return value;
+  }
+
+  /**
+   * @return the md5 hex of the given value.
+   */
+  private static String md5Hex(String value) throws IOException {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("MD5").digest(value.getBytes(Charset.forName("UTF-8")))) {
+        hex.append(String.format("%02x", b & 0xff));
+      }
+
+      return hex.toString();
+    } catch (Exception ex) {
+      throw new IOException("Could not compute the daemon fingerprint", ex);
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package com.qasymphony.qtest.automation.testng.runner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RunnerDaemon is the resident TestNG JVM of one classpath. It accepts the TestNG runs from the
+ * {@link RunnerClient runner client} over a loopback socket, runs each of them in a fresh class
+ * loader and streams the run output back to the client. The daemon runs one suite at a time and
+ * exits when it is idle for the given time.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RunnerDaemon 2026-10-19 12:40:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RunnerDaemon {
+  //~ class properties ========================================================
+  public static final String DAEMON_DIR = "TESTNG_RUNNER_DAEMON_DIR";
+  public static final String DAEMON_IDLE_MINUTES = "TESTNG_RUNNER_DAEMON_IDLE_MINUTES";
+
+  static final int FRAME_EXIT = 0;
+  static final int FRAME_STDOUT = 1;
+  static final int FRAME_STDERR = 2;
+  static final int FRAME_BUSY = 3;
+
+  private final URL[] classPath;
+  private final String token;
+  private final AtomicBoolean busy = new AtomicBoolean();
+
+  //~ class members ===========================================================
+  private RunnerDaemon(URL[] classPath, String token) {
+    this.classPath = classPath;
+    this.token = token;
+  }
+
+  /**
+   * Starts the daemon.
+   *
+   * @param args the state file, the idle minutes and the TestNG classpath.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println("[TestNG Daemon] usage: RunnerDaemon <state-file> <idle-minutes> <classpath>");
+      System.exit(2);
+    }
+
+    File stateFile = new File(args[0]);
+    long idleTimeout = TimeUnit.MINUTES.toMillis(Long.parseLong(args[1]));
+    RunnerDaemon daemon = new RunnerDaemon(toUrls(args[2]), UUID.randomUUID().toString());
+
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null))) {
+      writeState(stateFile, serverSocket.getLocalPort(), daemon.token);
+      daemon.serve(serverSocket, idleTimeout);
+    } finally {
+      // the state file may already belong to the next daemon.
+      String[] state = RunnerClient.readState(stateFile);
+      if (state != null && daemon.token.equals(state[1])) stateFile.delete();
+    }
+
+    System.exit(0);
+  }
+
+  /**
+   * Accepts the runs until the daemon is idle.
+   */
+  private void serve(ServerSocket serverSocket, long idleTimeout) throws IOException {
+    serverSocket.setSoTimeout((int) idleTimeout);
+    while (true) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (SocketTimeoutException ste) {
+        if (busy.get()) continue;
+        return;
+      }
+
+      Thread handler = new Thread("testng-daemon-run") {
+        @Override
+        public void run() {
+          handle(socket);
+        }
+      };
+      handler.setDaemon(true);
+      handler.start();
+    }
+  }
+
+  /**
+   * Handles one run request.
+   */
+  private void handle(Socket socket) {
+    try (Socket closeable = socket) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(closeable.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(closeable.getOutputStream()));
+      if (!token.equals(in.readUTF())) return;
+
+      Map<String, String> properties = new HashMap<>();
+      for (int count = in.readInt(); count > 0; count--) properties.put(in.readUTF(), in.readUTF());
+
+      String[] args = new String[in.readInt()];
+      for (int index = 0; index < args.length; index++) args[index] = in.readUTF();
+
+      // the client runs the suite in its own JVM when the daemon is running another suite.
+      if (!busy.compareAndSet(false, true)) {
+        out.writeByte(FRAME_BUSY);
+        out.flush();
+        return;
+      }
+
+      try {
+        int status = run(properties, args, out);
+        synchronized (out) {
+          out.writeByte(FRAME_EXIT);
+          out.writeInt(status);
+          out.flush();
+        }
+      } finally {
+        busy.set(false);
+      }
+    } catch (IOException ioe) {
+      System.err.println("[TestNG Daemon] could not handle the run, message: " + ioe.getMessage());
+    }
+  }
+
+  /**
+   * Runs TestNG in a fresh class loader, the collector reads the job variables from the system
+   * properties because the daemon environment belongs to no job.
+   *
+   * @return the TestNG status.
+   */
+  private int run(Map<String, String> properties, String[] args, DataOutputStream out) throws IOException {
+    PrintStream stdout = System.out;
+    PrintStream stderr = System.err;
+    Thread currentThread = Thread.currentThread();
+    ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+    Map<String, String> previousProperties = new HashMap<>();
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      previousProperties.put(property.getKey(), System.setProperty(property.getKey(), property.getValue()));
+    }
+
+    URLClassLoader classLoader = new URLClassLoader(classPath, ClassLoader.getSystemClassLoader().getParent());
+    PrintStream runOut = new PrintStream(new FrameOutputStream(out, FRAME_STDOUT), true, "UTF-8");
+    PrintStream runErr = new PrintStream(new FrameOutputStream(out, FRAME_STDERR), true, "UTF-8");
+    try {
+      System.setOut(runOut);
+      System.setErr(runErr);
+      currentThread.setContextClassLoader(classLoader);
+
+      Class<?> testNgClass = classLoader.loadClass("org.testng.TestNG");
+      Object testNg = testNgClass
+        .getMethod("privateMain", String[].class, classLoader.loadClass("org.testng.ITestListener"))
+        .invoke(null, args, null);
+      return (Integer) testNgClass.getMethod("getStatus").invoke(testNg);
+    } catch (InvocationTargetException ite) {
+      ite.getCause().printStackTrace(runErr);
+      return 1;
+    } catch (Exception ex) {
+      ex.printStackTrace(runErr);
+      return 1;
+    } finally {
+      runOut.flush();
+      runErr.flush();
+      System.setOut(stdout);
+      System.setErr(stderr);
+      currentThread.setContextClassLoader(contextClassLoader);
+
+      for (Map.Entry<String, String> property : previousProperties.entrySet()) {
+        if (property.getValue() == null) System.clearProperty(property.getKey());
+        else System.setProperty(property.getKey(), property.getValue());
+      }
+
+      classLoader.close();
+    }
+  }
+
+  /**
+   * @return the class loader URLs of the given classpath, the wildcard entry is expanded to the
+   * jar files of its directory as the java launcher does.
+   */
+  private static URL[] toUrls(String classPath) throws MalformedURLException {
+    List<URL> urls = new ArrayList<>();
+    for (String entry : classPath.split(File.pathSeparator)) {
+      if (entry.length() > 1 && entry.startsWith("\"") && entry.endsWith("\"")) {
+        entry = entry.substring(1, entry.length() - 1);
+      }
+
+      if (entry.isEmpty()) continue;
+
+      if (entry.equals("*") || entry.endsWith(File.separator + "*") || entry.endsWith("/*")) {
+        File[] children = new File(entry.substring(0, entry.length() - 1)).getAbsoluteFile().listFiles();
+        if (children == null) continue;
+
+        for (File child : children) {
+          if (child.isFile() && child.getName().toLowerCase().endsWith(".jar")) urls.add(child.toURI().toURL());
+        }
+      } else {
+        urls.add(new File(entry).getAbsoluteFile().toURI().toURL());
+      }
+    }
+
+    return urls.toArray(new URL[urls.size()]);
+  }
+
+  /**
+   * Publishes the daemon port and token, the state file is replaced atomically so the client
+   * never reads a partial state.
+   */
+  private static void writeState(File stateFile, int port, String token) throws IOException {
+    File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + "." + token + ".tmp");
+    try (OutputStream os = new FileOutputStream(tempFile)) {
+      os.write((port + " " + token).getBytes(Charset.forName("UTF-8")));
+    }
+
+    stateFile.delete();
+    if (!tempFile.renameTo(stateFile)) {
+      tempFile.delete();
+      throw new IOException("Could not write daemon state " + stateFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * The output stream that sends each write as one frame of the run output.
+   */
+  private static final class FrameOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final int frameType;
+
+    private FrameOutputStream(DataOutputStream out, int frameType) {
+      this.out = out;
+      this.frameType = frameType;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return;
+
+      synchronized (out) {
+        out.writeByte(frameType);
+        out.writeInt(len);
+        out.write(b, off, len);
+        out.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.qasymphony.qtest.automation.testng.runner;
+
+import com.qasymphony.qtest.automation.testng.util.Https;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ShardLauncher launches one TestNG JVM per shard suite concurrently and waits for all of them.
+ * The shard suites are given by the {@code TESTNG_SHARD_SUITES} environment variable, the
+ * launcher arguments are the TestNG command without the suite file.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ShardLauncher 2026-10-19 09:40:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ShardLauncher {
+  //~ class properties ========================================================
+  public static final String SHARD_SUITES = "TESTNG_SHARD_SUITES";
+  public static final String SHARD_INDEX = "TESTNG_SHARD_INDEX";
+  public static final String SHARD_COUNT = "TESTNG_SHARD_COUNT";
+
+  //~ class members ===========================================================
+  private ShardLauncher() {}
+
+  /**
+   * Launches the shards.
+   *
+   * @param args the TestNG command and its options.
+   */
+  public static void main(String[] args) throws Exception {
+    String shardSuites = System.getenv(SHARD_SUITES);
+    if (Https.isEmpty(shardSuites)) {
+      shardSuites = System.getProperty(SHARD_SUITES);
+    }
+
+    if (args.length == 0 || Https.isEmpty(shardSuites)) {
+      System.err.println("[TestNG Shard] no TestNG command or shard suite to launch.");
+      System.exit(2);
+    }
+
+    String[] suites = shardSuites.split(File.pathSeparator);
+    final List<Process> processes = new ArrayList<>(suites.length);
+
+    // kill the shards when the launcher is stopped.
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        for (Process process : processes) process.destroy();
+      }
+    });
+
+    for (int index = 0; index < suites.length; index++) {
+      List<String> command = new ArrayList<>(Arrays.asList(args));
+      command.add(suites[index]);
+
+      ProcessBuilder processBuilder = new ProcessBuilder(command).inheritIO();
+      processBuilder.environment().put(SHARD_INDEX, String.valueOf(index));
+      processBuilder.environment().put(SHARD_COUNT, String.valueOf(suites.length));
+      processes.add(processBuilder.start());
+    }
+
+    int exitCode = 0;
+    for (Process process : processes) {
+      exitCode = Math.max(exitCode, process.waitFor());
+    }
+
+    System.exit(exitCode);
+  }
+}
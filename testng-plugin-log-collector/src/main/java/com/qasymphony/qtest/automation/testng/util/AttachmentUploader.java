@@ -0,0 +1,171 @@
+package com.qasymphony.qtest.automation.testng.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AttachmentUploader streams the attachment file to the agent, so the agent does not need to
+ * read the file from the test machine. The file is sent by {@link FileChannel#transferTo} to the
+ * socket of the plain HTTP request, it never passes through the heap; the HTTPS request goes
+ * through the connection stream in small chunks. The files over the size limit are not sent and
+ * the number of concurrent uploads is limited, the agent falls back to the log path then.
+ *
+ * @author Dzung Nguyen
+ * @version $Id AttachmentUploader 2026-10-19 18:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class AttachmentUploader {
+  //~ class properties ========================================================
+  private static final String ATTACHMENT_PATH = "listener/plugin/attachments";
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+  private static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+
+  private final long maxBytes;
+  private final Semaphore uploadPermits;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link AttachmentUploader attachment uploader} instance.
+   *
+   * @param maxBytes the maximum size of the uploaded file.
+   * @param concurrency the maximum number of concurrent uploads.
+   */
+  public AttachmentUploader(long maxBytes, int concurrency) {
+    this.maxBytes = maxBytes;
+    this.uploadPermits = new Semaphore(Math.max(1, concurrency));
+  }
+
+  /**
+   * Uploads the attachment file of the given job instance.
+   *
+   * @param jobInstanceId the given job instance identifier.
+   * @param attachment the given attachment file.
+   * @return the attachment identifier, {@code null} if the file is not uploaded.
+   */
+  public String upload(long jobInstanceId, File attachment) {
+    if (attachment == null || !attachment.isFile() || attachment.length() > maxBytes) return null;
+
+    try {
+      if (!uploadPermits.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS)) return null;
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    String attachmentId = UUID.randomUUID().toString();
+    try (FileInputStream in = new FileInputStream(attachment)) {
+      URL serviceUrl = Https.getServiceUrl(ATTACHMENT_PATH);
+      FileChannel file = in.getChannel();
+      boolean uploaded = "http".equalsIgnoreCase(serviceUrl.getProtocol())
+        ? transferToSocket(serviceUrl, jobInstanceId, attachmentId, attachment.getName(), file)
+        : transferToConnection(serviceUrl, jobInstanceId, attachmentId, attachment.getName(), file);
+
+      return uploaded ? attachmentId : null;
+    } catch (IOException ioe) {
+      // never mind, the agent reads the attachment from the log path.
+      return null;
+    } finally {
+      uploadPermits.release();
+    }
+  }
+
+  /**
+   * Sends the plain HTTP request, the file is transferred to the socket without copying it.
+   *
+   * @return {@code true} if the agent accepts the attachment.
+   */
+  private static boolean transferToSocket(URL serviceUrl, long jobInstanceId, String attachmentId, String name,
+                                          FileChannel file) throws IOException {
+    int port = (serviceUrl.getPort() < 0 ? serviceUrl.getDefaultPort() : serviceUrl.getPort());
+    try (SocketChannel socket = SocketChannel.open()) {
+      socket.socket().connect(new InetSocketAddress(serviceUrl.getHost(), port), TIMEOUT);
+      socket.socket().setSoTimeout(TIMEOUT);
+
+      String header = "POST " + serviceUrl.getFile() + " HTTP/1.1\r\n" +
+        "Host: " + serviceUrl.getHost() + ":" + port + "\r\n" +
+        "Content-Type: application/octet-stream\r\n" +
+        "Content-Length: " + file.size() + "\r\n" +
+        "X-Job-Instance-Id: " + jobInstanceId + "\r\n" +
+        "X-Attachment-Id: " + attachmentId + "\r\n" +
+        "X-Attachment-Name: " + URLEncoder.encode(name, "UTF-8") + "\r\n" +
+        "Connection: close\r\n\r\n";
+      ByteBuffer headerBuffer = ByteBuffer.wrap(header.getBytes(ASCII));
+      while (headerBuffer.hasRemaining()) socket.write(headerBuffer);
+
+      transfer(file, socket);
+
+      // the channel of the socket does not time out, its stream does.
+      InputStream response = socket.socket().getInputStream();
+      StringBuilder statusLine = new StringBuilder();
+      int read;
+      while ((read = response.read()) >= 0 && read != '\n') statusLine.append((char) read);
+
+      String[] status = statusLine.toString().trim().split(" ");
+      return status.length > 1 && status[1].startsWith("2");
+    }
+  }
+
+  /**
+   * Sends the request through the connection stream, it is used when the socket is encrypted.
+   *
+   * @return {@code true} if the agent accepts the attachment.
+   */
+  private static boolean transferToConnection(URL serviceUrl, long jobInstanceId, String attachmentId, String name,
+                                              FileChannel file) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) serviceUrl.openConnection();
+    try {
+      connection.setDoOutput(true);
+      connection.setInstanceFollowRedirects(false);
+      connection.setConnectTimeout(TIMEOUT);
+      connection.setReadTimeout(TIMEOUT);
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type", "application/octet-stream");
+      connection.setRequestProperty("X-Job-Instance-Id", String.valueOf(jobInstanceId));
+      connection.setRequestProperty("X-Attachment-Id", attachmentId);
+      connection.setRequestProperty("X-Attachment-Name", URLEncoder.encode(name, "UTF-8"));
+      connection.setFixedLengthStreamingMode(file.size());
+      connection.setUseCaches(false);
+
+      try (OutputStream out = connection.getOutputStream()) {
+        transfer(file, Channels.newChannel(out));
+      }
+
+      return connection.getResponseCode() / 100 == 2;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Transfers the whole file to the given channel, the request is failed if the file is truncated
+   * while it is sent because the agent expects the length already sent.
+   */
+  private static void transfer(FileChannel file, WritableByteChannel target) throws IOException {
+    long position = 0L;
+    long size = file.size();
+    while (position < size) {
+      long transferred = file.transferTo(position, size - position, target);
+      if (transferred <= 0L) {
+        throw new IOException("the attachment is truncated at " + position + " of " + size + " bytes.");
+      }
+
+      position += transferred;
+    }
+  }
+}
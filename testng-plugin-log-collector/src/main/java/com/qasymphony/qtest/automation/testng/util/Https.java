@@ -24,9 +24,19 @@ public class Https {
    * @param testLog the given test log to sent.
    */
   public static void submitLog(byte[] testLog) {
+    submit(SERVICE_PATH, testLog);
+  }
+
+  /**
+   * Send JSON data to the given agent service path.
+   *
+   * @param servicePath the given service path.
+   * @param data the given JSON data to sent.
+   */
+  public static void submit(String servicePath, byte[] data) {
     HttpURLConnection connection = null;
     try {
-      connection = openConnection();
+      connection = openConnection(servicePath);
 
       // setting data.
       connection.setDoOutput(true);
@@ -36,12 +46,12 @@ public class Https {
       connection.setRequestMethod("POST");
       connection.setRequestProperty("Content-Type", "application/json");
       connection.setRequestProperty("charset", "utf-8");
-      connection.setRequestProperty("Content-Length", Long.toString(testLog.length));
+      connection.setRequestProperty("Content-Length", Long.toString(data.length));
       connection.setUseCaches(false);
 
       // write data to stream.
       try (DataOutputStream writer = new DataOutputStream(connection.getOutputStream())) {
-        writer.write(testLog);
+        writer.write(data);
         writer.flush();
       }
 
@@ -59,14 +69,20 @@ public class Https {
   /**
    * @return the {@link HttpURLConnection HTTP URL connection}.
    */
-  private static HttpURLConnection openConnection() throws IOException {
+  private static HttpURLConnection openConnection(String servicePath) throws IOException {
+    return (HttpURLConnection) getServiceUrl(servicePath).openConnection();
+  }
+
+  /**
+   * @return the URL of the given agent service path.
+   */
+  public static URL getServiceUrl(String servicePath) throws IOException {
     String serviceHost = System.getenv("AGENT_SERVER_URL");
     if (isEmpty(serviceHost)) {
       serviceHost = System.getProperty("AGENT_SERVER_URL", "http://localhost:6789/");
     }
 
-    String serviceUrl = serviceHost + (serviceHost.endsWith("/") ? "" : "/") + SERVICE_PATH;
-    return (HttpURLConnection) new URL(serviceUrl).openConnection();
+    return new URL(serviceHost + (serviceHost.endsWith("/") ? "" : "/") + servicePath);
   }
 
   /**
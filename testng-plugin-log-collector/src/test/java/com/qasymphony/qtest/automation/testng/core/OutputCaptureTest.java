@@ -0,0 +1,27 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class OutputCaptureTest {
+
+  @Test
+  public void testEmptyBuffer() {
+    OutputCapture.RingBuffer buffer = new OutputCapture.RingBuffer(64 * 1024);
+    assertEquals(0, buffer.toByteArray().length);
+    assertEquals(0L, buffer.getDroppedBytes());
+  }
+
+  @Test
+  public void testKeepLastBytes() throws Exception {
+    OutputCapture.RingBuffer buffer = new OutputCapture.RingBuffer(8);
+    byte[] bytes = "first line\nsecond\n".getBytes("US-ASCII");
+    buffer.write(bytes, 0, 6);
+    buffer.write(bytes, 6, bytes.length - 6);
+
+    assertArrayEquals("\nsecond\n".getBytes("US-ASCII"), buffer.toByteArray());
+    assertEquals(bytes.length - 8L, buffer.getDroppedBytes());
+  }
+}
@@ -0,0 +1,84 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressReporterTest {
+
+  private ServerSocket serverSocket;
+  private ExecutorService executor;
+
+  @Before
+  public void init() throws Exception {
+    serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+    serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(10));
+    System.setProperty("AGENT_SERVER_URL", "http://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void destroy() throws Exception {
+    executor.shutdownNow();
+    serverSocket.close();
+    System.clearProperty("AGENT_SERVER_URL");
+  }
+
+  @Test
+  public void testNotWaitForSlowAgent() throws Exception {
+    final ProgressReporter progressReporter = new ProgressReporter(42L, 50L, null);
+    progressReporter.plan(2);
+
+    // the agent accepts the snapshot of the timer and never responds.
+    try (Socket ignored = serverSocket.accept()) {
+      Future<?> plan = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          progressReporter.plan(1);
+          progressReporter.record("PASS");
+          return null;
+        }
+      });
+
+      plan.get(2L, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testKeepLatestSnapshotInSpool() throws Exception {
+    File spoolDirectory = File.createTempFile("spool", "");
+    spoolDirectory.delete();
+    spoolDirectory.mkdirs();
+
+    try {
+      ProgressReporter progressReporter = new ProgressReporter(42L, TimeUnit.MINUTES.toMillis(1), spoolDirectory);
+      progressReporter.plan(1);
+      progressReporter.record("PASS");
+      progressReporter.finish();
+
+      File[] progressFiles = spoolDirectory.listFiles();
+      assertTrue(progressFiles != null && progressFiles.length == 1);
+      assertTrue(progressFiles[0].getName().endsWith(".progress"));
+
+      String snapshot = FileUtils.readFileToString(progressFiles[0], "UTF-8");
+      assertTrue(snapshot, snapshot.contains("\"completed\":1") && snapshot.contains("\"finished\":true"));
+      assertFalse(snapshot.contains("\"failed\":1"));
+    } finally {
+      FileUtils.deleteQuietly(spoolDirectory);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.testng.Assert;
+import org.testng.IAnnotationTransformer;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.testng.annotations.ITestAnnotation;
+
+import static org.junit.Assert.assertEquals;
+
+public class RetryAnalyzerTest {
+
+  private static final AtomicInteger FLAKY_RUNS = new AtomicInteger();
+  private static final AtomicInteger REPEATED_RUNS = new AtomicInteger();
+
+  private List<String> reported;
+
+  @Before
+  public void init() {
+    System.setProperty("TESTNG_RETRY_BUDGET", "10");
+    System.setProperty("JOB_INSTANCE_ID", String.valueOf(System.nanoTime()));
+    FLAKY_RUNS.set(0);
+    REPEATED_RUNS.set(0);
+    UserTransformer.TRANSFORMED.set(0);
+    reported = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @After
+  public void destroy() {
+    System.clearProperty("TESTNG_RETRY_BUDGET");
+    System.clearProperty("JOB_INSTANCE_ID");
+  }
+
+  @Test
+  public void testRetryFailedInvocation() {
+    run(FlakyMethod.class);
+
+    assertEquals(Collections.singletonList("flaky PASS 2"), reported);
+    assertEquals(2, FLAKY_RUNS.get());
+  }
+
+  @Test
+  public void testCallUserTransformer() {
+    System.setProperty("TESTNG_RETRY_LISTENERS", UserTransformer.class.getName());
+    try {
+      run(FlakyMethod.class);
+    } finally {
+      System.clearProperty("TESTNG_RETRY_LISTENERS");
+    }
+
+    assertEquals(Collections.singletonList("flaky PASS 2"), reported);
+    assertEquals(1, UserTransformer.TRANSFORMED.get());
+  }
+
+  @Test
+  public void testNotRetryRepeatedInvocations() {
+    run(RepeatedMethod.class);
+
+    assertEquals(3, REPEATED_RUNS.get());
+    assertEquals(3, reported.size());
+    for (String result : reported) assertEquals("repeated FAIL 1", result);
+  }
+
+  private void run(Class<?> testClass) {
+    TestNG testNG = new TestNG(false);
+    testNG.setVerbose(0);
+    testNG.setTestClasses(new Class[] {testClass});
+    testNG.addListener(new RetryTransformer());
+    testNG.addListener(new TestListenerAdapter() {
+      @Override
+      public void onTestStart(ITestResult result) {
+        RetryAnalyzer.onStart(result);
+      }
+
+      @Override
+      public void onTestSuccess(ITestResult result) {
+        report(result, "PASS");
+      }
+
+      @Override
+      public void onTestFailure(ITestResult result) {
+        report(result, "FAIL");
+      }
+
+      @Override
+      public void onTestSkipped(ITestResult result) {
+        report(result, "SKIP");
+      }
+
+      private void report(ITestResult result, String status) {
+        if (RetryAnalyzer.isRetried(result)) return;
+        reported.add(result.getMethod().getMethodName() + " " + status + " " + RetryAnalyzer.getAttempts(result));
+      }
+    });
+    testNG.run();
+  }
+
+  public static class UserTransformer implements IAnnotationTransformer {
+    private static final AtomicInteger TRANSFORMED = new AtomicInteger();
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+      if (testMethod != null) TRANSFORMED.incrementAndGet();
+    }
+  }
+
+  public static class FlakyMethod {
+    @org.testng.annotations.Test
+    public void flaky() {
+      if (FLAKY_RUNS.incrementAndGet() == 1) Assert.fail("first attempt");
+    }
+  }
+
+  public static class RepeatedMethod {
+    @org.testng.annotations.Test(invocationCount = 3)
+    public void repeated() {
+      REPEATED_RUNS.incrementAndGet();
+      Assert.fail("every invocation");
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.qasymphony.qtest.automation.testng.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class AttachmentUploaderTest {
+
+  private final byte[] content = "first line\nsecond line\n".getBytes();
+  private ServerSocket serverSocket;
+  private ExecutorService executor;
+  private File attachmentDirectory;
+  private File attachment;
+
+  @Before
+  public void init() throws Exception {
+    serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+    System.setProperty("AGENT_SERVER_URL", "http://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+    executor = Executors.newSingleThreadExecutor();
+
+    attachmentDirectory = File.createTempFile("attachments", "");
+    attachmentDirectory.delete();
+    attachment = new File(attachmentDirectory, "screen shot.txt");
+    FileUtils.writeByteArrayToFile(attachment, content);
+  }
+
+  @After
+  public void destroy() throws Exception {
+    executor.shutdownNow();
+    serverSocket.close();
+    System.clearProperty("AGENT_SERVER_URL");
+    FileUtils.deleteQuietly(attachmentDirectory);
+  }
+
+  @Test
+  public void testStreamAttachmentToAgent() throws Exception {
+    Future<Request> received = executor.submit(accept("HTTP/1.1 201 Created"));
+
+    String attachmentId = new AttachmentUploader(1024L, 1).upload(42L, attachment);
+    assertNotNull(attachmentId);
+
+    Request request = received.get(10L, TimeUnit.SECONDS);
+    assertEquals("POST /listener/plugin/attachments HTTP/1.1", request.requestLine);
+    assertEquals("application/octet-stream", request.headers.get("Content-Type"));
+    assertEquals(String.valueOf(content.length), request.headers.get("Content-Length"));
+    assertEquals("42", request.headers.get("X-Job-Instance-Id"));
+    assertEquals(attachmentId, request.headers.get("X-Attachment-Id"));
+    assertEquals("screen+shot.txt", request.headers.get("X-Attachment-Name"));
+    assertArrayEquals(content, request.body);
+  }
+
+  @Test
+  public void testNotAcceptedAttachment() throws Exception {
+    Future<Request> received = executor.submit(accept("HTTP/1.1 500 Internal Server Error"));
+
+    assertNull(new AttachmentUploader(1024L, 1).upload(42L, attachment));
+    assertArrayEquals(content, received.get(10L, TimeUnit.SECONDS).body);
+  }
+
+  @Test
+  public void testSkipOversizeAttachment() throws Exception {
+    assertNull(new AttachmentUploader(content.length - 1, 1).upload(42L, attachment));
+    assertNull(new AttachmentUploader(1024L, 1).upload(42L, new File(attachmentDirectory, "missing.txt")));
+
+    serverSocket.setSoTimeout(200);
+    try (Socket socket = serverSocket.accept()) {
+      fail("the skipped attachment must not be sent, connected from " + socket.getRemoteSocketAddress());
+    } catch (SocketTimeoutException ste) {
+      // nothing is sent.
+    }
+  }
+
+  private Callable<Request> accept(final String statusLine) {
+    return new Callable<Request>() {
+      @Override
+      public Request call() throws Exception {
+        try (Socket socket = serverSocket.accept()) {
+          DataInputStream in = new DataInputStream(socket.getInputStream());
+          Request request = new Request();
+          request.requestLine = readLine(in);
+
+          String header;
+          while (!(header = readLine(in)).isEmpty()) {
+            int separator = header.indexOf(':');
+            request.headers.put(header.substring(0, separator), header.substring(separator + 1).trim());
+          }
+
+          request.body = new byte[Integer.parseInt(request.headers.get("Content-Length"))];
+          in.readFully(request.body);
+
+          socket.getOutputStream().write((statusLine + "\r\nContent-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+          socket.getOutputStream().flush();
+          return request;
+        }
+      }
+    };
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int read;
+    while ((read = in.read()) >= 0 && read != '\n') {
+      if (read != '\r') line.write(read);
+    }
+
+    return line.toString("US-ASCII");
+  }
+
+  private static final class Request {
+    private String requestLine;
+    private final Map<String, String> headers = new HashMap<>();
+    private byte[] body;
+  }
+}
@@ -0,0 +1,210 @@
+package com.qasymphony.qtest.automation.testng;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.qasymphony.qtest.automation.plugin.api.request.QAutomationPluginApiRequest;
+import com.qasymphony.qtest.automation.plugin.api.response.DefaultQAutomationPluginApiResponse;
+import com.qasymphony.qtest.automation.plugin.api.response.QAutomationPluginApiResponse;
+import com.qasymphony.qtest.automation.testng.core.ScanResultCache;
+import org.qas.api.internal.util.json.JsonException;
+import org.qas.api.internal.util.json.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PluginMetrics keeps the timers, counters and histograms of the plugin: the latency and errors
+ * of each request handler, the scan phases and the suite generation recorded by the command
+ * builder in the same registry. The snapshot of all metrics is returned by the
+ * {@value TestNgPlugin#REQUEST_METRICS} request.
+ *
+ * @author Dzung Nguyen
+ * @version $Id PluginMetrics 2026-10-19 15:30:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class PluginMetrics {
+  //~ class properties ========================================================
+  public static final String SCAN_DURATION = "scan.duration";
+  public static final String SCAN_FILES_MATCHED = "scan.files-matched";
+  public static final String SCAN_CLASSES_PARSED = "scan.classes-parsed";
+  public static final String SCAN_CACHE_HITS = "scan.cache.hits";
+  public static final String SCAN_CACHE_MISSES = "scan.cache.misses";
+  public static final String SCAN_CACHE_COALESCED = "scan.cache.coalesced";
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final MetricRegistry registry;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link PluginMetrics plugin metrics} instance.
+   *
+   * @param registry the given metric registry.
+   */
+  public PluginMetrics(MetricRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * @return the metric registry.
+   */
+  public MetricRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Wraps the handler to time its requests and count its error responses. The handler catching
+   * its failure and still responding successfully counts it by {@link #countError(String)}.
+   *
+   * @param name the given request name.
+   * @param handler the given request handler.
+   * @return the timed handler.
+   */
+  public MessageHandler timed(String name, final MessageHandler handler) {
+    final Timer timer = registry.timer(MetricRegistry.name("handler", name));
+    final Counter errors = registry.counter(MetricRegistry.name("handler", name, "errors"));
+    return new MessageHandler() {
+      @Override
+      public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
+        Timer.Context context = timer.time();
+        boolean successful = false;
+        try {
+          QAutomationPluginApiResponse response = handler.handle(request);
+          successful = (response != null
+            && response.responseCode() == DefaultQAutomationPluginApiResponse.SUCCESS_RESPONSE_CODE);
+          return response;
+        } finally {
+          context.stop();
+          if (!successful) errors.inc();
+        }
+      }
+    };
+  }
+
+  /**
+   * Counts the failure the handler caught and reported in its successful response.
+   *
+   * @param name the given request name.
+   */
+  public void countError(String name) {
+    registry.counter(MetricRegistry.name("handler", name, "errors")).inc();
+  }
+
+  /**
+   * Registers the gauges of the given request bulkhead.
+   *
+   * @param bulkhead the given request bulkhead.
+   */
+  public void register(final RequestBulkhead bulkhead) {
+    registry.register(MetricRegistry.name("bulkhead", bulkhead.getName(), "active"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return bulkhead.getActiveCount();
+      }
+    });
+    registry.register(MetricRegistry.name("bulkhead", bulkhead.getName(), "queued"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return bulkhead.getQueueSize();
+      }
+    });
+    registry.register(MetricRegistry.name("bulkhead", bulkhead.getName(), "rejected"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return bulkhead.getRejectedCount();
+      }
+    });
+  }
+
+  /**
+   * Registers the gauges of the given scan result cache.
+   *
+   * @param scanResultCache the given scan result cache.
+   */
+  public void register(final ScanResultCache scanResultCache) {
+    registry.register(SCAN_CACHE_HITS, new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return scanResultCache.getHitCount();
+      }
+    });
+    registry.register(SCAN_CACHE_MISSES, new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return scanResultCache.getMissCount();
+      }
+    });
+    registry.register(SCAN_CACHE_COALESCED, new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return scanResultCache.getCoalescedCount();
+      }
+    });
+  }
+
+  /**
+   * Records the scan of a test directory.
+   *
+   * @param filesMatched the number of files matched by the scan patterns.
+   * @param classesParsed the number of parsed class files.
+   * @param nanos the scan time in nanoseconds.
+   */
+  public void recordScan(int filesMatched, int classesParsed, long nanos) {
+    registry.timer(SCAN_DURATION).update(nanos, TimeUnit.NANOSECONDS);
+    registry.histogram(SCAN_FILES_MATCHED).update(filesMatched);
+    registry.histogram(SCAN_CLASSES_PARSED).update(classesParsed);
+  }
+
+  /**
+   * @return the JSON snapshot of all metrics, the times are in milliseconds.
+   * @throws JsonException if an error occurs during building the snapshot.
+   */
+  public JsonObject toJson() throws JsonException {
+    JsonObject timers = new JsonObject();
+    for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+      JsonObject timerJson = toJson(timer.getValue().getSnapshot(), NANOS_PER_MILLI)
+        .put("count", timer.getValue().getCount())
+        .put("rate_1m", timer.getValue().getOneMinuteRate());
+      timers.put(timer.getKey(), timerJson);
+    }
+
+    JsonObject histograms = new JsonObject();
+    for (Map.Entry<String, Histogram> histogram : registry.getHistograms().entrySet()) {
+      histograms.put(histogram.getKey(), toJson(histogram.getValue().getSnapshot(), 1.0d)
+        .put("count", histogram.getValue().getCount()));
+    }
+
+    JsonObject counters = new JsonObject();
+    for (Map.Entry<String, Counter> counter : registry.getCounters().entrySet()) {
+      counters.put(counter.getKey(), counter.getValue().getCount());
+    }
+
+    JsonObject gauges = new JsonObject();
+    for (@SuppressWarnings("rawtypes") Map.Entry<String, Gauge> gauge : registry.getGauges().entrySet()) {
+      gauges.put(gauge.getKey(), gauge.getValue().getValue());
+    }
+
+    return new JsonObject()
+      .put("timers", timers)
+      .put("histograms", histograms)
+      .put("counters", counters)
+      .put("gauges", gauges);
+  }
+
+  /**
+   * @return the JSON of the given snapshot, its values are divided by the given unit.
+   */
+  private static JsonObject toJson(Snapshot snapshot, double unit) throws JsonException {
+    return new JsonObject()
+      .put("min", snapshot.getMin() / unit)
+      .put("mean", snapshot.getMean() / unit)
+      .put("p50", snapshot.getMedian() / unit)
+      .put("p95", snapshot.get95thPercentile() / unit)
+      .put("p99", snapshot.get99thPercentile() / unit)
+      .put("max", snapshot.getMax() / unit);
+  }
+}
@@ -0,0 +1,151 @@
+package com.qasymphony.qtest.automation.testng;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import com.qasymphony.qtest.automation.plugin.api.request.QAutomationPluginApiRequest;
+import com.qasymphony.qtest.automation.plugin.api.response.QAutomationPluginApiResponse;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.qasymphony.qtest.automation.plugin.api.response.DefaultQAutomationPluginApiResponse.error;
+import static java.lang.String.format;
+
+/**
+ * RequestBulkhead runs the requests of one type on its own bounded executor, so the slow
+ * requests of a type never hold the threads of the other types. The request is rejected when
+ * all threads are busy and the queue is full, or when its response is not ready within the wait
+ * timeout of the type. The type whose request sets up state the caller must clean up has no wait
+ * timeout, the caller always gets the response of the request that ran.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RequestBulkhead 2026-10-19 15:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RequestBulkhead {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(RequestBulkhead.class);
+
+  private final String name;
+  private final long waitTimeout;
+  private final ThreadPoolExecutor executor;
+  private final AtomicInteger rejectedCount = new AtomicInteger();
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link RequestBulkhead request bulkhead} instance.
+   *
+   * @param name the given bulkhead name.
+   * @param threads the maximum number of requests run at the same time.
+   * @param queueSize the maximum number of requests waiting for a thread.
+   * @param waitTimeout the time in milliseconds the caller waits for the response, {@code 0} to
+   * wait until the request completes.
+   */
+  public RequestBulkhead(final String name, int threads, int queueSize, long waitTimeout) {
+    this.name = name;
+    this.waitTimeout = waitTimeout;
+    this.executor = new ThreadPoolExecutor(
+      threads, threads, 60L, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+      new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "testng-" + name + "-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      }
+    );
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Runs the request on the bulkhead and waits for its response.
+   *
+   * @param handler the given request handler.
+   * @param request the given request.
+   * @return the handler response, the error response if the request is rejected or its response
+   * is not ready within the wait timeout.
+   */
+  public QAutomationPluginApiResponse execute(final MessageHandler handler, final QAutomationPluginApiRequest request) {
+    Future<QAutomationPluginApiResponse> response;
+    try {
+      response = executor.submit(new Callable<QAutomationPluginApiResponse>() {
+        @Override
+        public QAutomationPluginApiResponse call() throws Exception {
+          return handler.handle(request);
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      return reject();
+    }
+
+    try {
+      return waitTimeout > 0L ? response.get(waitTimeout, TimeUnit.MILLISECONDS) : response.get();
+    } catch (TimeoutException te) {
+      // the waiting request never runs, the running one completes but its response is dropped.
+      response.cancel(false);
+      return reject();
+    } catch (InterruptedException ie) {
+      response.cancel(true);
+      Thread.currentThread().interrupt();
+      return error(format("The %s request was interrupted.", name));
+    } catch (ExecutionException ee) {
+      return error(ee.getCause() == null ? ee.getMessage() : ee.getCause().getMessage());
+    }
+  }
+
+  /**
+   * @return the error response asking the caller to retry later.
+   */
+  private QAutomationPluginApiResponse reject() {
+    rejectedCount.incrementAndGet();
+    LOG.warn(format("[TestNG Plugin] reject %s request, %d running and %d waiting.",
+      name, executor.getActiveCount(), executor.getQueue().size()));
+    return error(format("Too many %s requests, please retry later.", name));
+  }
+
+  /**
+   * @return the bulkhead name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of running requests.
+   */
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * @return the number of waiting requests.
+   */
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * @return the number of rejected requests.
+   */
+  public int getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * Stops accepting requests, the running requests are completed.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
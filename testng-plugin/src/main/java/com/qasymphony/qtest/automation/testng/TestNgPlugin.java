@@ -1,5 +1,8 @@
 package com.qasymphony.qtest.automation.testng;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.qasymphony.qtest.automation.domain.TestScript;
 import com.qasymphony.qtest.automation.domain.testcase.TestCase;
 import com.qasymphony.qtest.automation.plugin.access.atm.model.AtmPluginConfiguration;
@@ -15,8 +18,15 @@ import com.qasymphony.qtest.automation.plugin.api.context.PluginContext;
 import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
 import com.qasymphony.qtest.automation.plugin.api.request.QAutomationPluginApiRequest;
 import com.qasymphony.qtest.automation.plugin.api.response.QAutomationPluginApiResponse;
+import com.qasymphony.qtest.automation.testng.core.ExecutableResolver;
+import com.qasymphony.qtest.automation.testng.core.RequestTrace;
+import com.qasymphony.qtest.automation.testng.core.RequestTracer;
+import com.qasymphony.qtest.automation.testng.core.ScanResultCache;
+import com.qasymphony.qtest.automation.testng.core.StreamingRequestParser;
+import com.qasymphony.qtest.automation.testng.core.TestLogSpool;
 import com.qasymphony.qtest.automation.testng.core.TestNGClassScanner;
 import com.qasymphony.qtest.automation.testng.core.TestNgCommandBuilder;
+import com.qasymphony.qtest.automation.testng.core.TestNgSettings;
 import com.qasymphony.qtest.automation.util.SystemEnvironment;
 import com.qasymphony.qtest.automation.util.validators.FileValidator;
 import com.qasymphony.qtest.automation.util.validators.Validation;
@@ -25,10 +35,14 @@ import org.qas.api.internal.util.json.JsonArray;
 import org.qas.api.internal.util.json.JsonException;
 import org.qas.api.internal.util.json.JsonObject;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 import static com.qasymphony.qtest.automation.plugin.api.response.DefaultQAutomationPluginApiResponse.success;
@@ -53,12 +67,19 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
   public static final String REQUEST_BUILD_COMMAND = "agent.atm.build-command";
   public static final String REQUEST_COLLECT_TESTLOGS = "agent.atm.collect-testlog";
 	public static final String REQUEST_CLEANUP_ENVIRONMENT = "agent.atm.cleanup-environment";
+  public static final String REQUEST_METRICS = "agent.atm.metrics";
 
   private static final List<String> supportedVersions = Arrays.asList("1.0");
 
   private final SystemEnvironment systemEnvironment;
+  private final TestNgSettings settings;
   private final TestNgCommandBuilder testNgCommandBuilder;
+  private final PluginMetrics pluginMetrics;
+  private final RequestTracer requestTracer;
+  private final StreamingRequestParser requestParser = new StreamingRequestParser();
+  private final ScanResultCache scanResultCache;
   private final Map<String, MessageHandler> messageHandlerMap = new LinkedHashMap<>();
+  private final Map<String, RequestBulkhead> bulkheadMap = new LinkedHashMap<>();
 
   //~ class members ===========================================================
   /**
@@ -66,12 +87,103 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
    */
   public TestNgPlugin() {
     this.systemEnvironment = new SystemEnvironment();
-    this.testNgCommandBuilder = new TestNgCommandBuilder(systemEnvironment);
+    this.pluginMetrics = new PluginMetrics(new MetricRegistry());
+    this.testNgCommandBuilder = new TestNgCommandBuilder(systemEnvironment, pluginMetrics.getRegistry());
+    this.settings = new TestNgSettings(systemEnvironment);
+    this.requestTracer = new RequestTracer(settings.getTraceBodySampleInterval(), settings.getTraceBodyMaxLength());
+    this.scanResultCache = new ScanResultCache(settings.getScanCacheSize(), settings.getScanCacheTimeToLive());
     messageHandlerMap.put(REQUEST_PLUGIN_CONFIGURATION, getPluginConfigurationMessageHandler());
     messageHandlerMap.put(REQUEST_SCAN_TESTCASE, scanTestCasesMessageHandler());
     messageHandlerMap.put(REQUEST_BUILD_COMMAND, buildCommandMessageHandler());
     messageHandlerMap.put(REQUEST_COLLECT_TESTLOGS, collectTestLogsMessageHandler());
 		messageHandlerMap.put(REQUEST_CLEANUP_ENVIRONMENT, cleanupEnvironmentMessageHandler());
+    messageHandlerMap.put(REQUEST_METRICS, metricsMessageHandler());
+
+    // the long scans must not hold the threads of build and cleanup requests; the identical
+    // scans share one scan, so more than one scan thread does not multiply the same work.
+    bulkheadMap.put(REQUEST_PLUGIN_CONFIGURATION, createBulkhead(settings, "plugin-configuration", 2, 16, 30));
+    bulkheadMap.put(REQUEST_SCAN_TESTCASE, createBulkhead(settings, "scan-testcase", 2, 8, 600));
+    bulkheadMap.put(REQUEST_BUILD_COMMAND, createBulkhead(settings, "build-command", 4, 32, 0));
+    bulkheadMap.put(REQUEST_COLLECT_TESTLOGS, createBulkhead(settings, "collect-testlog", 2, 16, 60));
+    bulkheadMap.put(REQUEST_CLEANUP_ENVIRONMENT, createBulkhead(settings, "cleanup-environment", 2, 32, 0));
+    bulkheadMap.put(REQUEST_METRICS, createBulkhead(settings, "metrics", 1, 4, 10));
+
+    // trace and time every handler, the bulkhead gauges show the requests waiting for a thread.
+    for (Map.Entry<String, MessageHandler> messageHandler : messageHandlerMap.entrySet()) {
+      messageHandler.setValue(pluginMetrics.timed(
+        messageHandler.getKey(), traced(messageHandler.getKey(), messageHandler.getValue())
+      ));
+    }
+
+    for (RequestBulkhead bulkhead : bulkheadMap.values()) pluginMetrics.register(bulkhead);
+    pluginMetrics.register(scanResultCache);
+
+    final ExecutableResolver executableResolver = testNgCommandBuilder.getExecutableResolver();
+    pluginMetrics.getRegistry().register("resolver.count", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return executableResolver.getResolutionCount();
+      }
+    });
+    pluginMetrics.getRegistry().register("resolver.time-ms", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return TimeUnit.NANOSECONDS.toMillis(executableResolver.getResolutionNanos());
+      }
+    });
+  }
+
+  /**
+   * Wraps the handler to trace its requests on the handling thread.
+   *
+   * @param name the given request name.
+   * @param handler the given request handler.
+   * @return the traced handler.
+   */
+  private MessageHandler traced(final String name, final MessageHandler handler) {
+    return new MessageHandler() {
+      @Override
+      public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
+        RequestTrace trace = requestTracer.start(name);
+        try {
+          return handler.handle(request);
+        } finally {
+          LOG.info(format("[TestNG Trace %s] %s", trace.getTraceId(), trace.finish()));
+        }
+      }
+    };
+  }
+
+  /**
+   * Logs the handled request, the body is only logged for the sampled request and truncated.
+   *
+   * @param message the given log message.
+   * @param request the given request.
+   */
+  private void logRequest(String message, QAutomationPluginApiRequest request) {
+    RequestTrace trace = RequestTrace.current();
+    String body = requestTracer.formatBody(trace, request.requestBody());
+    if (body == null) {
+      LOG.info(format("[TestNG Plugin] %s, trace: %s.", message, trace));
+    } else {
+      LOG.info(format("[TestNG Plugin] %s, trace: %s, with message: %s", message, trace, body));
+    }
+  }
+
+  /**
+   * @return the bulkhead of the given request type, its size and wait timeout are configured by
+   * the settings. The type without the default wait timeout never times out: its late response
+   * would leave the environment it set up behind.
+   */
+  private static RequestBulkhead createBulkhead(TestNgSettings settings, String name, int threads, int queueSize,
+                                                int waitSeconds) {
+    return new RequestBulkhead(
+      name,
+      Math.max(1, settings.getInt(TestNgSettings.BULKHEAD_PREFIX + name + ".threads", threads)),
+      Math.max(1, settings.getInt(TestNgSettings.BULKHEAD_PREFIX + name + ".queue-size", queueSize)),
+      waitSeconds <= 0 ? 0L
+        : TimeUnit.SECONDS.toMillis(Math.max(1, settings.getInt(TestNgSettings.BULKHEAD_PREFIX + name + ".wait-seconds", waitSeconds)))
+    );
   }
 
   /**
@@ -95,6 +207,18 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
       validation.logErrors();
     }
 
+    // resolve the collector and tool executables and load the parser classes before the first job.
+    if (settings.isWarmUp()) {
+      long startTime = System.nanoTime();
+      ExecutableResolver executableResolver = testNgCommandBuilder.getExecutableResolver();
+      testNgCommandBuilder.warmUp();
+      warmUpScanner();
+      LOG.info(format("[TestNG Plugin] warmed up in %d ms, resolved %d executable(s) in %d ms.",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+        executableResolver.getResolutionCount(),
+        TimeUnit.NANOSECONDS.toMillis(executableResolver.getResolutionNanos())));
+    }
+
     LOG.info(format("[TestNG Plugin] Loaded."));
   }
 
@@ -116,15 +240,45 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
       destinationFile.delete();
     }
 
+    for (RequestBulkhead bulkhead : bulkheadMap.values()) bulkhead.shutdown();
+
     LOG.info(format("[TestNG Plugin] UnLoaded."));
   }
 
+  /**
+   * Scans the tiny test directory holding one plugin class and its suite, so the scanner and its
+   * class parser are loaded before the first scan request.
+   */
+  private void warmUpScanner() {
+    File warmUpDirectory = new File(settings.getStateDirectory(), "warm-up-" + UUID.randomUUID().toString());
+    TestNGClassScanner classScanner = new TestNGClassScanner(new File(warmUpDirectory, "template"));
+    try (InputStream classStream = MessageHandler.class.getResourceAsStream("MessageHandler.class")) {
+      if (classStream != null) {
+        FileUtils.copyInputStreamToFile(classStream, new File(warmUpDirectory, "classes/MessageHandler.class"));
+      }
+      FileUtils.writeStringToFile(new File(warmUpDirectory, "testng.xml"),
+        "<suite name=\"warm-up\"><test name=\"warm-up\"><classes><class name=\""
+          + MessageHandler.class.getName() + "\"/></classes></test></suite>", "UTF-8");
+
+      classScanner.scan(normalizeWithEndSeparator(warmUpDirectory.getAbsolutePath()), "**/*.xml", "", "", false);
+    } catch (Exception e) {
+      LOG.warn(format("[TestNG Plugin] Could not warm up the scanner. Message: %s", e.getMessage()));
+    } finally {
+      try {
+        classScanner.cleanScanner();
+      } catch (Exception e) {
+        LOG.warn(format("[TestNG Plugin] Error occurred during cleaning scan resource. Message: %s", e.getMessage()));
+      }
+      FileUtils.deleteQuietly(warmUpDirectory);
+    }
+  }
+
   @Override
   public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request)
     throws UnhandledRequestTypeException {
     try {
       if (messageHandlerMap.containsKey(request.requestName())) {
-        return messageHandlerMap.get(request.requestName()).handle(request);
+        return bulkheadMap.get(request.requestName()).execute(messageHandlerMap.get(request.requestName()), request);
       }
 
       return badRequest(format("Invalid request name %s", request.requestName()));
@@ -145,14 +299,28 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
     return new MessageHandler() {
       @Override
       public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
-        LOG.info(format("[TestNG Plugin] handle build command request with message: %s", request.requestBody()));
+        logRequest("handle build command request", request);
         try {
-          BuildCommandRequest commandRequest =
-            new BuildCommandRequest().fromJson(new JsonObject(request.requestBody()));
+          BuildCommandRequest commandRequest;
+          RequestTrace.Span parseSpan = RequestTrace.span("parse");
+          try {
+            commandRequest = requestParser.parseBuildCommand(request.requestBody());
+          } finally {
+            parseSpan.close();
+          }
+
+          CommandResponse commandResponse = testNgCommandBuilder.buildCommand(commandRequest);
+          if (commandResponse.hasError()) pluginMetrics.countError(REQUEST_BUILD_COMMAND);
 
-          return success(testNgCommandBuilder.buildCommand(commandRequest).toJson().toString());
+          RequestTrace.Span respondSpan = RequestTrace.span("respond");
+          try {
+            return success(commandResponse.toJson().toString());
+          } finally {
+            respondSpan.close();
+          }
         } catch (Exception e) {
           LOG.warn(format("[TestNG Plugin] Error occurs during building command. Message: %s", e.getMessage()));
+          pluginMetrics.countError(REQUEST_BUILD_COMMAND);
           return success(new CommandResponse().addError(e.getMessage()).toJson().toString());
         }
       }
@@ -164,36 +332,32 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
    */
   MessageHandler cleanupEnvironmentMessageHandler() {
     return new MessageHandler() {
-			@SuppressWarnings({"unchecked"})
       @Override
       public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
-				LOG.info(format("[TestNG Plugin] handle cleanup environment request with message: %s", request.requestBody()));
+				logRequest("handle cleanup environment request", request);
 				try {
 					if (request.requestBody() != null) {
-						JsonObject cleanupJson = new JsonObject(request.requestBody());
-						
-						BuildCommandRequest buildCommand = new BuildCommandRequest();
-						JsonObject commandRequestJson = cleanupJson.optJsonObject("command_request");
-						if (commandRequestJson != null) {
-							buildCommand = buildCommand.fromJson(commandRequestJson);
-						}
-						
-						// create map of environment.
-						JsonObject environmentJson = cleanupJson.optJsonObject("environments");
+						// read the command request and the map of environment.
+						BuildCommandRequest buildCommand;
 						Map<String, String> environmentVariables = new HashMap<>();
-						if (environmentJson != null && environmentJson.length() > 0) {
-							Iterator<String> keyIt = (Iterator<String>) environmentJson.keys();
-							while (keyIt.hasNext()) {
-								String key = keyIt.next();
-								environmentVariables.put(key, environmentJson.optString(key));
-							}
+						RequestTrace.Span parseSpan = RequestTrace.span("parse");
+						try {
+							buildCommand = requestParser.parseCleanupEnvironment(request.requestBody(), environmentVariables);
+						} finally {
+							parseSpan.close();
 						}
 						
 						// cleanup environment.
-						testNgCommandBuilder.cleanupEnvironment(buildCommand, environmentVariables);
+						RequestTrace.Span cleanupSpan = RequestTrace.span("cleanup");
+						try {
+							testNgCommandBuilder.cleanupEnvironment(buildCommand, environmentVariables);
+						} finally {
+							cleanupSpan.close();
+						}
 					}
 				} catch (Exception e) {
           LOG.warn(format("[TestNG Plugin] Error occurs during cleanup environment. Message: %s", e.getMessage()));
+          pluginMetrics.countError(REQUEST_CLEANUP_ENVIRONMENT);
 				}
 				
         return success("{}");
@@ -219,15 +383,79 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
   }
 
   /**
-   * @return the collection of test-logs; this handler only return the empty list of
-   * test-log because supporting realtime test-log collecting.
+   * @return the collection of test-logs; this handler returns the empty list of test-log when
+   * the collector submits the test-logs in realtime. When the test-logs are pulled, the request
+   * {@code {"job_id": 1, "cursor": "..."}} returns the next batch of the spooled test-logs,
+   * the latest progress snapshots and the cursor of the following batch. The spool of the
+   * completed job is removed when the agent pulls once more with the final cursor.
    */
   MessageHandler collectTestLogsMessageHandler() {
     return new MessageHandler() {
       @Override
       public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
         LOG.info("[TestNG Plugin] handle collect test-logs request.");
-        return success("[]");
+        if (request.requestBody() == null || request.requestBody().trim().isEmpty()) return success("[]");
+
+        try {
+          JsonObject collectJson;
+          RequestTrace.Span parseSpan = RequestTrace.span("parse");
+          try {
+            collectJson = new JsonObject(request.requestBody());
+          } finally {
+            parseSpan.close();
+          }
+          if (!collectJson.has("job_id")) return success("[]");
+
+          long jobId = collectJson.getLong("job_id");
+          TestLogSpool.Batch batch = testNgCommandBuilder.getTestLogSpool().read(
+            jobId,
+            collectJson.optString("cursor", ""),
+            Math.min(Math.max(1, collectJson.optInt("max_results", settings.getTestLogBatchSize())), settings.getTestLogBatchSize()),
+            settings.getTestLogBatchBytes()
+          );
+
+          // the test logs are JSON objects already, they are not parsed again.
+          RequestTrace.Span respondSpan = RequestTrace.span("respond");
+          try {
+            StringBuilder response = new StringBuilder("{\"job_id\":").append(jobId)
+              .append(",\"cursor\":").append(JsonObject.quote(batch.getCursor()))
+              .append(",\"completed\":").append(batch.isCompleted())
+              .append(",\"test_logs\":[");
+            for (int index = 0; index < batch.getTestLogs().size(); index++) {
+              if (index > 0) response.append(',');
+              response.append(batch.getTestLogs().get(index));
+            }
+
+            response.append("],\"progress\":[");
+            for (int index = 0; index < batch.getProgress().size(); index++) {
+              if (index > 0) response.append(',');
+              response.append(batch.getProgress().get(index));
+            }
+
+            return success(response.append("]}").toString());
+          } finally {
+            respondSpan.close();
+          }
+        } catch (Exception e) {
+          LOG.warn(format("[TestNG Plugin] Error occurs during collecting test-logs. Message: %s", e.getMessage()));
+          return error(format("Could not collect test-logs. Message: %s", e.getMessage()));
+        }
+      }
+    };
+  }
+
+  /**
+   * @return the metrics message handler, it returns the snapshot of the plugin metrics.
+   */
+  MessageHandler metricsMessageHandler() {
+    return new MessageHandler() {
+      @Override
+      public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
+        try {
+          return success(pluginMetrics.toJson().toString());
+        } catch (JsonException jex) {
+          return error(format("Could not build the plugin metrics. Message: %s", jex.getMessage()));
+        }
       }
     };
   }
@@ -239,51 +467,94 @@ public class TestNgPlugin extends AbstractQAutomationPlugin {
     return new MessageHandler() {
       @Override
       public QAutomationPluginApiResponse handle(QAutomationPluginApiRequest request) {
-        LOG.info(format("[TestNG Plugin] handle scan test-case with message: %s", request.requestBody()));
+        logRequest("handle scan test-case", request);
         List<TestCase> testCases = null;
 
-				TestNGClassScanner classScanner = null;
         try {
-          TestScript testScript = new TestScript().fromJson(new JsonObject(request.requestBody()));
-
-          String workingDirectory = normalizeWithEndSeparator(testScript.getTestDirectory());
-          File templateFile = new File(workingDirectory, UUID.randomUUID().toString());
-          classScanner = new TestNGClassScanner(templateFile);
-
-          testCases = classScanner.scan(
-            workingDirectory,
-            testScript.getIncludePattern(),
-            testScript.getExcludePattern(),
-            normalizeWithEndSeparator(testScript.getLibraryDirectory()),
-            testScript.isScanLibrary()
-          );
-        } catch (JsonException jex) {
-          // ignore this exception.
+          TestScript testScript;
+          RequestTrace.Span parseSpan = RequestTrace.span("parse");
+          try {
+            testScript = requestParser.parseTestScript(request.requestBody());
+          } finally {
+            parseSpan.close();
+          }
+
+          final String workingDirectory = normalizeWithEndSeparator(testScript.getTestDirectory());
+          final String includePattern = testScript.getIncludePattern();
+          final String excludePattern = testScript.getExcludePattern();
+          final String libraryDirectory = normalizeWithEndSeparator(testScript.getLibraryDirectory());
+          final boolean scanLibrary = testScript.isScanLibrary();
+
+          // the identical scans requested at the same time share one scan, the cached result is
+          // checked against the scanned files once its time-to-live is over.
+          RequestTrace.Span scanSpan = RequestTrace.span("scan");
+          try {
+            testCases = scanResultCache.get(
+              ScanResultCache.keyOf(workingDirectory, includePattern, excludePattern, libraryDirectory, scanLibrary),
+              Arrays.asList(workingDirectory, libraryDirectory),
+              new Callable<List<TestCase>>() {
+                @Override
+                public List<TestCase> call() throws Exception {
+                  return scan(workingDirectory, includePattern, excludePattern, libraryDirectory, scanLibrary);
+                }
+              }
+            );
+          } finally {
+            scanSpan.close();
+          }
+        } catch (JsonProcessingException jpe) {
+          // the malformed request scans nothing.
+          pluginMetrics.countError(REQUEST_SCAN_TESTCASE);
         } catch (Exception e) {
           LOG.warn(format("[TestNG Plugin] Error occurs during scan TestNG test class. message: %s", e.getMessage()));
+          pluginMetrics.countError(REQUEST_SCAN_TESTCASE);
         } finally {
-					try {
-        		classScanner.cleanScanner();
-					} catch (Exception e) {
-						LOG.warn(format("[TestNG Plugin] Error occurred during cleaning scan resource. Message: %s", e.getMessage()), e);
-					}
-					
 					LOG.info(format("[TestNG Plugin] scan test-case done."));
         }
 
-        JsonArray jaTestCase = new JsonArray();
+        RequestTrace.Span respondSpan = RequestTrace.span("respond");
+        try {
+          JsonArray jaTestCase = new JsonArray();
 
-        if (testCases != null && !testCases.isEmpty()) {
-          for (TestCase tc : testCases) {
-            jaTestCase.put(tc.toJson());
+          if (testCases != null && !testCases.isEmpty()) {
+            for (TestCase tc : testCases) {
+              jaTestCase.put(tc.toJson());
+            }
           }
-        }
 
-        return success(jaTestCase.toString());
+          return success(jaTestCase.toString());
+        } finally {
+          respondSpan.close();
+        }
       }
     };
   }
 	
+  /**
+   * Scans the TestNG test classes of the given test directory.
+   *
+   * @return the list of scanned test-cases.
+   * @throws Exception if an error occurs during scanning.
+   */
+  private List<TestCase> scan(String workingDirectory, String includePattern, String excludePattern,
+                              String libraryDirectory, boolean scanLibrary) throws Exception {
+    TestNGClassScanner classScanner = new TestNGClassScanner(new File(workingDirectory, UUID.randomUUID().toString()));
+    try {
+      long startTime = System.nanoTime();
+      List<TestCase> testCases = classScanner.scan(workingDirectory, includePattern, excludePattern, libraryDirectory, scanLibrary);
+      pluginMetrics.recordScan(
+        classScanner.getMatchedFileCount(), classScanner.getParsedClassCount(), System.nanoTime() - startTime
+      );
+      return testCases;
+    } finally {
+      try {
+        classScanner.cleanScanner();
+      } catch (Exception e) {
+        LOG.warn(format("[TestNG Plugin] Error occurred during cleaning scan resource. Message: %s", e.getMessage()), e);
+      }
+    }
+  }
+
 	private static String normalizeWithEndSeparator(String filename) {
     String normalize = FilenameUtils.normalizeNoEndSeparator(filename);
     File file = new File(filename);
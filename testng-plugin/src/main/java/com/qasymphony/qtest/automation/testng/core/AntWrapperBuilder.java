@@ -0,0 +1,210 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import org.apache.commons.lang.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * AntWrapperBuilder generates the Ant build file that runs the shard suites of a job in a
+ * {@code <parallel>} block. When the TestNG classpath reference is known, the wrapper imports the
+ * user build file and runs one {@code <testng>} task per shard suite; otherwise it calls the user
+ * target once per shard suite with the {@code testng.suite.file} property.
+ *
+ * @author Dzung Nguyen
+ * @version $Id AntWrapperBuilder 2026-10-19 14:20:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class AntWrapperBuilder {
+  //~ class properties ========================================================
+  public static final String WRAPPER_TARGET = "qtest-testng-shards";
+
+  private final File buildFile;
+  private final String target;
+  private String prepareTarget;
+  private String classpathRef;
+  private String collectorPath;
+  private String listeners;
+  private int threadCount = 1;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link AntWrapperBuilder Ant wrapper builder} instance.
+   *
+   * @param buildFile the user build file.
+   * @param target the user target running TestNG.
+   */
+  public AntWrapperBuilder(File buildFile, String target) {
+    this.buildFile = buildFile;
+    this.target = target;
+  }
+
+  /**
+   * Sets the target run once before the shards, e.g. the target compiling the tests.
+   *
+   * @param prepareTarget the given prepare target.
+   * @return the current builder.
+   */
+  public AntWrapperBuilder withPrepareTarget(String prepareTarget) {
+    this.prepareTarget = prepareTarget;
+    return this;
+  }
+
+  /**
+   * Sets the reference of the TestNG classpath defined in the user build file.
+   *
+   * @param classpathRef the given classpath reference.
+   * @param collectorPath the log collector lib path added to the TestNG classpath.
+   * @return the current builder.
+   */
+  public AntWrapperBuilder withClasspathRef(String classpathRef, String collectorPath) {
+    this.classpathRef = classpathRef;
+    this.collectorPath = collectorPath;
+    return this;
+  }
+
+  /**
+   * Sets the TestNG listeners of the {@code <testng>} tasks.
+   *
+   * @param listeners the comma separated listener classes, {@code null} to keep the listeners.
+   * @return the current builder.
+   */
+  public AntWrapperBuilder withListeners(String listeners) {
+    this.listeners = listeners;
+    return this;
+  }
+
+  /**
+   * Sets the number of shards run at the same time.
+   *
+   * @param threadCount the given thread count.
+   * @return the current builder.
+   */
+  public AntWrapperBuilder withThreadCount(int threadCount) {
+    this.threadCount = Math.max(1, threadCount);
+    return this;
+  }
+
+  /**
+   * Writes the wrapper build file next to the user build file, so the relative paths of the
+   * imported build file are resolved the same way.
+   *
+   * @param shardSuites the given shard suites.
+   * @return the wrapper build file.
+   * @throws ParserConfigurationException if an error occurs during parsing the user build file.
+   * @throws IOException if an error occurs during reading the user build file.
+   * @throws TransformerException if an error occurs during writing the wrapper.
+   */
+  public File write(List<String> shardSuites) throws ParserConfigurationException, IOException, TransformerException {
+    Document doc = XmlFactories.newDocumentBuilder().newDocument();
+
+    Element projectElement = doc.createElement("project");
+    projectElement.setAttribute("name", "qtest-testng-wrapper");
+    projectElement.setAttribute("default", WRAPPER_TARGET);
+    doc.appendChild(projectElement);
+
+    Element targetElement = doc.createElement("target");
+    targetElement.setAttribute("name", WRAPPER_TARGET);
+    projectElement.appendChild(targetElement);
+
+    boolean runTestNg = StringUtils.isNotEmpty(classpathRef);
+    if (runTestNg) {
+      // the imported build file keeps its basedir, properties, references and task definitions.
+      Element importElement = doc.createElement("import");
+      importElement.setAttribute("file", buildFile.getAbsolutePath());
+      projectElement.insertBefore(importElement, targetElement);
+      projectElement.setAttribute("basedir", getBaseDir());
+
+      if (StringUtils.isNotEmpty(prepareTarget)) targetElement.setAttribute("depends", prepareTarget);
+    } else if (StringUtils.isNotEmpty(prepareTarget)) {
+      targetElement.appendChild(createAntCall(doc, prepareTarget, null));
+    }
+
+    Element parallelElement = doc.createElement("parallel");
+    parallelElement.setAttribute("threadCount", String.valueOf(threadCount));
+    parallelElement.setAttribute("failonany", "false");
+    targetElement.appendChild(parallelElement);
+
+    for (int index = 0; index < shardSuites.size(); index++) {
+      parallelElement.appendChild(runTestNg
+        ? createTestNg(doc, shardSuites.get(index), index)
+        : createAntCall(doc, target, shardSuites.get(index)));
+    }
+
+    File wrapperFile = new File(buildFile.getAbsoluteFile().getParentFile(),
+      "qtest-testng-wrapper_" + UUID.randomUUID().toString().substring(0, 8) + ".xml");
+
+    Transformer transformer = XmlFactories.newTransformer();
+    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+    transformer.transform(new DOMSource(doc), new StreamResult(wrapperFile));
+    return wrapperFile;
+  }
+
+  /**
+   * @return the {@code <testng>} task running the given shard suite.
+   */
+  private Element createTestNg(Document doc, String shardSuite, int index) {
+    Element testNgElement = doc.createElement("testng");
+    testNgElement.setAttribute("classpathref", classpathRef);
+    testNgElement.setAttribute("outputdir", "test-output/shard-" + index);
+    testNgElement.setAttribute("haltonfailure", "false");
+    if (StringUtils.isNotEmpty(listeners)) testNgElement.setAttribute("listeners", listeners);
+
+    if (StringUtils.isNotEmpty(collectorPath)) {
+      Element classpathElement = doc.createElement("classpath");
+      Element pathElement = doc.createElement("pathelement");
+      pathElement.setAttribute("location", collectorPath);
+      classpathElement.appendChild(pathElement);
+      testNgElement.appendChild(classpathElement);
+    }
+
+    Element xmlFileSetElement = doc.createElement("xmlfileset");
+    xmlFileSetElement.setAttribute("file", shardSuite);
+    testNgElement.appendChild(xmlFileSetElement);
+    return testNgElement;
+  }
+
+  /**
+   * @return the {@code <ant>} task calling the given user target.
+   */
+  private Element createAntCall(Document doc, String userTarget, String shardSuite) {
+    Element antElement = doc.createElement("ant");
+    antElement.setAttribute("antfile", buildFile.getAbsolutePath());
+    antElement.setAttribute("target", userTarget);
+    antElement.setAttribute("inheritAll", "false");
+
+    if (shardSuite != null) {
+      Element propertyElement = doc.createElement("property");
+      propertyElement.setAttribute("name", "testng.suite.file");
+      propertyElement.setAttribute("value", shardSuite);
+      antElement.appendChild(propertyElement);
+    }
+
+    return antElement;
+  }
+
+  /**
+   * @return the base directory of the user build file.
+   */
+  private String getBaseDir() throws ParserConfigurationException, IOException {
+    try {
+      String baseDir = XmlFactories.newDocumentBuilder()
+        .parse(buildFile).getDocumentElement().getAttribute("basedir");
+      return StringUtils.isEmpty(baseDir) ? "." : baseDir;
+    } catch (SAXException se) {
+      throw new IOException("Could not read build file " + buildFile.getAbsolutePath(), se);
+    }
+  }
+}
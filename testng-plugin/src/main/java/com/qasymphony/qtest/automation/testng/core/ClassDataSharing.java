@@ -0,0 +1,156 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassDataSharing manages the class data sharing archives of the forked TestNG JVM. There is
+ * one archive per classpath fingerprint; the first job of a classpath dumps the archive when its
+ * JVM exits and the next jobs map it at startup. The dynamic archive needs Java 13 or later, the
+ * options are never given to the older JVM.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ClassDataSharing 2026-10-19 12:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ClassDataSharing {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(ClassDataSharing.class);
+  private static final String ARCHIVE_EXTENSION = ".jsa";
+  private static final String LOCK_EXTENSION = ".lock";
+  private static final long STALE_LOCK_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+  private static final int DYNAMIC_ARCHIVE_JAVA_VERSION = 13;
+
+  private final File archiveDirectory;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link ClassDataSharing class data sharing} instance.
+   *
+   * @param archiveDirectory the directory to store the archives.
+   */
+  public ClassDataSharing(File archiveDirectory) {
+    this.archiveDirectory = archiveDirectory;
+  }
+
+  /**
+   * @return {@code true} if the JVM of the given feature version dumps and maps the dynamic
+   * archive.
+   */
+  public static boolean isSupported(int javaVersion) {
+    return javaVersion >= DYNAMIC_ARCHIVE_JAVA_VERSION;
+  }
+
+  /**
+   * Computes the classpath fingerprint; it changes when an entry is added, removed or modified, or
+   * when the command options change.
+   *
+   * @param javaCommand the java command runs the classpath.
+   * @param commandOptions the command options without the classpath.
+   * @param classPathEntries the launched classpath entries (jar files or directories).
+   * @return the classpath fingerprint.
+   */
+  public String fingerprint(String javaCommand, List<String> commandOptions, List<String> classPathEntries) {
+    StringBuilder builder = new StringBuilder(javaCommand);
+    for (String commandOption : commandOptions) {
+      builder.append('|').append(commandOption);
+    }
+
+    // the classes of the directories are not archived, the job writes to its working directory.
+    for (String classPathEntry : classPathEntries) {
+      File file = new File(classPathEntry);
+      builder.append('|').append(classPathEntry);
+      if (!file.isDirectory()) {
+        builder.append('|').append(file.lastModified())
+               .append('|').append(file.length());
+      }
+    }
+
+    return DigestUtils.md5Hex(builder.toString());
+  }
+
+  /**
+   * Creates the classpath the archive is dumped and mapped with. The JVM does not dump the archive
+   * when a non-empty directory is on the classpath, so the classpath having a directory is given
+   * through the pathing jar; the classes of the directories are loaded but not archived.
+   *
+   * @param classPathEntries the launched classpath entries (jar files or directories).
+   * @param classPathResolver the resolver creates the pathing jar.
+   * @return the classpath entries of the JVM.
+   * @throws IOException if an error occurs during writing the pathing jar.
+   */
+  public List<String> createClassPath(List<String> classPathEntries, ClassPathResolver classPathResolver) throws IOException {
+    boolean jarsOnly = true;
+    for (String classPathEntry : classPathEntries) {
+      File file = new File(classPathEntry);
+      if (!file.isFile() || !file.getName().toLowerCase().endsWith(".jar")) {
+        jarsOnly = false;
+        break;
+      }
+    }
+
+    if (jarsOnly) return new LinkedList<>(classPathEntries);
+
+    if (!archiveDirectory.exists()) archiveDirectory.mkdirs();
+    List<String> classPath = new LinkedList<>();
+    classPath.add(classPathResolver.createPathingJar(classPathEntries, archiveDirectory).getAbsolutePath());
+    return classPath;
+  }
+
+  /**
+   * @return the archive of the given classpath fingerprint.
+   */
+  public File getArchive(String fingerprint) {
+    return new File(archiveDirectory, fingerprint + ARCHIVE_EXTENSION);
+  }
+
+  /**
+   * Acquires the lock to dump the archive of the given classpath fingerprint, only one job dumps
+   * the archive at a time.
+   *
+   * @param fingerprint the given classpath fingerprint.
+   * @return the lock file, {@code null} if another job holds it.
+   */
+  public File acquireDumpLock(String fingerprint) {
+    if (!archiveDirectory.exists()) archiveDirectory.mkdirs();
+
+    File lockFile = new File(archiveDirectory, fingerprint + LOCK_EXTENSION);
+    try {
+      // the lock is left behind if the agent stops while the job is running.
+      if (lockFile.exists() && System.currentTimeMillis() - lockFile.lastModified() > STALE_LOCK_TIMEOUT) {
+        lockFile.delete();
+      }
+
+      return lockFile.createNewFile() ? lockFile : null;
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG ClassDataSharing] could not lock archive, message: " + ioe.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Builds the JVM options that map the archive, or dump it when it does not exist. The JVM must
+   * support the dynamic archive, see {@link #isSupported(int)}.
+   *
+   * @param archive the given archive.
+   * @param dump {@code true} if the JVM dumps the archive on exit.
+   * @return the list of JVM options.
+   */
+  public List<String> getJvmOptions(File archive, boolean dump) {
+    List<String> jvmOptions = new LinkedList<>();
+    if (dump) {
+      jvmOptions.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+    } else {
+      jvmOptions.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+      jvmOptions.add("-Xshare:auto");
+    }
+
+    return jvmOptions;
+  }
+}
@@ -0,0 +1,154 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.util.Lists;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * ClassPathResolver resolves the classpath of library directories. The resolved classpath is
+ * cached by library directory and reused until one of its directories is modified, so the
+ * library tree is only listed again when a file is added or removed.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ClassPathResolver 2026-10-19 11:45:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ClassPathResolver {
+  //~ class properties ========================================================
+  private final ConcurrentMap<String, ResolvedDirectory> resolvedDirectories = new ConcurrentHashMap<>();
+
+  //~ class members ===========================================================
+  /**
+   * Resolves the wildcard classpath of the given library directory, one wildcard entry for the
+   * directory and each of its sub-directories.
+   *
+   * @param directory the given library directory.
+   * @return the list of wildcard classpath entries.
+   */
+  public List<String> resolveWildcards(File directory) {
+    return resolve(directory).wildcards;
+  }
+
+  /**
+   * Resolves the jar files of the given library directory and its sub-directories.
+   *
+   * @param directory the given library directory.
+   * @return the list of jar file paths.
+   */
+  public List<String> resolveJars(File directory) {
+    return resolve(directory).jars;
+  }
+
+  /**
+   * Creates the manifest-only pathing jar whose {@code Class-Path} lists all given entries. The
+   * pathing jar is shared by all jobs having the same classpath.
+   *
+   * @param classPathEntries the given classpath entries (jar files or directories).
+   * @param directory the directory to store the pathing jar.
+   * @return the pathing jar.
+   * @throws IOException if an error occurs during writing the pathing jar.
+   */
+  public File createPathingJar(List<String> classPathEntries, File directory) throws IOException {
+    File pathingJar = new File(directory, "classpath-" + DigestUtils.md5Hex(Lists.join(classPathEntries, File.pathSeparator)) + ".jar");
+    if (pathingJar.isFile()) return pathingJar;
+
+    StringBuilder classPath = new StringBuilder();
+    for (String classPathEntry : classPathEntries) {
+      if (classPath.length() > 0) classPath.append(' ');
+      classPath.append(new File(classPathEntry).toURI().toASCIIString());
+    }
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath.toString());
+
+    // write to the temporary file first, the concurrent jobs may use the same pathing jar.
+    File tempJar = new File(directory, pathingJar.getName() + "." + System.nanoTime() + ".tmp");
+    try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(tempJar), manifest)) {
+      jos.flush();
+    }
+
+    if (!tempJar.renameTo(pathingJar) && !pathingJar.isFile()) {
+      tempJar.delete();
+      throw new IOException("Could not create pathing jar " + pathingJar.getAbsolutePath());
+    }
+
+    tempJar.delete();
+    return pathingJar;
+  }
+
+  /**
+   * @return the resolved directory from the cache or from the file system if modified.
+   */
+  private ResolvedDirectory resolve(File directory) {
+    String key = directory.getAbsolutePath();
+    ResolvedDirectory resolvedDirectory = resolvedDirectories.get(key);
+    if (resolvedDirectory != null && !resolvedDirectory.isModified()) return resolvedDirectory;
+
+    resolvedDirectory = new ResolvedDirectory();
+    resolveDirectory(directory, resolvedDirectory);
+    resolvedDirectories.put(key, resolvedDirectory.freeze());
+    return resolvedDirectory;
+  }
+
+  /**
+   * Resolves the directory and its sub-directories.
+   */
+  private void resolveDirectory(File directory, ResolvedDirectory resolvedDirectory) {
+    resolvedDirectory.modifiedTimes.put(directory, directory.lastModified());
+    resolvedDirectory.wildcards.add(directory.getAbsolutePath() + File.separator + "*");
+
+    File[] children = directory.listFiles();
+    if (children == null) return;
+
+    for (File child : children) {
+      if (child.isDirectory()) {
+        resolveDirectory(child, resolvedDirectory);
+      } else if (child.getName().toLowerCase().endsWith(".jar")) {
+        resolvedDirectory.jars.add(child.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * The resolved classpath of library directory and the modified time of its directories.
+   */
+  private static final class ResolvedDirectory {
+    private final Map<File, Long> modifiedTimes = new HashMap<>();
+    private List<String> wildcards = new ArrayList<>();
+    private List<String> jars = new ArrayList<>();
+
+    /**
+     * @return {@code true} if any directory was modified since it was resolved.
+     */
+    private boolean isModified() {
+      for (Map.Entry<File, Long> modifiedTime : modifiedTimes.entrySet()) {
+        if (modifiedTime.getKey().lastModified() != modifiedTime.getValue()) return true;
+      }
+
+      return false;
+    }
+
+    /**
+     * @return the resolved directory that cannot be changed by callers.
+     */
+    private ResolvedDirectory freeze() {
+      wildcards = Collections.unmodifiableList(wildcards);
+      jars = Collections.unmodifiableList(jars);
+      return this;
+    }
+  }
+}
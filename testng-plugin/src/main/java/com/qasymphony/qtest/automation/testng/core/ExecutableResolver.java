@@ -0,0 +1,295 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import com.qasymphony.qtest.automation.util.Systems;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ExecutableResolver resolves the Ant and Maven executables of the tool home and the plugin
+ * libraries. The resolution is cached by tool home; it is trusted for the time-to-live, then it
+ * is checked again by the modified time of its directory before probing the files again. The
+ * version of each java command is probed again only when its file is modified.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ExecutableResolver 2026-10-19 14:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ExecutableResolver {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(ExecutableResolver.class);
+  private static final boolean WINDOWS = Systems.isWindows();
+  private static final Pattern JAVA_VERSION = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+  private static final long PROBE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+  private static final long PROBE_INTERVAL = 20L;
+
+  private final long timeToLive;
+  private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, JavaVersion> javaVersions = new ConcurrentHashMap<>();
+  private final AtomicLong resolutionCount = new AtomicLong();
+  private final AtomicLong resolutionNanos = new AtomicLong();
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link ExecutableResolver executable resolver} instance.
+   *
+   * @param timeToLive the time in milliseconds the resolution is trusted without checking.
+   */
+  public ExecutableResolver(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * @return {@code true} if the agent runs on Windows.
+   */
+  public static boolean isWindows() {
+    return WINDOWS;
+  }
+
+  /**
+   * @return the Ant executable of the given Ant home, {@code null} if it does not exist.
+   */
+  public String resolveAnt(String antHome) {
+    if (StringUtils.isEmpty(antHome)) return null;
+    return resolve("ant:" + antHome, new File(antHome, "bin"), true,
+      WINDOWS ? new String[] { "ant.bat", "ant.cmd", "ant" } : new String[] { "ant" });
+  }
+
+  /**
+   * @return the Maven executable of the given Maven home, {@code null} if it does not exist.
+   */
+  public String resolveMaven(String mavenHome) {
+    if (StringUtils.isEmpty(mavenHome)) return null;
+    return resolve("mvn:" + mavenHome, new File(mavenHome, "bin"), true,
+      WINDOWS ? new String[] { "mvn.bat", "mvn.cmd", "mvn" } : new String[] { "mvn" });
+  }
+
+  /**
+   * @return the absolute path of the given library, {@code null} if it does not exist.
+   */
+  public String resolveLibrary(File library) {
+    File absoluteLibrary = library.getAbsoluteFile();
+    return resolve("lib:" + absoluteLibrary.getPath(), absoluteLibrary.getParentFile(), false, absoluteLibrary.getName());
+  }
+
+  /**
+   * Resolves the feature version of the given java command by running {@code java -version}. The
+   * command is resolved the way the job runs it, against the working directory of the job or the
+   * {@code PATH}; the version is probed again when the resolved file is modified.
+   *
+   * @param javaCommand the given java command.
+   * @param workingDirectory the working directory of the job.
+   * @return the feature version, such as {@code 8} or {@code 17}; {@code 0} if it is not known.
+   */
+  public int resolveJavaVersion(String javaCommand, String workingDirectory) {
+    if (StringUtils.isEmpty(javaCommand)) return 0;
+
+    long startTime = System.nanoTime();
+    try {
+      File javaFile = resolveCommand(javaCommand, workingDirectory);
+      if (javaFile == null) return 0;
+
+      String key = javaFile.getPath();
+      long modified = javaFile.lastModified();
+      JavaVersion javaVersion = javaVersions.get(key);
+      if (javaVersion != null && javaVersion.modified == modified) return javaVersion.version;
+
+      javaVersion = new JavaVersion(probeJavaVersion(javaFile, workingDirectory), modified);
+      javaVersions.put(key, javaVersion);
+      return javaVersion.version;
+    } finally {
+      resolutionCount.incrementAndGet();
+      resolutionNanos.addAndGet(System.nanoTime() - startTime);
+    }
+  }
+
+  /**
+   * @return the number of resolutions.
+   */
+  public long getResolutionCount() {
+    return resolutionCount.get();
+  }
+
+  /**
+   * @return the total resolution time in nanoseconds.
+   */
+  public long getResolutionNanos() {
+    return resolutionNanos.get();
+  }
+
+  /**
+   * Resolves the first existing file of the given names in the directory.
+   */
+  private String resolve(String key, File directory, boolean executable, String... names) {
+    long startTime = System.nanoTime();
+    try {
+      long now = System.currentTimeMillis();
+      Resolution resolution = resolutions.get(key);
+      if (resolution != null && now - resolution.checkedAt < timeToLive) return resolution.path;
+
+      // the files of the directory are added or removed if its modified time changes.
+      long directoryModified = (directory == null ? 0L : directory.lastModified());
+      if (resolution != null && directoryModified != 0L && resolution.directoryModified == directoryModified
+        && (resolution.path == null || new File(resolution.path).exists())) {
+        resolutions.put(key, new Resolution(resolution.path, directoryModified, now));
+        return resolution.path;
+      }
+
+      String path = null;
+      if (directoryModified != 0L) {
+        for (String name : names) {
+          File file = new File(directory, name);
+          if (file.isFile() && (!executable || file.canExecute())) {
+            path = file.getAbsolutePath();
+            break;
+          }
+        }
+      }
+
+      resolutions.put(key, new Resolution(path, directoryModified, now));
+      return path;
+    } finally {
+      resolutionCount.incrementAndGet();
+      resolutionNanos.addAndGet(System.nanoTime() - startTime);
+    }
+  }
+
+  /**
+   * @return the canonical file of the given command; the command having a path is relative to the
+   * working directory, the command name is searched in the {@code PATH}. {@code null} if it does
+   * not exist.
+   */
+  private static File resolveCommand(String command, String workingDirectory) {
+    List<File> files = new LinkedList<>();
+    if (command.indexOf('/') >= 0 || command.indexOf(File.separatorChar) >= 0) {
+      File file = new File(command);
+      files.add(file.isAbsolute() || StringUtils.isEmpty(workingDirectory) ? file : new File(workingDirectory, command));
+    } else {
+      String path = System.getenv("PATH");
+      for (String directory : StringUtils.split(path == null ? "" : path, File.pathSeparator)) {
+        files.add(new File(directory, command));
+      }
+    }
+
+    // the Windows command is run without its extension.
+    List<File> candidates = new LinkedList<>();
+    for (File file : files) {
+      if (WINDOWS) candidates.add(new File(file.getPath() + ".exe"));
+      candidates.add(file);
+    }
+
+    for (File candidate : candidates) {
+      if (!candidate.isFile() || !candidate.canExecute()) continue;
+
+      try {
+        return candidate.getCanonicalFile();
+      } catch (IOException ioe) {
+        return candidate.getAbsoluteFile();
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Runs {@code java -version} of the given java file in the working directory, the process is
+   * destroyed if it does not exit in time.
+   *
+   * @return the feature version, {@code 0} if it is not known.
+   */
+  private static int probeJavaVersion(File javaFile, String workingDirectory) {
+    ProcessBuilder processBuilder = new ProcessBuilder(javaFile.getPath(), "-version").redirectErrorStream(true);
+    if (StringUtils.isNotEmpty(workingDirectory) && new File(workingDirectory).isDirectory()) {
+      processBuilder.directory(new File(workingDirectory));
+    }
+
+    Process process = null;
+    try {
+      process = processBuilder.start();
+
+      // the output of java -version fits in the pipe, it is read once the process exits.
+      long deadline = System.nanoTime() + PROBE_TIMEOUT;
+      Integer exitValue = null;
+      while (exitValue == null) {
+        try {
+          exitValue = process.exitValue();
+        } catch (IllegalThreadStateException itse) {
+          if (System.nanoTime() - deadline >= 0) {
+            LOG.warn("[TestNG ExecutableResolver] java version probe of " + javaFile + " timed out, the process is destroyed.");
+            return 0;
+          }
+
+          Thread.sleep(PROBE_INTERVAL);
+        }
+      }
+
+      String output;
+      try (InputStream is = process.getInputStream()) {
+        output = IOUtils.toString(is, "US-ASCII");
+      }
+
+      return (exitValue == 0 ? parseJavaVersion(output) : 0);
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG ExecutableResolver] could not probe java version, message: " + ioe.getMessage());
+      return 0;
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return 0;
+    } finally {
+      if (process != null) process.destroy();
+    }
+  }
+
+  /**
+   * @return the feature version in the given {@code java -version} output, {@code 0} if it is not
+   * found. The legacy {@code 1.x} version is read as {@code x}.
+   */
+  static int parseJavaVersion(String output) {
+    Matcher matcher = JAVA_VERSION.matcher(output == null ? "" : output);
+    if (!matcher.find()) return 0;
+
+    int major = Integer.parseInt(matcher.group(1));
+    if (major == 1 && matcher.group(2) != null) return Integer.parseInt(matcher.group(2));
+    return major;
+  }
+
+  /**
+   * The resolved path and the directory state when it was checked.
+   */
+  private static final class Resolution {
+    private final String path;
+    private final long directoryModified;
+    private final long checkedAt;
+
+    private Resolution(String path, long directoryModified, long checkedAt) {
+      this.path = path;
+      this.directoryModified = directoryModified;
+      this.checkedAt = checkedAt;
+    }
+  }
+
+  /**
+   * The probed java version and the modified time of the java file.
+   */
+  private static final class JavaVersion {
+    private final int version;
+    private final long modified;
+
+    private JavaVersion(int version, long modified) {
+      this.version = version;
+      this.modified = modified;
+    }
+  }
+}
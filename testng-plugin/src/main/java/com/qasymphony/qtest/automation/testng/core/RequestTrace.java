@@ -0,0 +1,129 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestTrace keeps the trace identifier of one request and the time spent in each of its
+ * phases. The trace is bound to the thread handling the request, so the code running the phases
+ * opens its spans without the trace being passed around; the span is a no-op when the thread has
+ * no trace.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RequestTrace 2026-10-19 15:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public final class RequestTrace {
+  //~ class properties ========================================================
+  private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+  private static final Span NO_SPAN = new Span(null, null);
+
+  private final String traceId;
+  private final String requestName;
+  private final boolean bodySampled;
+  private final long startTime = System.nanoTime();
+  private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link RequestTrace request trace} instance.
+   */
+  RequestTrace(String traceId, String requestName, boolean bodySampled) {
+    this.traceId = traceId;
+    this.requestName = requestName;
+    this.bodySampled = bodySampled;
+  }
+
+  /**
+   * @return the trace of the current thread, {@code null} if the thread has no trace.
+   */
+  public static RequestTrace current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Opens the span of the given phase on the trace of the current thread, the span should be
+   * closed in the finally block.
+   *
+   * @param phase the given phase name.
+   * @return the opened span.
+   */
+  public static Span span(String phase) {
+    RequestTrace trace = CURRENT.get();
+    return trace == null ? NO_SPAN : new Span(trace, phase);
+  }
+
+  /**
+   * Binds this trace to the current thread.
+   */
+  void bind() {
+    CURRENT.set(this);
+  }
+
+  /**
+   * Unbinds this trace from the current thread.
+   *
+   * @return the summary of the trace phases.
+   */
+  public String finish() {
+    if (CURRENT.get() == this) CURRENT.remove();
+
+    StringBuilder summary = new StringBuilder()
+      .append(requestName).append(' ')
+      .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)).append(" ms");
+
+    String separator = " (";
+    for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+      summary.append(separator).append(phase.getKey()).append(' ')
+        .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append(" ms");
+      separator = ", ";
+    }
+
+    if (!phaseNanos.isEmpty()) summary.append(')');
+    return summary.toString();
+  }
+
+  /**
+   * @return the trace identifier.
+   */
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /**
+   * @return {@code true} if the body of this request is logged.
+   */
+  public boolean isBodySampled() {
+    return bodySampled;
+  }
+
+  @Override
+  public String toString() {
+    return traceId;
+  }
+
+  /**
+   * The time spent in one phase; the phase opened more than once is added up.
+   */
+  public static final class Span implements AutoCloseable {
+    private final RequestTrace trace;
+    private final String phase;
+    private final long startTime;
+
+    private Span(RequestTrace trace, String phase) {
+      this.trace = trace;
+      this.phase = phase;
+      this.startTime = (trace == null ? 0L : System.nanoTime());
+    }
+
+    @Override
+    public void close() {
+      if (trace == null) return;
+
+      long nanos = System.nanoTime() - startTime;
+      Long previousNanos = trace.phaseNanos.get(phase);
+      trace.phaseNanos.put(phase, previousNanos == null ? nanos : previousNanos + nanos);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RequestTracer starts the request traces and formats the request bodies for logging. The body
+ * is only formatted for one of the sampled requests and it is truncated to the maximum length,
+ * so logging a request with thousands of materials does not write its whole body.
+ *
+ * @author Dzung Nguyen
+ * @version $Id RequestTracer 2026-10-19 15:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class RequestTracer {
+  //~ class properties ========================================================
+  private final int bodySampleInterval;
+  private final int bodyMaxLength;
+  private final AtomicLong requestCount = new AtomicLong();
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link RequestTracer request tracer} instance.
+   *
+   * @param bodySampleInterval the body is logged for one of this number of requests, {@code 0}
+   * if the body is never logged.
+   * @param bodyMaxLength the maximum number of characters of the logged body.
+   */
+  public RequestTracer(int bodySampleInterval, int bodyMaxLength) {
+    this.bodySampleInterval = bodySampleInterval;
+    this.bodyMaxLength = bodyMaxLength;
+  }
+
+  /**
+   * Starts the trace of the given request and binds it to the current thread.
+   *
+   * @param requestName the given request name.
+   * @return the started trace.
+   */
+  public RequestTrace start(String requestName) {
+    boolean bodySampled = bodySampleInterval > 0 && requestCount.getAndIncrement() % bodySampleInterval == 0;
+    RequestTrace trace = new RequestTrace(
+      String.format("%016x", ThreadLocalRandom.current().nextLong()), requestName, bodySampled
+    );
+    trace.bind();
+    return trace;
+  }
+
+  /**
+   * Formats the request body of the given trace.
+   *
+   * @param trace the given request trace, it may be {@code null}.
+   * @param body the given request body.
+   * @return the truncated body, {@code null} if the body of the request is not sampled.
+   */
+  public String formatBody(RequestTrace trace, String body) {
+    if (trace == null || !trace.isBodySampled() || body == null) return null;
+    if (body.length() <= bodyMaxLength) return body;
+
+    return body.substring(0, bodyMaxLength) + "... (" + body.length() + " chars)";
+  }
+}
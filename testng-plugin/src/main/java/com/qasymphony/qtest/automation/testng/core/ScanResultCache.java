@@ -0,0 +1,237 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.domain.testcase.TestCase;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ScanResultCache keeps the test-cases of the recent scans keyed by the normalized scan request.
+ * The result is trusted for the time-to-live, then it is checked against the modified time of the
+ * scanned files before scanning again; the least recently used result is evicted when the cache
+ * is full. The concurrent identical scans share one scan: the first request runs it and the
+ * others wait for its result; the failed scan is not cached.
+ *
+ * @author Dzung Nguyen
+ * @version $Id ScanResultCache 2026-10-19 16:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class ScanResultCache {
+  //~ class properties ========================================================
+  private final long timeToLive;
+  private final Map<String, CachedResult> results;
+  private final ConcurrentMap<String, FutureTask<List<TestCase>>> runningScans = new ConcurrentHashMap<>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link ScanResultCache scan result cache} instance.
+   *
+   * @param maxSize the maximum number of cached results, {@code 0} to only share the running scans.
+   * @param timeToLive the time in milliseconds the result is trusted without checking the files.
+   */
+  public ScanResultCache(final int maxSize, long timeToLive) {
+    this.timeToLive = timeToLive;
+    this.results = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Creates the cache key of the scan request.
+   *
+   * @param testDirectory the normalized test directory.
+   * @param includePattern the include pattern.
+   * @param excludePattern the exclude pattern.
+   * @param libraryDirectory the normalized library directory.
+   * @param scanLibrary {@code true} if the libraries are scanned.
+   * @return the cache key.
+   */
+  public static String keyOf(String testDirectory, String includePattern, String excludePattern,
+                             String libraryDirectory, boolean scanLibrary) {
+    return String.valueOf(testDirectory) + '\n' + trim(includePattern) + '\n' + trim(excludePattern) + '\n'
+      + String.valueOf(libraryDirectory) + '\n' + scanLibrary;
+  }
+
+  /**
+   * Gets the cached test-cases of the given key, or runs the scan once for all concurrent
+   * requests of the key.
+   *
+   * @param key the given cache key.
+   * @param directories the scanned directories, the {@code null} one is ignored.
+   * @param scan the scan to run on cache miss.
+   * @return the unmodifiable list of scanned test-cases.
+   * @throws Exception if an error occurs during scanning.
+   */
+  public List<TestCase> get(String key, List<String> directories, Callable<List<TestCase>> scan) throws Exception {
+    CachedResult result;
+    synchronized (results) {
+      result = results.get(key);
+      if (result != null && System.currentTimeMillis() - result.checkedAt < timeToLive) {
+        hitCount.incrementAndGet();
+        return result.testCases;
+      }
+    }
+
+    // the files are walked only once the result is no longer trusted.
+    long lastModified = lastModified(directories);
+    if (result != null && result.lastModified == lastModified) {
+      synchronized (results) {
+        results.put(key, new CachedResult(result.testCases, lastModified, System.currentTimeMillis()));
+      }
+      hitCount.incrementAndGet();
+      return result.testCases;
+    }
+
+    final Callable<List<TestCase>> unmodifiableScan = unmodifiable(scan);
+    FutureTask<List<TestCase>> runningScan = new FutureTask<>(unmodifiableScan);
+    FutureTask<List<TestCase>> sharedScan = runningScans.putIfAbsent(key, runningScan);
+    if (sharedScan != null) {
+      coalescedCount.incrementAndGet();
+      return await(sharedScan);
+    }
+
+    missCount.incrementAndGet();
+    try {
+      runningScan.run();
+      List<TestCase> testCases = await(runningScan);
+      synchronized (results) {
+        results.put(key, new CachedResult(testCases, lastModified, System.currentTimeMillis()));
+      }
+      return testCases;
+    } finally {
+      runningScans.remove(key, runningScan);
+    }
+  }
+
+  /**
+   * @return the number of requests served from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of scans run.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the number of requests sharing the running scan.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return the result of the given scan, the scan error is thrown as is.
+   */
+  private static List<TestCase> await(FutureTask<List<TestCase>> scan) throws Exception {
+    try {
+      return scan.get();
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw ee;
+    }
+  }
+
+  /**
+   * @return the scan returning the unmodifiable list, the list is shared by the requests.
+   */
+  private static Callable<List<TestCase>> unmodifiable(final Callable<List<TestCase>> scan) {
+    return new Callable<List<TestCase>>() {
+      @Override
+      public List<TestCase> call() throws Exception {
+        List<TestCase> testCases = scan.call();
+        return testCases == null ? Collections.<TestCase>emptyList() : Collections.unmodifiableList(testCases);
+      }
+    };
+  }
+
+  /**
+   * Gets the latest modified time of the files and sub-directories of the given directories, so
+   * the file rewritten in place is also seen. The symbolic links under the directories are not
+   * followed.
+   *
+   * @return the last modified time, {@code 0} if no directory exists.
+   */
+  static long lastModified(List<String> directories) {
+    final long[] lastModified = { 0L };
+    for (String directory : directories) {
+      if (directory == null || directory.isEmpty()) continue;
+
+      try {
+        Path root = Paths.get(directory).toRealPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            lastModified[0] = Math.max(lastModified[0], attrs.lastModifiedTime().toMillis());
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            lastModified[0] = Math.max(lastModified[0], attrs.lastModifiedTime().toMillis());
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException ioe) {
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } catch (IOException ioe) {
+        // the missing directory has nothing to scan.
+      }
+    }
+
+    return lastModified[0];
+  }
+
+  /**
+   * @return the trimmed pattern, the empty string if it is {@code null}.
+   */
+  private static String trim(String pattern) {
+    return pattern == null ? "" : pattern.trim();
+  }
+
+  /**
+   * The scanned test-cases, the last modified time of the scanned files and the time they were
+   * last checked.
+   */
+  private static final class CachedResult {
+    private final List<TestCase> testCases;
+    private final long lastModified;
+    private final long checkedAt;
+
+    private CachedResult(List<TestCase> testCases, long lastModified, long checkedAt) {
+      this.testCases = testCases;
+      this.lastModified = lastModified;
+      this.checkedAt = checkedAt;
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.qasymphony.qtest.automation.domain.TestScript;
+import com.qasymphony.qtest.automation.domain.execution.ExecutionMode;
+import com.qasymphony.qtest.automation.domain.job.AutomationMaterial;
+import com.qasymphony.qtest.automation.domain.job.JobDetail;
+import com.qasymphony.qtest.automation.domain.job.JobState;
+import com.qasymphony.qtest.automation.plugin.access.atm.model.BuildCommandRequest;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StreamingRequestParser reads the build command and scan requests with the streaming parser.
+ * The automation materials are read one by one into the job detail, the request body is never
+ * built into a JSON tree; only the small execution mode object is copied to its JSON string
+ * because the execution mode is created from it.
+ *
+ * @author Dzung Nguyen
+ * @version $Id StreamingRequestParser 2026-10-19 16:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class StreamingRequestParser {
+  //~ class properties ========================================================
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  //~ class members ===========================================================
+  /**
+   * Parses the build command request.
+   *
+   * @param body the given request body.
+   * @return the build command request.
+   * @throws IOException if the request body is not valid JSON.
+   */
+  public BuildCommandRequest parseBuildCommand(String body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+      return readBuildCommand(parser);
+    }
+  }
+
+  /**
+   * Parses the cleanup environment request.
+   *
+   * @param body the given request body.
+   * @param environmentVariables the map receiving the job environment variables.
+   * @return the build command request of the job.
+   * @throws IOException if the request body is not valid JSON.
+   */
+  public BuildCommandRequest parseCleanupEnvironment(String body, Map<String, String> environmentVariables)
+    throws IOException {
+    BuildCommandRequest commandRequest = new BuildCommandRequest();
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ("command_request".equals(field) && token == JsonToken.START_OBJECT) {
+          commandRequest = readBuildCommand(parser);
+        } else if ("environments".equals(field) && token == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            environmentVariables.put(key, readString(parser));
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+
+    return commandRequest;
+  }
+
+  /**
+   * Parses the scan request.
+   *
+   * @param body the given request body.
+   * @return the test script to scan.
+   * @throws IOException if the request body is not valid JSON.
+   */
+  public TestScript parseTestScript(String body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+      return readTestScript(parser);
+    }
+  }
+
+  /**
+   * @return the build command request of the current object.
+   */
+  private BuildCommandRequest readBuildCommand(JsonParser parser) throws IOException {
+    BuildCommandRequest commandRequest = new BuildCommandRequest();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+      } else if ("job_detail".equals(field)) {
+        commandRequest.setJobDetail(readJobDetail(parser));
+      } else if ("test_script".equals(field)) {
+        commandRequest.setTestScript(readTestScript(parser));
+      } else if ("execution_mode".equals(field)) {
+        commandRequest.setExecutionMode(ExecutionMode.createExecutionMode(copyObject(parser)));
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    return commandRequest;
+  }
+
+  /**
+   * @return the job detail of the current object.
+   */
+  private JobDetail readJobDetail(JsonParser parser) throws IOException {
+    JobDetail jobDetail = new JobDetail();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      switch (field) {
+        case "job_server_id":
+          jobDetail.setJobServerId(readLong(parser));
+          break;
+        case "agent_id":
+          jobDetail.setAgentId(readLong(parser));
+          break;
+        case "agent_server_id":
+          jobDetail.setAgentServerId(readLong(parser));
+          break;
+        case "project_id":
+          jobDetail.setProjectId(readLong(parser));
+          break;
+        case "host_guid":
+          jobDetail.setHostGuid(readString(parser));
+          break;
+        case "start_date":
+          jobDetail.setStartDate(readDate(parser));
+          break;
+        case "end_date":
+          jobDetail.setEndDate(readDate(parser));
+          break;
+        case "status":
+          String status = readString(parser);
+          if (status != null) jobDetail.setStatus(JobState.valueOf(status));
+          break;
+        case "automation_materials":
+          if (token == JsonToken.START_ARRAY) jobDetail.setMaterials(readMaterials(parser));
+          else parser.skipChildren();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    return jobDetail;
+  }
+
+  /**
+   * @return the automation materials of the current array.
+   */
+  private List<AutomationMaterial> readMaterials(JsonParser parser) throws IOException {
+    List<AutomationMaterial> materials = new ArrayList<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+
+      AutomationMaterial material = new AutomationMaterial();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "testRunId":
+            material.setTestRunId(readLong(parser));
+            break;
+          case "testCaseId":
+            material.setTestCaseId(readLong(parser));
+            break;
+          case "testCaseVersionId":
+            material.setTestCaseVersionId(readLong(parser));
+            break;
+          case "automationContent":
+            material.setAutomationContent(readString(parser));
+            break;
+          case "testCaseName":
+            material.setTestCaseName(readString(parser));
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+
+      materials.add(material);
+    }
+
+    return materials;
+  }
+
+  /**
+   * @return the test script of the current object.
+   */
+  private TestScript readTestScript(JsonParser parser) throws IOException {
+    TestScript testScript = new TestScript();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "test_directory":
+          testScript.setTestDirectory(readString(parser));
+          break;
+        case "lib_directory":
+          testScript.setLibraryDirectory(readString(parser));
+          break;
+        case "include_pattern":
+          testScript.setIncludePattern(readString(parser));
+          break;
+        case "exclude_pattern":
+          testScript.setExcludePattern(readString(parser));
+          break;
+        case "scan_library":
+          testScript.setScanLibrary(parser.getValueAsBoolean(false));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    return testScript;
+  }
+
+  /**
+   * @return the JSON string of the current object.
+   */
+  private static String copyObject(JsonParser parser) throws IOException {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+      generator.copyCurrentStructure(parser);
+    }
+
+    return writer.toString();
+  }
+
+  /**
+   * @return the current scalar value as string, {@code null} if it is null or not a scalar.
+   */
+  private static String readString(JsonParser parser) throws IOException {
+    if (!parser.getCurrentToken().isScalarValue()) {
+      parser.skipChildren();
+      return null;
+    }
+
+    return parser.getValueAsString(null);
+  }
+
+  /**
+   * @return the current value as long, {@code 0} if it is not a number.
+   */
+  private static Long readLong(JsonParser parser) throws IOException {
+    parser.skipChildren();
+    return parser.getValueAsLong(0L);
+  }
+
+  /**
+   * @return the date of the current epoch milliseconds.
+   */
+  private static Date readDate(JsonParser parser) throws IOException {
+    return new Date(readLong(parser));
+  }
+
+  /**
+   * Checks the current token is the expected one.
+   */
+  private static void expect(JsonToken token, JsonToken expected, JsonParser parser) throws JsonParseException {
+    if (token != expected) {
+      throw new JsonParseException("Expected " + expected + " but found " + token, parser.getCurrentLocation());
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.qasymphony.qtest.automation.util.DirectoryScanner;
+import com.qasymphony.qtest.util.XmlTransformerUtils;
+
+/**
+ * SuiteParallelism writes the TestNG parallel attributes into the generated suite. TestNG only
+ * runs the classes and methods of the same test in parallel, so the parallel-safe classes of the
+ * plain tests are grouped into one test running in parallel; the other parallel-safe tests run
+ * their own classes in parallel. The tests mode is only written on the suite, when all of its
+ * classes are parallel-safe.
+ *
+ * @author Dzung Nguyen
+ * @version $Id SuiteParallelism 2026-10-19 10:05:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class SuiteParallelism {
+  //~ class properties ========================================================
+  /**
+   * The parallelism that keeps the suite unchanged.
+   */
+  public static final SuiteParallelism NONE = new SuiteParallelism(null, 0, 0, Collections.<String>emptyList());
+
+  private static final String MODE_TESTS = "tests";
+
+  private final String mode;
+  private final int threadCount;
+  private final int dataProviderThreadCount;
+  private final List<String> safeClassPatterns;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link SuiteParallelism suite parallelism} instance.
+   *
+   * @param mode the TestNG parallel mode (methods, classes, tests or instances).
+   * @param threadCount the number of threads.
+   * @param dataProviderThreadCount the number of data provider threads.
+   * @param safeClassPatterns the parallel-safe class name patterns.
+   */
+  public SuiteParallelism(String mode, int threadCount, int dataProviderThreadCount, List<String> safeClassPatterns) {
+    this.mode = mode;
+    this.threadCount = threadCount;
+    this.dataProviderThreadCount = dataProviderThreadCount;
+    this.safeClassPatterns = new ArrayList<>(safeClassPatterns);
+  }
+
+  /**
+   * @return {@code true} if the parallelism is enabled, otherwise {@code false}.
+   */
+  public boolean isEnabled() {
+    return StringUtils.isNotEmpty(mode) && !"none".equalsIgnoreCase(mode) && threadCount > 1;
+  }
+
+  /**
+   * Applies the parallel attributes to the given suite document. The parallel attributes
+   * already defined in the template are never overridden.
+   *
+   * @param doc the given suite document.
+   */
+  public void apply(Document doc) {
+    if (!isEnabled()) return;
+
+    NodeList suiteList = doc.getElementsByTagName(XmlTransformerUtils.XML_ELEMENT_SUITE);
+    if (suiteList.getLength() == 0) return;
+
+    Element suiteElement = (Element) suiteList.item(0);
+    if (suiteElement.hasAttribute(XmlTransformerUtils.XML_ATTRIBUTE_PARALLEL)) return;
+
+    if (!suiteElement.hasAttribute(XmlTransformerUtils.XML_ATTRIBUTE_DATA_PROVIDER_THREAD_COUNT)) {
+      suiteElement.setAttribute(XmlTransformerUtils.XML_ATTRIBUTE_DATA_PROVIDER_THREAD_COUNT,
+        String.valueOf(dataProviderThreadCount));
+    }
+
+    if (MODE_TESTS.equalsIgnoreCase(mode)) {
+      if (isParallelSafe(suiteElement)) setParallel(suiteElement);
+      return;
+    }
+
+    Element groupElement = null;
+    for (Element testElement : getTests(suiteElement)) {
+      if (testElement.hasAttribute(XmlTransformerUtils.XML_ATTRIBUTE_PARALLEL) || !isParallelSafe(testElement)) continue;
+
+      if (!isPlain(testElement)) {
+        setParallel(testElement);
+      } else if (groupElement == null) {
+        groupElement = testElement;
+        setParallel(groupElement);
+      } else {
+        moveClasses(testElement, groupElement);
+        suiteElement.removeChild(testElement);
+      }
+    }
+  }
+
+  /**
+   * @return the tests of the given suite element.
+   */
+  private static List<Element> getTests(Element suiteElement) {
+    List<Element> testElements = new ArrayList<>();
+    for (Node node = suiteElement.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element && XmlTransformerUtils.XML_ELEMENT_TEST.equals(node.getNodeName())) {
+        testElements.add((Element) node);
+      }
+    }
+
+    return testElements;
+  }
+
+  /**
+   * @return {@code true} if the given test only has its name and classes, so its classes run the
+   * same way in another test.
+   */
+  private static boolean isPlain(Element testElement) {
+    NamedNodeMap attributes = testElement.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      if (!XmlTransformerUtils.XML_ATTRIBUTE_NAME.equals(attributes.item(i).getNodeName())) return false;
+    }
+
+    boolean hasClasses = false;
+    for (Node node = testElement.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (!(node instanceof Element)) continue;
+      if (!XmlTransformerUtils.XML_ELEMENT_CLASSES.equals(node.getNodeName())) return false;
+      hasClasses = true;
+    }
+
+    return hasClasses;
+  }
+
+  /**
+   * Moves the classes of the given test into the given group test, the methods of the class
+   * already in the group are merged into it.
+   */
+  private static void moveClasses(Element testElement, Element groupElement) {
+    Element groupClasses = getFirstChild(groupElement, XmlTransformerUtils.XML_ELEMENT_CLASSES);
+    NodeList classList = testElement.getElementsByTagName(XmlTransformerUtils.XML_ELEMENT_CLASS);
+    List<Element> classElements = new ArrayList<>();
+    for (int i = 0; i < classList.getLength(); i++) classElements.add((Element) classList.item(i));
+
+    for (Element classElement : classElements) {
+      Element groupClass = findClass(groupClasses, classElement.getAttribute(XmlTransformerUtils.XML_ATTRIBUTE_NAME));
+      if (groupClass == null) {
+        groupClasses.appendChild(classElement);
+        continue;
+      }
+
+      // the class without methods runs all of its methods.
+      Element groupMethods = getFirstChild(groupClass, XmlTransformerUtils.XML_ELEMENT_METHODS);
+      Element methods = getFirstChild(classElement, XmlTransformerUtils.XML_ELEMENT_METHODS);
+      if (groupMethods == null) continue;
+      if (methods == null) {
+        groupClass.removeChild(groupMethods);
+        continue;
+      }
+
+      while (methods.getFirstChild() != null) groupMethods.appendChild(methods.getFirstChild());
+    }
+  }
+
+  /**
+   * @return the class of the given name in the given classes element, {@code null} if none.
+   */
+  private static Element findClass(Element classesElement, String className) {
+    for (Node node = classesElement.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element && XmlTransformerUtils.XML_ELEMENT_CLASS.equals(node.getNodeName())
+        && className.equals(((Element) node).getAttribute(XmlTransformerUtils.XML_ATTRIBUTE_NAME))) {
+        return (Element) node;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return the first child element of the given name, {@code null} if none.
+   */
+  private static Element getFirstChild(Element element, String name) {
+    for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element && name.equals(node.getNodeName())) return (Element) node;
+    }
+
+    return null;
+  }
+
+  /**
+   * Sets the parallel attributes to the given element.
+   */
+  private void setParallel(Element element) {
+    element.setAttribute(XmlTransformerUtils.XML_ATTRIBUTE_PARALLEL, mode);
+    element.setAttribute(XmlTransformerUtils.XML_ATTRIBUTE_THREAD_COUNT, String.valueOf(threadCount));
+  }
+
+  /**
+   * @return {@code true} if all classes and packages under the given element are parallel-safe.
+   */
+  private boolean isParallelSafe(Element element) {
+    NodeList classElements = element.getElementsByTagName(XmlTransformerUtils.XML_ELEMENT_CLASS);
+    NodeList packageElements = element.getElementsByTagName(XmlTransformerUtils.XML_ELEMENT_PACKAGE);
+    if (classElements.getLength() == 0 && packageElements.getLength() == 0) return false;
+
+    for (int i = 0; i < classElements.getLength(); i++) {
+      if (!isParallelSafe(((Element) classElements.item(i)).getAttribute(XmlTransformerUtils.XML_ATTRIBUTE_NAME))) {
+        return false;
+      }
+    }
+
+    for (int i = 0; i < packageElements.getLength(); i++) {
+      if (!isParallelSafe(((Element) packageElements.item(i)).getAttribute(XmlTransformerUtils.XML_ATTRIBUTE_NAME))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return {@code true} if the given class or package name matches a parallel-safe pattern.
+   */
+  private boolean isParallelSafe(String name) {
+    for (String pattern : safeClassPatterns) {
+      if (DirectoryScanner.match(pattern, name)) return true;
+    }
+
+    return false;
+  }
+}
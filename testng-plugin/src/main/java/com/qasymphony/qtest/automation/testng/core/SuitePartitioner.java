@@ -0,0 +1,141 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SuitePartitioner splits the automation contents into the suite shards. The contents of the
+ * same class always stay in the same shard, so the class configuration methods run only once.
+ * When the duration history is known, the classes are ordered longest-first and balanced
+ * across the shards with the longest-processing-time heuristic.
+ *
+ * @author Dzung Nguyen
+ * @version $Id SuitePartitioner 2026-10-19 09:25:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class SuitePartitioner {
+  //~ class members ===========================================================
+  /**
+   * Partitions the automation contents into shards.
+   *
+   * @param contents the given automation contents (class or class#method).
+   * @param shardCount the expected number of shards.
+   * @return the list of non-empty shards, never more than the number of classes.
+   */
+  public List<Set<String>> partition(Collection<String> contents, int shardCount) {
+    return partition(contents, shardCount, Collections.<String, Long>emptyMap());
+  }
+
+  /**
+   * Partitions the automation contents into shards balanced by the known durations.
+   *
+   * @param contents the given automation contents (class or class#method).
+   * @param shardCount the expected number of shards.
+   * @param durations the known duration of automation contents.
+   * @return the list of non-empty shards, each shard is ordered longest-first.
+   */
+  public List<Set<String>> partition(Collection<String> contents, int shardCount, Map<String, Long> durations) {
+    List<ClassContent> classContents = orderByDuration(contents, durations);
+
+    int shards = Math.max(1, Math.min(shardCount, classContents.size()));
+    List<Set<String>> result = new ArrayList<>(shards);
+    long[] loads = new long[shards];
+    for (int i = 0; i < shards; i++) result.add(new LinkedHashSet<String>());
+
+    // always put the next longest class into the least loaded shard.
+    for (ClassContent classContent : classContents) {
+      int target = 0;
+      for (int i = 1; i < shards; i++) {
+        if (loads[i] < loads[target]) target = i;
+      }
+
+      result.get(target).addAll(classContent.contents);
+      loads[target] += classContent.duration;
+    }
+
+    return result;
+  }
+
+  /**
+   * Orders the automation contents longest-first.
+   *
+   * @param contents the given automation contents (class or class#method).
+   * @param durations the known duration of automation contents.
+   * @return the ordered automation contents.
+   */
+  public Set<String> order(Collection<String> contents, Map<String, Long> durations) {
+    Set<String> result = new LinkedHashSet<>();
+    for (ClassContent classContent : orderByDuration(contents, durations)) {
+      result.addAll(classContent.contents);
+    }
+
+    return result;
+  }
+
+  /**
+   * @return the automation contents grouped by class and ordered longest-first.
+   */
+  private List<ClassContent> orderByDuration(Collection<String> contents, final Map<String, Long> durations) {
+    // the content without history is estimated by the average known duration.
+    long estimate = 1L;
+    if (!durations.isEmpty()) {
+      long total = 0L;
+      for (Long duration : durations.values()) total += duration;
+      estimate = Math.max(1L, total / durations.size());
+    }
+
+    Map<String, ClassContent> classContents = new LinkedHashMap<>();
+    for (String content : contents) {
+      String className = content.split("#")[0];
+      ClassContent classContent = classContents.get(className);
+      if (classContent == null) {
+        classContent = new ClassContent();
+        classContents.put(className, classContent);
+      }
+
+      Long duration = durations.get(content);
+      classContent.contents.add(content);
+      classContent.duration += (duration == null ? estimate : duration);
+    }
+
+    final long defaultDuration = estimate;
+    List<ClassContent> result = new ArrayList<>(classContents.values());
+    for (ClassContent classContent : result) {
+      Collections.sort(classContent.contents, new Comparator<String>() {
+        @Override
+        public int compare(String first, String second) {
+          return Long.compare(durationOf(second), durationOf(first));
+        }
+
+        private long durationOf(String content) {
+          Long duration = durations.get(content);
+          return duration == null ? defaultDuration : duration;
+        }
+      });
+    }
+
+    Collections.sort(result, new Comparator<ClassContent>() {
+      @Override
+      public int compare(ClassContent first, ClassContent second) {
+        return Long.compare(second.duration, first.duration);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * The automation contents of one class.
+   */
+  private static final class ClassContent {
+    private final List<String> contents = new ArrayList<>();
+    private long duration;
+  }
+}
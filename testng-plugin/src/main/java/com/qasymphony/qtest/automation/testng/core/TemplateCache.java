@@ -0,0 +1,95 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * TemplateCache keeps the parsed TestNG template keyed by its path, the cached template is
+ * parsed again when its modified time or size changes. The caller always gets its own copy of
+ * the template, so the copy can be filtered without touching the cached one.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TemplateCache 2026-10-19 11:05:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TemplateCache {
+  //~ class properties ========================================================
+  private final Map<String, CachedTemplate> templates;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TemplateCache template cache} instance.
+   *
+   * @param maxSize the maximum number of cached templates.
+   */
+  public TemplateCache(final int maxSize) {
+    this.templates = new LinkedHashMap<String, CachedTemplate>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedTemplate> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Gets the copy of the parsed template.
+   *
+   * @param templateFile the given template file.
+   * @return the copy of template document.
+   *
+   * @throws ParserConfigurationException if an error occurs during parsing XML.
+   * @throws SAXException if an error occurs during constructing SAX engine.
+   * @throws IOException if an error occurs during reading template.
+   */
+  public Document get(File templateFile) throws ParserConfigurationException, SAXException, IOException {
+    String key = templateFile.getAbsolutePath();
+    long lastModified = templateFile.lastModified();
+    long length = templateFile.length();
+
+    CachedTemplate template;
+    synchronized (templates) {
+      template = templates.get(key);
+    }
+
+    if (template == null || template.lastModified != lastModified || template.length != length) {
+      template = new CachedTemplate(parse(templateFile), lastModified, length);
+      synchronized (templates) {
+        templates.put(key, template);
+      }
+    }
+
+    // the DOM is not safe for concurrent reading, copy the template one by one.
+    synchronized (template.document) {
+      return (Document) template.document.cloneNode(true);
+    }
+  }
+
+  /**
+   * @return the parsed template document.
+   */
+  private Document parse(File templateFile) throws ParserConfigurationException, SAXException, IOException {
+    return XmlFactories.newDocumentBuilder().parse(templateFile);
+  }
+
+  /**
+   * The parsed template and the file state when it was parsed.
+   */
+  private static final class CachedTemplate {
+    private final Document document;
+    private final long lastModified;
+    private final long length;
+
+    private CachedTemplate(Document document, long lastModified, long length) {
+      this.document = document;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+  }
+}
@@ -4,20 +4,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -25,6 +24,7 @@ import org.apache.commons.lang.time.DateFormatUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
@@ -32,6 +32,13 @@ import com.qasymphony.qtest.automation.util.DirectoryScanner;
 import com.qasymphony.qtest.util.XmlTransformerUtils;
 
 public class TestCaseRunService {
+  //~ class properties ========================================================
+  private static final String XML_ELEMENT_LISTENERS = "listeners";
+  private static final String XML_ELEMENT_LISTENER = "listener";
+  private static final String XML_ATTRIBUTE_CLASS_NAME = "class-name";
+
+  private final TemplateCache templateCache = new TemplateCache(64);
+
   //~ class members ===========================================================
   /**
    * Generate new testNG xml file in targetPath Directory
@@ -45,9 +52,24 @@ public class TestCaseRunService {
    */
   public String generateTestNGXml(Set<String> contentSets, String targetPath) throws ParserConfigurationException,
       TransformerException {
+    return generateTestNGXml(contentSets, targetPath, SuiteParallelism.NONE);
+  }
+
+  /**
+   * Generate new testNG xml file in targetPath Directory with the given suite parallelism.
+   *
+   * @param contentSets the set of automation content (Java TestCase class)
+   * @param targetPath the target path.
+   * @param parallelism the parallelism applied to the generated suite.
+   *
+   * @throws ParserConfigurationException if an error occurs during parsing XML.
+   * @throws TransformerException if an error occurs during generate XML file.
+   * @return The TestNG XML file.
+   */
+  public String generateTestNGXml(Set<String> contentSets, String targetPath, SuiteParallelism parallelism)
+      throws ParserConfigurationException, TransformerException {
 
-    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+    DocumentBuilder docBuilder = XmlFactories.newDocumentBuilder();
 
     // Create <suite> element
     Document doc = docBuilder.newDocument();
@@ -63,17 +85,9 @@ public class TestCaseRunService {
       suiteElement.appendChild(testElement);
     }
 
-    String fileName = "generated_xml_" + DateFormatUtils.format(new Date(), "yyyyMMddhhmmss");
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    Transformer transformer = transformerFactory.newTransformer();
-    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
-    DOMSource source = new DOMSource(doc);
-    File xmlFile = new File(targetPath, fileName + ".xml");
-    StreamResult result = new StreamResult(xmlFile);
-    transformer.transform(source, result);
-    return xmlFile.toString();
+    String fileName = "generated_xml_" + DateFormatUtils.format(new Date(), "yyyyMMddhhmmss") + "_" + uniqueSuffix();
+    parallelism.apply(doc);
+    return writeSuite(doc, new File(targetPath, fileName + ".xml"));
   }
 
   /**
@@ -93,23 +107,39 @@ public class TestCaseRunService {
    */
   public String generateTestNGXml(Set<String> contentSets, String sourceXmlPath, String targetPath)
       throws ParserConfigurationException, SAXException, IOException, TransformerException {
+    return generateTestNGXml(contentSets, sourceXmlPath, targetPath, SuiteParallelism.NONE);
+  }
+
+  /**
+   * Generate TestNG XML file based on existing file with the given suite parallelism.
+   *
+   * @param contentSets the given set of automation test content (Java Test class)
+   * @param sourceXmlPath the source XML path.
+   * @param targetPath the target directory where the new TestNG XML place.
+   * @param parallelism the parallelism applied to the generated suite.
+   *
+   * @throws ParserConfigurationException if an error occurs during parsing existing XML.
+   * @throws SAXException if an error occurs during constructing SAX engine.
+   * @throws IOException if an error occurs during reading existing XML.
+   * @throws TransformerException if an error occurs during generate XML file.
+   * @return The new TestNG XML file.
+   */
+  public String generateTestNGXml(Set<String> contentSets, String sourceXmlPath, String targetPath,
+                                  SuiteParallelism parallelism)
+      throws ParserConfigurationException, SAXException, IOException, TransformerException {
     File xmlSourceFile = new File(sourceXmlPath);
 
     // the source file may not be existed or empty, so generate new file.
     if (!xmlSourceFile.exists() || xmlSourceFile.length() == 0) {
-      return generateTestNGXml(contentSets, targetPath);
+      return generateTestNGXml(contentSets, targetPath, parallelism);
     }
 
     // generate the TestNG XML based on existing file.
-    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-    docFactory.setIgnoringComments(true);
-    docFactory.setValidating(false);
-    docFactory.setIgnoringElementContentWhitespace(true);
-    DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-    Document doc = docBuilder.parse(xmlSourceFile);
+    Document doc = templateCache.get(xmlSourceFile);
 
     // build set of run class
-    Map<String, Set<String>> classSets = new HashMap<>();
+    // keep the order of contents, the tests generated from contents are run in the given order.
+    Map<String, Set<String>> classSets = new LinkedHashMap<>();
     for (String content : contentSets) {
       String className = content.split("#")[0];
       Set<String> methodSets = classSets.get(className);
@@ -223,16 +253,68 @@ public class TestCaseRunService {
       }
     }
 
-    String fileName = FilenameUtils.getBaseName(sourceXmlPath) + DateFormatUtils.format(new Date(), "yyyyMMddhhmmss");
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    Transformer transformer = transformerFactory.newTransformer();
+    String fileName = FilenameUtils.getBaseName(sourceXmlPath) + DateFormatUtils.format(new Date(), "yyyyMMddhhmmss")
+      + "_" + uniqueSuffix();
+    parallelism.apply(doc);
+    return writeSuite(doc, new File(targetPath, fileName + ".xml"));
+  }
+
+  /**
+   * Removes the listeners declared by the given suite file.
+   *
+   * @param suiteFile the given suite file.
+   * @return the class names of the removed listeners in their declared order.
+   * @throws ParserConfigurationException if an error occurs during parsing XML.
+   * @throws SAXException if the suite file could not be parsed.
+   * @throws IOException if the suite file could not be read.
+   * @throws TransformerException if an error occurs during writing the suite file.
+   */
+  public List<String> removeListeners(String suiteFile) throws ParserConfigurationException, SAXException,
+      IOException, TransformerException {
+    Document doc = XmlFactories.newDocumentBuilder().parse(new File(suiteFile));
+    NodeList listenersElements = doc.getElementsByTagName(XML_ELEMENT_LISTENERS);
+    List<String> listeners = new ArrayList<>();
+    if (listenersElements.getLength() == 0) return listeners;
+
+    NodeList listenerElements = doc.getElementsByTagName(XML_ELEMENT_LISTENER);
+    for (int i = 0; i < listenerElements.getLength(); i++) {
+      String className = ((Element) listenerElements.item(i)).getAttribute(XML_ATTRIBUTE_CLASS_NAME).trim();
+      if (!className.isEmpty()) listeners.add(className);
+    }
+
+    for (int i = listenersElements.getLength() - 1; i >= 0; i--) {
+      Node listenersElement = listenersElements.item(i);
+      listenersElement.getParentNode().removeChild(listenersElement);
+    }
+
+    writeSuite(doc, new File(suiteFile));
+    return listeners;
+  }
+
+  /**
+   * Writes the suite document to file.
+   *
+   * @param doc the given suite document.
+   * @param xmlFile the given file to write.
+   * @return the written file.
+   * @throws TransformerException if an error occurs during generate XML file.
+   */
+  private String writeSuite(Document doc, File xmlFile) throws TransformerException {
+    Transformer transformer = XmlFactories.newTransformer();
     transformer.setOutputProperty(OutputKeys.INDENT, "yes");
     transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
 
     DOMSource source = new DOMSource(doc);
-    File xmlFile = new File(targetPath, fileName + ".xml");
     StreamResult result = new StreamResult(xmlFile);
     transformer.transform(source, result);
     return xmlFile.toString();
   }
+
+  /**
+   * @return the unique suffix of generated file, the suites generated at the same time must
+   * not override each other.
+   */
+  private static String uniqueSuffix() {
+    return UUID.randomUUID().toString().substring(0, 8);
+  }
 }
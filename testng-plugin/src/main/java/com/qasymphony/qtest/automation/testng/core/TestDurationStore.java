@@ -0,0 +1,152 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * TestDurationStore keeps the duration history of test methods in a local store. The history
+ * is recorded from the result journals written by the log collector, each journal line has the
+ * format {@code class#method<TAB>status<TAB>startTime<TAB>endTime}.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TestDurationStore 2026-10-19 10:40:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TestDurationStore {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(TestDurationStore.class);
+  public static final String JOURNAL_EXTENSION = "journal";
+
+  private final File storeFile;
+  private Properties methodDurations;
+  private Map<String, Long> classDurations;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TestDurationStore test duration store} instance.
+   *
+   * @param storeFile the given file to store the duration history.
+   */
+  public TestDurationStore(File storeFile) {
+    this.storeFile = storeFile;
+  }
+
+  /**
+   * Gets the known duration of the given automation contents; the class content duration is
+   * the total duration of its methods.
+   *
+   * @param contents the given automation contents (class or class#method).
+   * @return the map of content and its duration in milliseconds.
+   */
+  public synchronized Map<String, Long> getDurations(Collection<String> contents) {
+    load();
+
+    Map<String, Long> durations = new HashMap<>();
+    for (String content : contents) {
+      Long duration;
+      if (content.indexOf('#') >= 0) {
+        String methodDuration = methodDurations.getProperty(content);
+        duration = (methodDuration == null ? null : Long.valueOf(methodDuration));
+      } else {
+        duration = classDurations.get(content);
+      }
+
+      if (duration != null) durations.put(content, duration);
+    }
+
+    return durations;
+  }
+
+  /**
+   * Records the result journals in the given directory to the store.
+   *
+   * @param journalDirectory the given journal directory.
+   */
+  public synchronized void record(File journalDirectory) {
+    File[] journals = journalDirectory.listFiles();
+    if (journals == null || journals.length == 0) return;
+
+    load();
+    for (File journal : journals) {
+      if (!JOURNAL_EXTENSION.equals(FilenameUtils.getExtension(journal.getName()))) continue;
+
+      try {
+        for (String line : FileUtils.readLines(journal, Charset.forName("UTF-8"))) {
+          String[] fields = line.split("\t");
+          if (fields.length < 4) continue;
+
+          try {
+            long duration = Math.max(0L, Long.parseLong(fields[3]) - Long.parseLong(fields[2]));
+            String previous = methodDurations.getProperty(fields[0]);
+
+            // keep the moving average, so one slow run does not reorder the whole suite.
+            if (previous != null) duration = (Long.parseLong(previous) * 3 + duration) / 4;
+            methodDurations.setProperty(fields[0], String.valueOf(duration));
+          } catch (NumberFormatException nfe) {
+            // ignore the broken line.
+          }
+        }
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG DurationStore] could not read result journal, message: " + ioe.getMessage());
+      }
+    }
+
+    rebuildClassDurations();
+    save();
+  }
+
+  /**
+   * Loads the store from file.
+   */
+  private void load() {
+    if (methodDurations != null) return;
+
+    methodDurations = new Properties();
+    if (storeFile.isFile()) {
+      try (InputStream is = new FileInputStream(storeFile)) {
+        methodDurations.load(is);
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG DurationStore] could not load duration store, message: " + ioe.getMessage());
+      }
+    }
+
+    rebuildClassDurations();
+  }
+
+  /**
+   * Saves the store to file.
+   */
+  private void save() {
+    try (OutputStream os = new FileOutputStream(storeFile)) {
+      methodDurations.store(os, "TestNG method durations");
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG DurationStore] could not save duration store, message: " + ioe.getMessage());
+    }
+  }
+
+  /**
+   * Rebuilds the class durations from the method durations.
+   */
+  private void rebuildClassDurations() {
+    classDurations = new HashMap<>();
+    for (String content : methodDurations.stringPropertyNames()) {
+      String className = content.split("#")[0];
+      Long classDuration = classDurations.get(className);
+      long methodDuration = Long.parseLong(methodDurations.getProperty(content));
+      classDurations.put(className, (classDuration == null ? 0L : classDuration) + methodDuration);
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import com.qasymphony.qtest.automation.util.FileDigester;
+import org.apache.bcel.classfile.AnnotationEntry;
+import org.apache.bcel.classfile.ArrayElementValue;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.ElementValue;
+import org.apache.bcel.classfile.ElementValuePair;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * TestImpactSelector selects the automation contents affected by the class changes. The class
+ * digest covers the bytecode of the class, its nested classes and its direct superclass; it is
+ * stored for the class when all of its tests pass, so the class is selected again until it
+ * passes with its current bytecode.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TestImpactSelector 2026-10-19 13:50:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TestImpactSelector {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(TestImpactSelector.class);
+  private static final String TEST_ANNOTATION_TYPE = "Lorg/testng/annotations/Test;";
+  private static final String CLASS_EXTENSION = ".class";
+  public static final String DIGEST_FILE = "digests.properties";
+
+  private final File storeFile;
+  private Properties greenDigests;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TestImpactSelector test impact selector} instance.
+   *
+   * @param storeFile the given file to store the class digests of the last green runs.
+   */
+  public TestImpactSelector(File storeFile) {
+    this.storeFile = storeFile;
+  }
+
+  /**
+   * Selects the contents whose class changed since its last green run, the contents of the
+   * always-run groups are always selected. The current class digests are written to the job
+   * journal directory and recorded when the job finishes.
+   *
+   * @param testDirectory the directory containing the compiled test classes.
+   * @param contents the given automation contents (class or class#method).
+   * @param alwaysRunGroups the TestNG groups always selected.
+   * @param journalDirectory the journal directory of the job.
+   * @return the selected contents.
+   */
+  public Set<String> select(File testDirectory, Collection<String> contents, Collection<String> alwaysRunGroups,
+                            File journalDirectory) {
+    ClassFiles classFiles = new ClassFiles(testDirectory);
+    Map<String, String> digests = digest(classFiles, contents);
+    if (journalDirectory != null) {
+      Properties jobDigests = new Properties();
+      jobDigests.putAll(digests);
+      save(jobDigests, new File(journalDirectory, DIGEST_FILE), "TestNG class digests of the job");
+    }
+
+    Properties lastGreenDigests;
+    synchronized (this) {
+      load();
+      lastGreenDigests = (Properties) greenDigests.clone();
+    }
+
+    Set<String> selected = new LinkedHashSet<>();
+    for (String content : contents) {
+      String[] parts = content.split("#");
+      String digest = digests.get(parts[0]);
+      if (digest == null || !digest.equals(lastGreenDigests.getProperty(parts[0]))) {
+        selected.add(content);
+      } else if (!alwaysRunGroups.isEmpty()
+        && isInGroups(classFiles.find(parts[0]), parts.length > 1 ? parts[1] : null, alwaysRunGroups)) {
+        selected.add(content);
+      }
+    }
+
+    return selected;
+  }
+
+  /**
+   * Records the digest of the classes whose tests all passed in the result journals.
+   *
+   * @param journalDirectory the given journal directory, it contains the {@value #DIGEST_FILE}
+   * written when the job was set up.
+   */
+  public synchronized void record(File journalDirectory) {
+    File digestFile = new File(journalDirectory, DIGEST_FILE);
+    File[] journals = journalDirectory.listFiles();
+    if (!digestFile.isFile() || journals == null) return;
+
+    // the class is green if none of its tests failed or was skipped.
+    Map<String, Boolean> greenClasses = new HashMap<>();
+    for (File journal : journals) {
+      if (!TestDurationStore.JOURNAL_EXTENSION.equals(FilenameUtils.getExtension(journal.getName()))) continue;
+
+      try {
+        for (String line : FileUtils.readLines(journal, Charset.forName("UTF-8"))) {
+          String[] fields = line.split("\t");
+          if (fields.length < 2) continue;
+
+          String className = fields[0].split("#")[0];
+          Boolean green = greenClasses.get(className);
+          greenClasses.put(className, (green == null || green) && "PASS".equals(fields[1]));
+        }
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG ImpactSelector] could not read result journal, message: " + ioe.getMessage());
+      }
+    }
+
+    Properties digests = loadProperties(digestFile);
+    load();
+    for (Map.Entry<String, Boolean> greenClass : greenClasses.entrySet()) {
+      String digest = digests.getProperty(greenClass.getKey());
+      if (digest == null) continue;
+
+      if (greenClass.getValue()) greenDigests.setProperty(greenClass.getKey(), digest);
+      else greenDigests.remove(greenClass.getKey());
+    }
+
+    save(greenDigests, storeFile, "TestNG class digests of the last green runs");
+  }
+
+  /**
+   * @return the map of class name and its digest, the class without class file is not included.
+   */
+  private Map<String, String> digest(ClassFiles classFiles, Collection<String> contents) {
+    Map<String, String> digests = new HashMap<>();
+    for (String content : contents) {
+      String className = content.split("#")[0];
+      if (digests.containsKey(className)) continue;
+
+      File classFile = classFiles.find(className);
+      if (classFile == null) continue;
+
+      try {
+        StringBuilder digest = new StringBuilder(digestOf(classFile));
+        String superClassName = new ClassParser(classFile.getPath()).parse().getSuperclassName();
+        File superClassFile = classFiles.find(superClassName);
+        if (superClassFile != null) digest.append('|').append(digestOf(superClassFile));
+
+        digests.put(className, DigestUtils.md5Hex(digest.toString()));
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG ImpactSelector] could not digest class " + className + ", message: " + ioe.getMessage());
+      }
+    }
+
+    return digests;
+  }
+
+  /**
+   * @return {@code true} if the class or the given method belongs to one of the given groups.
+   */
+  private boolean isInGroups(File classFile, String methodName, Collection<String> groups) {
+    if (classFile == null) return false;
+
+    try {
+      JavaClass javaClass = new ClassParser(classFile.getPath()).parse();
+      if (!Collections.disjoint(getGroups(javaClass.getAnnotationEntries()), groups)) return true;
+
+      for (Method method : javaClass.getMethods()) {
+        if (methodName != null && !methodName.equals(method.getName())) continue;
+        if (!Collections.disjoint(getGroups(method.getAnnotationEntries()), groups)) return true;
+      }
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG ImpactSelector] could not read groups, message: " + ioe.getMessage());
+    }
+
+    return false;
+  }
+
+  /**
+   * @return the groups of the TestNG test annotation.
+   */
+  private Set<String> getGroups(AnnotationEntry[] annotationEntries) {
+    Set<String> groups = new HashSet<>();
+    for (AnnotationEntry annotationEntry : annotationEntries) {
+      if (!TEST_ANNOTATION_TYPE.equals(annotationEntry.getAnnotationType())) continue;
+
+      for (ElementValuePair elementValuePair : annotationEntry.getElementValuePairs()) {
+        if (!"groups".equals(elementValuePair.getNameString())) continue;
+
+        ElementValue value = elementValuePair.getValue();
+        if (value instanceof ArrayElementValue) {
+          for (ElementValue group : ((ArrayElementValue) value).getElementValuesArray()) {
+            groups.add(group.stringifyValue());
+          }
+        } else {
+          groups.add(value.stringifyValue());
+        }
+      }
+    }
+
+    return groups;
+  }
+
+  /**
+   * @return the digest of the class file and its nested class files.
+   */
+  private String digestOf(File classFile) throws IOException {
+    final String nestedPrefix = FilenameUtils.getBaseName(classFile.getName()) + "$";
+    File[] nestedFiles = classFile.getParentFile().listFiles();
+
+    List<File> files = new ArrayList<>();
+    files.add(classFile);
+    if (nestedFiles != null) {
+      Arrays.sort(nestedFiles);
+      for (File nestedFile : nestedFiles) {
+        if (nestedFile.getName().startsWith(nestedPrefix) && nestedFile.getName().endsWith(CLASS_EXTENSION)) {
+          files.add(nestedFile);
+        }
+      }
+    }
+
+    StringBuilder digest = new StringBuilder();
+    for (File file : files) digest.append(FileDigester.md5OfFile(file));
+    return digest.toString();
+  }
+
+  /**
+   * Loads the store from file.
+   */
+  private void load() {
+    if (greenDigests == null) greenDigests = loadProperties(storeFile);
+  }
+
+  /**
+   * @return the properties loaded from the given file.
+   */
+  private static Properties loadProperties(File file) {
+    Properties properties = new Properties();
+    if (file.isFile()) {
+      try (InputStream is = new FileInputStream(file)) {
+        properties.load(is);
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG ImpactSelector] could not load class digests, message: " + ioe.getMessage());
+      }
+    }
+
+    return properties;
+  }
+
+  /**
+   * Saves the properties to the given file.
+   */
+  private static void save(Properties properties, File file, String comments) {
+    try (OutputStream os = new FileOutputStream(file)) {
+      properties.store(os, comments);
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG ImpactSelector] could not save class digests, message: " + ioe.getMessage());
+    }
+  }
+
+  /**
+   * The class files under the test directory; the class file is found by its package path
+   * because the class output directory is not known.
+   */
+  private static final class ClassFiles {
+    private final Map<String, List<File>> filesByName = new HashMap<>();
+
+    private ClassFiles(File directory) {
+      LinkedList<File> directories = new LinkedList<>();
+      directories.add(directory);
+      while (!directories.isEmpty()) {
+        File[] children = directories.removeFirst().listFiles();
+        if (children == null) continue;
+
+        for (File child : children) {
+          if (child.isDirectory()) {
+            directories.add(child);
+          } else if (child.getName().endsWith(CLASS_EXTENSION)) {
+            List<File> files = filesByName.get(child.getName());
+            if (files == null) {
+              files = new LinkedList<>();
+              filesByName.put(child.getName(), files);
+            }
+            files.add(child);
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the class file of the given class name, {@code null} if it does not exist.
+     */
+    private File find(String className) {
+      String classPath = className.replace('.', File.separatorChar) + CLASS_EXTENSION;
+      List<File> files = filesByName.get(FilenameUtils.getName(classPath));
+      if (files == null) return null;
+
+      for (File file : files) {
+        String path = file.getPath();
+        if (path.equals(classPath) || path.endsWith(File.separator + classPath)) return file;
+      }
+
+      return null;
+    }
+  }
+}
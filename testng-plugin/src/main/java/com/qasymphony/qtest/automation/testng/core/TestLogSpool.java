@@ -0,0 +1,282 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TestLogSpool keeps the test logs the collector writes for the job when the agent pulls the
+ * test logs. Each collector JVM appends one test log per line to its own spool file; the cursor
+ * is the read offset of each spool file, so the batch returns only the complete lines written
+ * after the cursor. The spool of the completed job is removed when the agent presents the final
+ * cursor again, so the last batch is read again if its response is lost; the spool never
+ * acknowledged is removed by the purge.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TestLogSpool 2026-10-19 17:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TestLogSpool {
+  //~ class properties ========================================================
+  public static final String SPOOL_EXTENSION = "spool";
+  public static final String PROGRESS_EXTENSION = "progress";
+  private static final String COMPLETED_MARKER = "completed";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File spoolRoot;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TestLogSpool test-log spool} instance.
+   *
+   * @param spoolRoot the directory holding the spool of each job.
+   */
+  public TestLogSpool(File spoolRoot) {
+    this.spoolRoot = spoolRoot;
+  }
+
+  /**
+   * Creates the spool directory of the given job.
+   *
+   * @param jobId the given job identifier.
+   * @return the spool directory, {@code null} if it could not be created.
+   */
+  public File createSpoolDirectory(long jobId) {
+    File spoolDirectory = getSpoolDirectory(jobId);
+    return (spoolDirectory.isDirectory() || spoolDirectory.mkdirs()) ? spoolDirectory : null;
+  }
+
+  /**
+   * Marks the job completed, no more test log is written to its spool.
+   *
+   * @param jobId the given job identifier.
+   */
+  public void complete(long jobId) {
+    File spoolDirectory = getSpoolDirectory(jobId);
+    if (!spoolDirectory.isDirectory()) return;
+
+    try {
+      FileUtils.touch(new File(spoolDirectory, COMPLETED_MARKER));
+    } catch (IOException ioe) {
+      // the spool is removed by the purge.
+    }
+  }
+
+  /**
+   * Reads the batch of test logs written after the given cursor.
+   *
+   * @param jobId the given job identifier.
+   * @param cursor the cursor returned by the previous batch, empty to read from the beginning.
+   * @param maxResults the maximum number of test logs of the batch.
+   * @param maxBytes the maximum number of bytes of the batch, at least one test log is returned.
+   * @return the batch of test logs.
+   * @throws IOException if an error occurs during reading the spool.
+   */
+  public Batch read(long jobId, String cursor, int maxResults, int maxBytes) throws IOException {
+    File spoolDirectory = getSpoolDirectory(jobId);
+    Map<String, Long> offsets = parseCursor(cursor);
+    List<String> testLogs = new ArrayList<>();
+    List<String> progress = new ArrayList<>();
+    if (!spoolDirectory.isDirectory()) return new Batch(testLogs, progress, cursor, true);
+
+    // the marker is checked before reading, the lines written before it are all read.
+    boolean completed = new File(spoolDirectory, COMPLETED_MARKER).exists();
+    File[] spoolFiles = spoolDirectory.listFiles();
+    if (spoolFiles == null) spoolFiles = new File[0];
+    Arrays.sort(spoolFiles);
+
+    boolean exhausted = true;
+    int batchBytes = 0;
+    for (File spoolFile : spoolFiles) {
+      // each collector JVM replaces its latest progress snapshot.
+      if (PROGRESS_EXTENSION.equals(FilenameUtils.getExtension(spoolFile.getName()))) {
+        String snapshot = readProgress(spoolFile);
+        if (snapshot != null) progress.add(snapshot);
+        continue;
+      }
+      if (!SPOOL_EXTENSION.equals(FilenameUtils.getExtension(spoolFile.getName()))) continue;
+
+      Long offset = offsets.get(spoolFile.getName());
+      long position = (offset == null ? 0L : offset);
+      if (testLogs.size() >= maxResults || (batchBytes >= maxBytes && !testLogs.isEmpty())) {
+        if (spoolFile.length() > position) exhausted = false;
+        offsets.put(spoolFile.getName(), position);
+        continue;
+      }
+
+      try (RandomAccessFile file = new RandomAccessFile(spoolFile, "r")) {
+        file.seek(position);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long lineStart = position;
+        int read;
+        reading:
+        while ((read = file.read(buffer)) > 0) {
+          int lineFrom = 0;
+          for (int index = 0; index < read; index++) {
+            if (buffer[index] != '\n') continue;
+
+            // the line is complete, the partial line is read again by the next batch.
+            line.write(buffer, lineFrom, index - lineFrom);
+            lineFrom = index + 1;
+            lineStart += line.size() + 1;
+            if (line.size() > 0) testLogs.add(new String(line.toByteArray(), UTF_8));
+            batchBytes += line.size() + 1;
+            line.reset();
+            position = lineStart;
+
+            if (testLogs.size() >= maxResults || batchBytes >= maxBytes) break reading;
+          }
+          line.write(buffer, lineFrom, read - lineFrom);
+        }
+      }
+
+      if (spoolFile.length() > position) exhausted = false;
+      offsets.put(spoolFile.getName(), position);
+    }
+
+    // the cursor was already the final one, the agent received the last batch.
+    if (completed && exhausted && testLogs.isEmpty()) FileUtils.deleteQuietly(spoolDirectory);
+    return new Batch(testLogs, progress, formatCursor(offsets), completed && exhausted);
+  }
+
+  /**
+   * Removes the spool of the jobs not written for the given time.
+   *
+   * @param maxAge the given time in milliseconds.
+   */
+  public void purge(long maxAge) {
+    File[] spoolDirectories = spoolRoot.listFiles();
+    if (spoolDirectories == null) return;
+
+    long now = System.currentTimeMillis();
+    for (File spoolDirectory : spoolDirectories) {
+      if (spoolDirectory.isDirectory() && now - lastModified(spoolDirectory) > maxAge) {
+        FileUtils.deleteQuietly(spoolDirectory);
+      }
+    }
+  }
+
+  /**
+   * @return the progress snapshot of the given file, {@code null} if it could not be read.
+   */
+  private static String readProgress(File progressFile) {
+    try {
+      String snapshot = FileUtils.readFileToString(progressFile, UTF_8).trim();
+      return snapshot.isEmpty() ? null : snapshot;
+    } catch (IOException ioe) {
+      // the snapshot is being replaced, the next batch reads it.
+      return null;
+    }
+  }
+
+  /**
+   * @return the spool directory of the given job.
+   */
+  private File getSpoolDirectory(long jobId) {
+    return new File(spoolRoot, String.valueOf(jobId));
+  }
+
+  /**
+   * @return the last modified time of the spool directory and its files.
+   */
+  private static long lastModified(File spoolDirectory) {
+    long lastModified = spoolDirectory.lastModified();
+    File[] spoolFiles = spoolDirectory.listFiles();
+    if (spoolFiles != null) {
+      for (File spoolFile : spoolFiles) lastModified = Math.max(lastModified, spoolFile.lastModified());
+    }
+
+    return lastModified;
+  }
+
+  /**
+   * @return the map of spool file name and its read offset.
+   */
+  private static Map<String, Long> parseCursor(String cursor) {
+    Map<String, Long> offsets = new LinkedHashMap<>();
+    if (StringUtils.isBlank(cursor)) return offsets;
+
+    for (String entry : cursor.split(",")) {
+      int separator = entry.lastIndexOf(':');
+      if (separator <= 0) continue;
+
+      try {
+        offsets.put(entry.substring(0, separator), Long.parseLong(entry.substring(separator + 1)));
+      } catch (NumberFormatException nfe) {
+        // the invalid entry is read from the beginning.
+      }
+    }
+
+    return offsets;
+  }
+
+  /**
+   * @return the cursor of the given read offsets.
+   */
+  private static String formatCursor(Map<String, Long> offsets) {
+    StringBuilder cursor = new StringBuilder();
+    for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+      if (cursor.length() > 0) cursor.append(',');
+      cursor.append(offset.getKey()).append(':').append(offset.getValue());
+    }
+
+    return cursor.toString();
+  }
+
+  /**
+   * The test logs read from the spool and the cursor of the next batch.
+   */
+  public static final class Batch {
+    private final List<String> testLogs;
+    private final List<String> progress;
+    private final String cursor;
+    private final boolean completed;
+
+    private Batch(List<String> testLogs, List<String> progress, String cursor, boolean completed) {
+      this.testLogs = testLogs;
+      this.progress = progress;
+      this.cursor = cursor;
+      this.completed = completed;
+    }
+
+    /**
+     * @return the test logs, each of them is a JSON object.
+     */
+    public List<String> getTestLogs() {
+      return testLogs;
+    }
+
+    /**
+     * @return the latest progress snapshot of each collector JVM, each of them is a JSON object.
+     */
+    public List<String> getProgress() {
+      return progress;
+    }
+
+    /**
+     * @return the cursor of the next batch.
+     */
+    public String getCursor() {
+      return cursor;
+    }
+
+    /**
+     * @return {@code true} if the job is completed and all of its test logs are read.
+     */
+    public boolean isCompleted() {
+      return completed;
+    }
+  }
+}
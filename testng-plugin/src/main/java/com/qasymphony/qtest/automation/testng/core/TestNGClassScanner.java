@@ -9,7 +9,6 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.bcel.classfile.ClassParser;
@@ -33,6 +32,8 @@ import com.qasymphony.qtest.automation.util.scanner.BCELClassScanner;
 public class TestNGClassScanner extends BCELClassScanner {
   //~ class properties ========================================================
   private final String TESTNG_ANNOTATION_CLASS_NAME = "org.testng.annotations.Test";
+  private int matchedFileCount;
+  private int parsedClassCount;
 
   //~ class members ===========================================================
   public TestNGClassScanner(File templateDir) {
@@ -48,6 +49,7 @@ public class TestNGClassScanner extends BCELClassScanner {
   @Override
   protected TestCase scanClassFile(File scanFile) throws IOException, ClassNotFoundException {
     // get root classloader path and qualify class name
+    parsedClassCount++;
     String fullFilePath = scanFile.getPath();
     ClassParser parser = new ClassParser(fullFilePath);
     JavaClass jClass = parser.parse();
@@ -106,11 +108,7 @@ public class TestNGClassScanner extends BCELClassScanner {
    * @throws IOException
    */
   public Map<String, Boolean> scanXmlFile(File scanFile) throws ParserConfigurationException, SAXException, IOException {
-    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-    docFactory.setIgnoringComments(true);
-    docFactory.setValidating(false);
-    docFactory.setIgnoringElementContentWhitespace(true);
-    DocumentBuilder builder = docFactory.newDocumentBuilder();
+    DocumentBuilder builder = XmlFactories.newDocumentBuilder();
     Document document = builder.parse(scanFile);
     NodeList classNodes = document.getElementsByTagName("class");
     NodeList packageNodes = document.getElementsByTagName("package");
@@ -154,6 +152,7 @@ public class TestNGClassScanner extends BCELClassScanner {
       boolean isJarScan) throws Exception {
     String tempIncludePattern = "**/*.class," + includePattern;
     Map<String, String> matchFiles = scanDirectory(scanDir, tempIncludePattern, excludePattern, libDirectory, isJarScan);
+    matchedFileCount = matchFiles.size();
     Map<String, TestCase> testCases = new HashMap<>();
     List<String> xmlPackages = new ArrayList<>();
     List<String> xmlClasses = new ArrayList<>();
@@ -218,6 +217,20 @@ public class TestNGClassScanner extends BCELClassScanner {
     return new ArrayList<TestCase>(testCases.values());
   }
   
+  /**
+   * @return the number of files matched by the last scan.
+   */
+  public int getMatchedFileCount() {
+    return matchedFileCount;
+  }
+
+  /**
+   * @return the number of class files parsed by this scanner.
+   */
+  public int getParsedClassCount() {
+    return parsedClassCount;
+  }
+
   private  boolean match(String text, String pattern) {
     return text.matches(pattern.replace("?", ".?").replace("*", ".*?"));
   }
@@ -1,5 +1,7 @@
 package com.qasymphony.qtest.automation.testng.core;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.qasymphony.qtest.automation.domain.execution.AntExecutionMode;
 import com.qasymphony.qtest.automation.domain.execution.CommandLineExecutionMode;
 import com.qasymphony.qtest.automation.domain.execution.MavenExecutionMode;
@@ -9,15 +11,19 @@ import com.qasymphony.qtest.automation.plugin.access.atm.model.CommandResponse;
 import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
 import com.qasymphony.qtest.automation.util.Lists;
 import com.qasymphony.qtest.automation.util.SystemEnvironment;
-import com.qasymphony.qtest.automation.util.Systems;
 import com.qasymphony.qtest.automation.util.command.CommandLines;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.qas.api.internal.util.google.base.Function;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TestNgCommandBuilder
@@ -29,17 +35,108 @@ import java.util.*;
 public class TestNgCommandBuilder {
   //~ class properties ========================================================
   private static final String TESTNG_LOG_COLLECTOR_NAME = "testng-plugin-log-collector.jar";
+  private static final String TESTNG_SHARD_LAUNCHER = "com.qasymphony.qtest.automation.testng.runner.ShardLauncher";
+  private static final String TESTNG_RUNNER_CLIENT = "com.qasymphony.qtest.automation.testng.runner.RunnerClient";
+  private static final String TESTNG_RETRY_TRANSFORMER = "com.qasymphony.qtest.automation.testng.core.RetryTransformer";
+  private static final String RUNNER_DAEMON_DIR = "TESTNG_RUNNER_DAEMON_DIR";
+  private static final String RUNNER_DAEMON_IDLE_MINUTES = "TESTNG_RUNNER_DAEMON_IDLE_MINUTES";
+  private static final String SHARD_SUITES = "TESTNG_SHARD_SUITES";
+  private static final String RESULT_JOURNAL_DIR = "TESTNG_RESULT_JOURNAL_DIR";
+  private static final String RESULT_SPOOL_DIR = "TESTNG_RESULT_SPOOL_DIR";
+  private static final String PROGRESS_INTERVAL = "TESTNG_PROGRESS_INTERVAL_SECONDS";
+  private static final String OUTPUT_CAPTURE = "TESTNG_OUTPUT_CAPTURE";
+  private static final String OUTPUT_CAPTURE_KB = "TESTNG_OUTPUT_CAPTURE_KB";
+  private static final String RESOURCE_METRICS = "TESTNG_RESOURCE_METRICS";
+  private static final String RESOURCE_TOP = "TESTNG_RESOURCE_TOP";
+  private static final String RETRY_BUDGET = "TESTNG_RETRY_BUDGET";
+  private static final String RETRY_LISTENERS = "TESTNG_RETRY_LISTENERS";
+  private static final String ATTACHMENT_UPLOAD = "TESTNG_ATTACHMENT_UPLOAD";
+  private static final String ATTACHMENT_MAX_KB = "TESTNG_ATTACHMENT_MAX_KB";
+  private static final String ATTACHMENT_CONCURRENCY = "TESTNG_ATTACHMENT_CONCURRENCY";
+  private static final long SPOOL_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+  private static final String SUITE_FILE = "TESTNG_SUITE_FILE";
+  private static final String SUITE_FILE_PROPERTY = "testng.suite.file";
+  private static final String ANT_WRAPPER_FILE = "TESTNG_ANT_WRAPPER_FILE";
+  private static final String CDS_ARCHIVE = "TESTNG_CDS_ARCHIVE";
+  private static final String CDS_ARCHIVE_LOCK = "TESTNG_CDS_ARCHIVE_LOCK";
+  private static final String CDS_CLASSPATH = "TESTNG_CDS_CLASSPATH";
+  private static final String RERUN_FAILED_CONSUMED = "rerun-failed.consumed";
+  private static final String SUITE_DURATION = "suite.duration";
+  private static final String SUITE_SIZE = "suite.size";
+  private static final String SETUP_WARNINGS = "command-builder.warnings";
   private static final Logger LOG = Logger.getLogger(TestNgCommandBuilder.class);
   private final TestCaseRunService testCaseRunService;
+  private final SuitePartitioner suitePartitioner;
+  private final ClassPathResolver classPathResolver;
+  private final ExecutableResolver executableResolver;
   private final SystemEnvironment systemEnvironment;
+  private final TestNgSettings settings;
+  private final MetricRegistry metricRegistry;
+  private final TestLogSpool testLogSpool;
+  private final ConcurrentMap<String, TestDurationStore> durationStores = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TestResultStore> resultStores = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TestImpactSelector> impactSelectors = new ConcurrentHashMap<>();
+  private final Object rerunFailedLock = new Object();
 
   //~ class members ===========================================================
   /**
    * Creates {@link TestNgCommandBuilder TestNg command builder} instance.
    */
   public TestNgCommandBuilder(SystemEnvironment systemEnvironment) {
+    this(systemEnvironment, new MetricRegistry());
+  }
+
+  /**
+   * Creates {@link TestNgCommandBuilder TestNg command builder} instance recording the suite
+   * generation metrics to the given registry.
+   */
+  public TestNgCommandBuilder(SystemEnvironment systemEnvironment, MetricRegistry metricRegistry) {
+    this.metricRegistry = metricRegistry;
     this.testCaseRunService = new TestCaseRunService();
+    this.suitePartitioner = new SuitePartitioner();
+    this.classPathResolver = new ClassPathResolver();
     this.systemEnvironment = systemEnvironment;
+    this.settings = new TestNgSettings(systemEnvironment);
+    this.executableResolver = new ExecutableResolver(settings.getResolutionTimeToLive());
+    this.testLogSpool = new TestLogSpool(new File(settings.getStateDirectory(), "spool"));
+  }
+
+  /**
+   * Warms up the resolution of the log collector and the tool homes known by the agent
+   * environment and the suite generation, so the first job does not pay for probing them and
+   * loading the XML classes.
+   */
+  public void warmUp() {
+    getLogCollectorLibPath(TESTNG_LOG_COLLECTOR_NAME);
+    executableResolver.resolveAnt(System.getenv("ANT_HOME"));
+    executableResolver.resolveMaven(StringUtils.defaultIfEmpty(System.getenv("M2_HOME"), System.getenv("MAVEN_HOME")));
+
+    File warmUpDirectory = new File(settings.getStateDirectory(), "warm-up-" + UUID.randomUUID().toString());
+    try {
+      if (warmUpDirectory.mkdirs()) {
+        testCaseRunService.generateTestNGXml(
+          Collections.singleton(TestNgCommandBuilder.class.getName() + "#warmUp"), warmUpDirectory.getAbsolutePath()
+        );
+      }
+    } catch (Exception e) {
+      LOG.warn("[TestNG CommandBuilder] Could not warm up the suite generation, message: " + e.getMessage());
+    } finally {
+      FileUtils.deleteQuietly(warmUpDirectory);
+    }
+  }
+
+  /**
+   * @return the test-log spool of the jobs whose test logs are pulled by the agent.
+   */
+  public TestLogSpool getTestLogSpool() {
+    return testLogSpool;
+  }
+
+  /**
+   * @return the executable resolver of this builder.
+   */
+  public ExecutableResolver getExecutableResolver() {
+    return executableResolver;
   }
 
   /**
@@ -49,15 +146,27 @@ public class TestNgCommandBuilder {
    * @return the given command build response.
    */
   public CommandResponse buildCommand(BuildCommandRequest commandRequest) {
-    // build command.
-    CommandResponse commandResponse = internalBuildCommand(commandRequest);
-    if (commandResponse.hasError()) return commandResponse;
+    // the project settings are read once for the request.
+    TestNgSettings projectSettings = getSettings(commandRequest);
 
-    // setup environment.
+    // setup environment, the command refers to the suite generated for this job.
     Map<String, String> environmentVariables = new HashMap<>();
-    setupEnvironment(commandRequest, environmentVariables);
-    commandResponse.withTaskEnvironmentVariables(environmentVariables);
+    try {
+      setupEnvironment(commandRequest, projectSettings, environmentVariables);
+    } catch (Exception e) {
+      LOG.warn("[TestNG CommandBuilder] Could not setup environment, message: " + e.getMessage());
+      cleanupEnvironment(commandRequest, environmentVariables);
+      return new CommandResponse().addError(e.getMessage());
+    }
 
+    // build command.
+    CommandResponse commandResponse = internalBuildCommand(commandRequest, projectSettings, environmentVariables);
+    if (commandResponse.hasError()) {
+      cleanupEnvironment(commandRequest, environmentVariables);
+      return commandResponse;
+    }
+
+    commandResponse.withTaskEnvironmentVariables(environmentVariables);
     return commandResponse;
   }
 
@@ -70,7 +179,53 @@ public class TestNgCommandBuilder {
   public void cleanupEnvironment(BuildCommandRequest commandRequest, Map<String, String> environmentVariables) {
     if (environmentVariables == null) return;
 
-    File templateFile = getTemplateFile(commandRequest, environmentVariables);
+    // remove the shard suites.
+    String shardSuites = environmentVariables.get(SHARD_SUITES);
+    if (StringUtils.isNotEmpty(shardSuites)) {
+      for (String shardSuite : shardSuites.split(File.pathSeparator)) {
+        File shardSuiteFile = new File(shardSuite);
+        if (shardSuiteFile.exists()) shardSuiteFile.delete();
+      }
+    }
+
+    // remove the Ant wrapper build file.
+    String antWrapperFile = environmentVariables.get(ANT_WRAPPER_FILE);
+    if (StringUtils.isNotEmpty(antWrapperFile)) {
+      FileUtils.deleteQuietly(new File(antWrapperFile));
+    }
+
+    // remove the suite of this job.
+    String suiteFile = environmentVariables.get(SUITE_FILE);
+    if (StringUtils.isNotEmpty(suiteFile)) {
+      FileUtils.deleteQuietly(new File(suiteFile));
+    }
+
+    // no more test log is written to the spool, it is removed once the agent reads all of them.
+    if (StringUtils.isNotEmpty(environmentVariables.get(RESULT_SPOOL_DIR))) {
+      Long jobId = getJobId(commandRequest);
+      if (jobId != null) testLogSpool.complete(jobId);
+      testLogSpool.purge(SPOOL_MAX_AGE);
+    }
+
+    // release the class data sharing archive lock, the archive was dumped when the JVM exited.
+    String archiveLock = environmentVariables.get(CDS_ARCHIVE_LOCK);
+    if (StringUtils.isNotEmpty(archiveLock)) {
+      FileUtils.deleteQuietly(new File(archiveLock));
+    }
+
+    // record the test durations and results of this job.
+    String resultJournalDir = environmentVariables.get(RESULT_JOURNAL_DIR);
+    if (StringUtils.isNotEmpty(resultJournalDir)) {
+      File resultJournalDirectory = new File(resultJournalDir);
+      if (resultJournalDirectory.isDirectory()) {
+        getDurationStore(resultJournalDirectory.getParentFile()).record(resultJournalDirectory);
+        getResultStore(resultJournalDirectory.getParentFile()).record(resultJournalDirectory);
+        getImpactSelector(resultJournalDirectory.getParentFile()).record(resultJournalDirectory);
+        FileUtils.deleteQuietly(resultJournalDirectory);
+      }
+    }
+
+    File templateFile = findTemplateFile(commandRequest, environmentVariables);
     if (templateFile != null) {
       File originalFile = createFileFromOriginal(templateFile);
       try {
@@ -80,6 +235,7 @@ public class TestNgCommandBuilder {
         }
       } catch (IOException ioe) {
         LOG.warn("[TestNG CommandBuilder] could not cleanup environment, message: " + ioe.getMessage());
+        metricRegistry.counter(SETUP_WARNINGS).inc();
       }
 
       if ("true".equals(environmentVariables.get("DELETE_TEMPLATE"))) {
@@ -93,52 +249,576 @@ public class TestNgCommandBuilder {
    *
    * @param commandRequest the given command request object.
    * @param environmentVariables the given environment variables.
+   * @throws Exception if the suites of the job could not be generated.
    */
-  public void setupEnvironment(BuildCommandRequest commandRequest, Map<String, String> environmentVariables) {
-    File templateFile = getTemplateFile(commandRequest, environmentVariables);
-    if (templateFile != null) {
-      try {
-        String targetFile = testCaseRunService.generateTestNGXml(new Function<List<AutomationMaterial>, Set<String>>(){
-          @Override
-          public Set<String> apply(List<AutomationMaterial> automationMaterials) {
-            Set<String> automationContents = new HashSet<>();
+  public void setupEnvironment(BuildCommandRequest commandRequest, Map<String, String> environmentVariables)
+    throws Exception {
+    setupEnvironment(commandRequest, getSettings(commandRequest), environmentVariables);
+  }
 
-            for (AutomationMaterial am : automationMaterials) {
-              automationContents.add(am.getAutomationContent());
-            }
+  /**
+   * Setups environment with the settings of the project.
+   *
+   * @param commandRequest the given command request object.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param environmentVariables the given environment variables.
+   * @throws Exception if the suites of the job could not be generated.
+   */
+  private void setupEnvironment(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                Map<String, String> environmentVariables) throws Exception {
+    // the log collector writes the result journal into this directory.
+    File resultJournalDirectory = new File(getProjectStateDirectory(projectSettings, commandRequest), UUID.randomUUID().toString());
+    if (resultJournalDirectory.mkdirs()) {
+      environmentVariables.put(RESULT_JOURNAL_DIR, resultJournalDirectory.getAbsolutePath());
+    }
 
-            return automationContents;
-          }
-        }.apply(commandRequest.getJobDetail().getMaterials()), templateFile.getAbsolutePath(), templateFile.getParent());
+    // the collector spools the test logs of this job, the agent pulls them.
+    Long jobId = getJobId(commandRequest);
+    if (projectSettings.isTestLogPull() && jobId != null) {
+      File spoolDirectory = testLogSpool.createSpoolDirectory(jobId);
+      if (spoolDirectory != null) environmentVariables.put(RESULT_SPOOL_DIR, spoolDirectory.getAbsolutePath());
+    }
 
-        // replace original file with the new file.
-        File originalFile = createFileFromOriginal(templateFile);
-        FileUtils.copyFile(templateFile, originalFile);
+    // the collector sends the progress snapshot of the running tests at this interval.
+    if (projectSettings.getProgressIntervalSeconds() > 0) {
+      environmentVariables.put(PROGRESS_INTERVAL, String.valueOf(projectSettings.getProgressIntervalSeconds()));
+    }
+
+    // the collector attaches the last output of these tests.
+    environmentVariables.put(OUTPUT_CAPTURE, projectSettings.getOutputCapture());
+    environmentVariables.put(OUTPUT_CAPTURE_KB, String.valueOf(projectSettings.getOutputCaptureKb()));
 
-        // replace the template file.
-        File newTemplateFile = new File(targetFile);
+    // the collector records the resources used by each test method.
+    if (projectSettings.isResourceMetrics()) {
+      environmentVariables.put(RESOURCE_METRICS, "true");
+      environmentVariables.put(RESOURCE_TOP, String.valueOf(projectSettings.getResourceMetricsTop()));
+    }
+
+    // the collector retries the failed test methods while the budget of the job lasts.
+    if (projectSettings.getRetryBudget() > 0) {
+      environmentVariables.put(RETRY_BUDGET, String.valueOf(projectSettings.getRetryBudget()));
+      if (!isRetryListenerRegistered(commandRequest, projectSettings)) {
+        LOG.info("[TestNG CommandBuilder] the job does not launch TestNG with the retry listener, "
+          + TESTNG_RETRY_TRANSFORMER + " must be registered by the build to retry the failed tests.");
+      }
+    }
+
+    // the collector uploads the attachments, the agent does not read them from this machine.
+    if (projectSettings.isAttachmentUpload()) {
+      environmentVariables.put(ATTACHMENT_UPLOAD, "true");
+      environmentVariables.put(ATTACHMENT_MAX_KB, String.valueOf(projectSettings.getAttachmentMaxKb()));
+      environmentVariables.put(ATTACHMENT_CONCURRENCY, String.valueOf(projectSettings.getAttachmentConcurrency()));
+    }
+
+    if (commandRequest.getExecutionMode().getId() == CommandLineExecutionMode.ID) {
+      // the warm daemon already saves the JVM startup, the archive is only used by forked JVMs.
+      if (projectSettings.isRunnerDaemon() && !isSharded(commandRequest, projectSettings)) {
+        environmentVariables.put(RUNNER_DAEMON_DIR, new File(projectSettings.getStateDirectory(), "daemon").getAbsolutePath());
+        environmentVariables.put(RUNNER_DAEMON_IDLE_MINUTES, String.valueOf(projectSettings.getRunnerDaemonIdleMinutes()));
+      } else if (projectSettings.isClassDataSharing()) {
+        setupClassDataSharing(commandRequest, environmentVariables, projectSettings);
+      }
+    }
+
+    if (isSharded(commandRequest, projectSettings)) {
+      setupShardEnvironment(commandRequest, projectSettings, environmentVariables);
+      return;
+    }
+
+    if (projectSettings.isIsolatedSuite(commandRequest.getExecutionMode().getId())) {
+      setupIsolatedEnvironment(commandRequest, projectSettings, environmentVariables);
+      return;
+    }
+
+    File templateFile = getTemplateFile(commandRequest, environmentVariables);
+    if (templateFile != null) {
+      try {
+        Set<String> automationContents = selectAutomationContents(commandRequest, projectSettings, environmentVariables);
+        String targetFile;
+        RequestTrace.Span generateSpan = RequestTrace.span("generate");
+        try {
+          targetFile = testCaseRunService.generateTestNGXml(
+            suitePartitioner.order(automationContents, getDurationStore(projectSettings, commandRequest).getDurations(automationContents)),
+            templateFile.getAbsolutePath(),
+            templateFile.getParent(),
+            projectSettings.getSuiteParallelism()
+          );
+        } finally {
+          generateSpan.close();
+        }
+
+        RequestTrace.Span copySpan = RequestTrace.span("copy");
         try {
-          FileUtils.copyFile(newTemplateFile, templateFile);
+          // replace original file with the new file.
+          File originalFile = createFileFromOriginal(templateFile);
+          FileUtils.copyFile(templateFile, originalFile);
+
+          // replace the template file.
+          File newTemplateFile = new File(targetFile);
+          try {
+            FileUtils.copyFile(newTemplateFile, templateFile);
+          } finally {
+            newTemplateFile.delete();
+          }
         } finally {
-          newTemplateFile.delete();
+          copySpan.close();
         }
+
+        setupRetryListeners(commandRequest, projectSettings, Collections.singletonList(templateFile.getAbsolutePath()),
+          environmentVariables);
       } catch (Exception e) {
         LOG.warn("[TestNG CommandBuilder] Could not setup environment, message: " + e.getMessage());
+        metricRegistry.counter(SETUP_WARNINGS).inc();
+      }
+    }
+  }
+
+  /**
+   * Setups the class data sharing archive of the job classpath. The job maps the archive if it
+   * exists, otherwise one job dumps it; the sharded job never dumps because its JVMs would write
+   * the same archive. Nothing is set up when the java command does not support the archive.
+   * <p>
+   * The archive is keyed by the classpath the job launches, the working directory and the
+   * classpath of the command option included, and by the other command options.
+   *
+   * @param commandRequest the given command request object.
+   * @param environmentVariables the given environment variables.
+   * @param projectSettings the given project settings.
+   */
+  private void setupClassDataSharing(BuildCommandRequest commandRequest, Map<String, String> environmentVariables,
+                                     TestNgSettings projectSettings) {
+    CommandLineExecutionMode commandLineExecutionMode = (CommandLineExecutionMode) commandRequest.getExecutionMode();
+    String javaCommand = commandLineExecutionMode.getCommand();
+    String testDirectory = commandRequest.getTestScript().getTestDirectory();
+    if (!ClassDataSharing.isSupported(executableResolver.resolveJavaVersion(javaCommand, testDirectory))) return;
+
+    // the same classpath as the command line job: the libraries, the working directory, the
+    // collector and the classpath of the command option.
+    List<String> commandOptions = translateCommandOptions(commandLineExecutionMode.getOption());
+    List<String> classPathEntries = buildCommandLineClassPath(commandRequest, true);
+    classPathEntries.add(new File(testDirectory).getAbsolutePath());
+    classPathEntries.add(getLogCollectorLibPath(TESTNG_LOG_COLLECTOR_NAME));
+    classPathEntries.addAll(resolveOptionClassPath(removeOptionClassPath(commandOptions), new File(testDirectory)));
+    classPathEntries.removeAll(Collections.singleton(""));
+
+    ClassDataSharing classDataSharing = new ClassDataSharing(new File(projectSettings.getStateDirectory(), "cds"));
+    List<String> classPath;
+    try {
+      classPath = classDataSharing.createClassPath(classPathEntries, classPathResolver);
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG CommandBuilder] could not create class data sharing classpath, the archive is not used, message: "
+        + ioe.getMessage());
+      metricRegistry.counter(SETUP_WARNINGS).inc();
+      return;
+    }
+
+    String fingerprint = classDataSharing.fingerprint(javaCommand, commandOptions, classPathEntries);
+
+    File archive = classDataSharing.getArchive(fingerprint);
+    if (archive.isFile()) {
+      environmentVariables.put(CDS_ARCHIVE, archive.getAbsolutePath());
+      environmentVariables.put(CDS_CLASSPATH, Lists.join(classPath, File.pathSeparator));
+      return;
+    }
+
+    if (isSharded(commandRequest, projectSettings)) return;
+
+    File archiveLock = classDataSharing.acquireDumpLock(fingerprint);
+    if (archiveLock != null) {
+      environmentVariables.put(CDS_ARCHIVE, archive.getAbsolutePath());
+      environmentVariables.put(CDS_ARCHIVE_LOCK, archiveLock.getAbsolutePath());
+      environmentVariables.put(CDS_CLASSPATH, Lists.join(classPath, File.pathSeparator));
+    }
+  }
+
+  /**
+   * Setups the isolated environment, the job has its own suite generated from the template and
+   * the template is kept unchanged, so the jobs sharing the template can run concurrently.
+   *
+   * @param commandRequest the given command request object.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param environmentVariables the given environment variables.
+   * @throws Exception if an error occurs during generating the suite of the job.
+   */
+  private void setupIsolatedEnvironment(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                        Map<String, String> environmentVariables) throws Exception {
+    Set<String> automationContents = selectAutomationContents(commandRequest, projectSettings, environmentVariables);
+    String suiteFile = generateSuite(
+      commandRequest,
+      projectSettings.getSuiteParallelism(),
+      suitePartitioner.order(automationContents, getDurationStore(projectSettings, commandRequest).getDurations(automationContents)),
+      findTemplateFile(commandRequest, environmentVariables)
+    );
+
+    environmentVariables.put(SUITE_FILE, suiteFile);
+    setupRetryListeners(commandRequest, projectSettings, Collections.singletonList(suiteFile), environmentVariables);
+  }
+
+  /**
+   * Setups the shard environment, each shard has its own suite generated from the template and
+   * the template is kept unchanged.
+   *
+   * @param commandRequest the given command request object.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param environmentVariables the given environment variables.
+   * @throws Exception if an error occurs during generating the shard suites.
+   */
+  private void setupShardEnvironment(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                     Map<String, String> environmentVariables) throws Exception {
+    File templateFile = findTemplateFile(commandRequest, environmentVariables);
+    Set<String> automationContents = selectAutomationContents(commandRequest, projectSettings, environmentVariables);
+    List<Set<String>> shards = suitePartitioner.partition(
+      automationContents,
+      projectSettings.getShardCount(),
+      getDurationStore(projectSettings, commandRequest).getDurations(automationContents)
+    );
+
+    SuiteParallelism parallelism = projectSettings.getSuiteParallelism();
+    List<String> shardSuites = new LinkedList<>();
+    try {
+      for (Set<String> shard : shards) {
+        shardSuites.add(generateSuite(commandRequest, parallelism, shard, templateFile));
+      }
+    } catch (Exception e) {
+      // the job never runs a part of its shards.
+      for (String shardSuite : shardSuites) FileUtils.deleteQuietly(new File(shardSuite));
+      throw e;
+    }
+
+    environmentVariables.put(SHARD_SUITES, Lists.join(shardSuites, File.pathSeparator));
+    setupRetryListeners(commandRequest, projectSettings, shardSuites, environmentVariables);
+
+    // the Ant job runs the shard suites from the wrapper build file.
+    if (commandRequest.getExecutionMode().getId() == AntExecutionMode.ID && !shardSuites.isEmpty()) {
+      AntExecutionMode antExecutionMode = (AntExecutionMode) commandRequest.getExecutionMode();
+      File buildFile = new File(StringUtils.defaultIfEmpty(antExecutionMode.getBuildFile(), "build.xml"));
+      if (!buildFile.isAbsolute()) buildFile = new File(commandRequest.getTestScript().getTestDirectory(), buildFile.getPath());
+
+      try {
+        File wrapperFile = new AntWrapperBuilder(buildFile, antExecutionMode.getTarget())
+          .withPrepareTarget(projectSettings.get(TestNgSettings.ANT_PREPARE_TARGET, null))
+          .withClasspathRef(
+            projectSettings.get(TestNgSettings.ANT_CLASSPATH_REF, null),
+            getLogCollectorLibPath(TESTNG_LOG_COLLECTOR_NAME)
+          )
+          .withListeners(isRetryListenerRegistered(commandRequest, projectSettings) ? getRetryListeners(environmentVariables) : null)
+          .withThreadCount(projectSettings.getInt(TestNgSettings.ANT_THREAD_COUNT, shardSuites.size()))
+          .write(shardSuites);
+        environmentVariables.put(ANT_WRAPPER_FILE, wrapperFile.getAbsolutePath());
+      } catch (Exception e) {
+        LOG.warn("[TestNG CommandBuilder] Could not generate Ant wrapper, message: " + e.getMessage());
+        metricRegistry.counter(SETUP_WARNINGS).inc();
+      }
+    }
+  }
+
+  /**
+   * Moves the listeners of the job suites to the {@code -listener} option in front of the retry
+   * transformer. TestNG 6.8 keeps one annotation transformer and registers the suite listeners
+   * after the option ones, so the transformer of the user would replace the retry transformer;
+   * the retry transformer calls the user transformers given by the environment instead.
+   *
+   * @param commandRequest the given command request object.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param suiteFiles the suites generated for the job.
+   * @param environmentVariables the given environment variables.
+   */
+  private void setupRetryListeners(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                   List<String> suiteFiles, Map<String, String> environmentVariables) {
+    if (!isRetryListenerRegistered(commandRequest, projectSettings)) return;
+
+    Set<String> listeners = new LinkedHashSet<>();
+    for (String suiteFile : suiteFiles) {
+      try {
+        listeners.addAll(testCaseRunService.removeListeners(suiteFile));
+      } catch (Exception e) {
+        LOG.warn("[TestNG CommandBuilder] could not move the suite listeners, message: " + e.getMessage());
+        metricRegistry.counter(SETUP_WARNINGS).inc();
+      }
+    }
+
+    listeners.remove(TESTNG_RETRY_TRANSFORMER);
+    if (!listeners.isEmpty()) environmentVariables.put(RETRY_LISTENERS, Lists.join(new ArrayList<>(listeners), ","));
+  }
+
+  /**
+   * @return {@code true} if the job registers the retry transformer with the TestNG listeners, the
+   * command line job launching TestNG and the Ant shards run by the wrapper tasks do.
+   */
+  private boolean isRetryListenerRegistered(BuildCommandRequest commandRequest, TestNgSettings projectSettings) {
+    if (projectSettings.getRetryBudget() <= 0) return false;
+
+    switch (commandRequest.getExecutionMode().getId()) {
+      case CommandLineExecutionMode.ID:
+        return isTestNgLaunched((CommandLineExecutionMode) commandRequest.getExecutionMode());
+      case AntExecutionMode.ID:
+        return isSharded(commandRequest, projectSettings)
+          && StringUtils.isNotEmpty(projectSettings.get(TestNgSettings.ANT_CLASSPATH_REF, null));
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return {@code true} if the command line runs the TestNG main class, not the main class of the
+   * user template.
+   */
+  private static boolean isTestNgLaunched(CommandLineExecutionMode commandLineExecutionMode) {
+    String cmdOption = StringUtils.defaultString(commandLineExecutionMode.getOption());
+    String template = commandLineExecutionMode.getTemplate();
+    return cmdOption.indexOf("org.testng.TestNG") >= 0 || template == null || cmdOption.indexOf(template) < 0;
+  }
+
+  /**
+   * @return the TestNG listeners of the job, the user listeners moved out of the suites and the
+   * retry transformer last, so it keeps the annotation transformer slot.
+   */
+  private static String getRetryListeners(Map<String, String> environmentVariables) {
+    String userListeners = environmentVariables.get(RETRY_LISTENERS);
+    return StringUtils.isEmpty(userListeners) ? TESTNG_RETRY_TRANSFORMER : userListeners + "," + TESTNG_RETRY_TRANSFORMER;
+  }
+
+  /**
+   * Generates the suite of the given automation contents into a new file.
+   *
+   * @param commandRequest the given command request object.
+   * @param parallelism the in-suite parallelism of the project.
+   * @param automationContents the given automation contents.
+   * @param templateFile the template file, {@code null} if the job has no template.
+   * @return the generated suite file.
+   * @throws Exception if an error occurs during generating suite.
+   */
+  private String generateSuite(BuildCommandRequest commandRequest, SuiteParallelism parallelism,
+                               Set<String> automationContents, File templateFile) throws Exception {
+    metricRegistry.histogram(SUITE_SIZE).update(automationContents.size());
+    Timer.Context context = metricRegistry.timer(SUITE_DURATION).time();
+    RequestTrace.Span generateSpan = RequestTrace.span("generate");
+    try {
+      if (templateFile == null) {
+        return testCaseRunService.generateTestNGXml(
+          automationContents, commandRequest.getTestScript().getTestDirectory(), parallelism
+        );
+      }
+
+      return testCaseRunService.generateTestNGXml(
+        automationContents, templateFile.getAbsolutePath(), templateFile.getParent(), parallelism
+      );
+    } finally {
+      generateSpan.close();
+      context.stop();
+    }
+  }
+
+  /**
+   * Selects the automation contents to run, only the methods failed or skipped in their last run
+   * are selected in the rerun-failed mode, and only the classes changed since their last green
+   * run are selected in the impact mode.
+   *
+   * @param commandRequest the given command request.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param environmentVariables the given environment variables.
+   * @return the set of automation contents to run.
+   */
+  private Set<String> selectAutomationContents(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                               Map<String, String> environmentVariables) {
+    RequestTrace.Span selectSpan = RequestTrace.span("select");
+    try {
+      return internalSelectAutomationContents(commandRequest, projectSettings, environmentVariables);
+    } finally {
+      selectSpan.close();
+    }
+  }
+
+  /**
+   * @return the set of automation contents to run.
+   */
+  private Set<String> internalSelectAutomationContents(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                                       Map<String, String> environmentVariables) {
+    Set<String> automationContents = getAutomationContents(commandRequest);
+
+    if (consumeRerunFailed(projectSettings, getProjectStateDirectory(projectSettings, commandRequest))) {
+      Set<String> failedContents = getResultStore(getProjectStateDirectory(projectSettings, commandRequest)).getFailed(automationContents);
+      if (failedContents.isEmpty()) {
+        LOG.info("[TestNG CommandBuilder] no failed test recorded, rerun all automation contents.");
+      } else {
+        LOG.info("[TestNG CommandBuilder] rerun " + failedContents.size() + " failed test(s).");
+        automationContents = failedContents;
+      }
+    }
+
+    // the Ant and Maven jobs compile the classes when they run, the class digests are known only
+    // for the command line job.
+    if (projectSettings.isImpactSelection() && commandRequest.getExecutionMode().getId() == CommandLineExecutionMode.ID) {
+      String resultJournalDir = environmentVariables.get(RESULT_JOURNAL_DIR);
+      Set<String> impactedContents = getImpactSelector(getProjectStateDirectory(projectSettings, commandRequest)).select(
+        new File(commandRequest.getTestScript().getTestDirectory()),
+        automationContents,
+        projectSettings.getAlwaysRunGroups(),
+        resultJournalDir == null ? null : new File(resultJournalDir)
+      );
+
+      LOG.info("[TestNG CommandBuilder] " + impactedContents.size() + " of " + automationContents.size()
+        + " automation content(s) affected by the class changes.");
+      automationContents = impactedContents;
+    }
+
+    return automationContents;
+  }
+
+  /**
+   * Consumes the rerun-failed option of the project, only the first job after the option is set
+   * reruns the failed tests. The option is set again by saving the project settings file.
+   *
+   * @param projectSettings the settings of the project.
+   * @param projectStateDirectory the state directory of the project.
+   * @return {@code true} if the job reruns the failed tests.
+   */
+  private boolean consumeRerunFailed(TestNgSettings projectSettings, File projectStateDirectory) {
+    if (!projectSettings.isRerunFailed()) return false;
+
+    File consumedFile = new File(projectStateDirectory, RERUN_FAILED_CONSUMED);
+    String settingsStamp = String.valueOf(projectSettings.getProjectModified());
+    synchronized (rerunFailedLock) {
+      try {
+        if (consumedFile.isFile() && settingsStamp.equals(FileUtils.readFileToString(consumedFile, "UTF-8").trim())) {
+          LOG.info("[TestNG CommandBuilder] the failed tests were already rerun, run all automation contents.");
+          return false;
+        }
+
+        FileUtils.writeStringToFile(consumedFile, settingsStamp, "UTF-8");
+        return true;
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG CommandBuilder] could not consume the rerun-failed option, message: " + ioe.getMessage());
+        metricRegistry.counter(SETUP_WARNINGS).inc();
+        return false;
       }
     }
   }
 
+  /**
+   * @return the job identifier of the given command request, {@code null} if it is not known.
+   */
+  private static Long getJobId(BuildCommandRequest commandRequest) {
+    return commandRequest.getJobDetail() == null ? null : commandRequest.getJobDetail().getJobServerId();
+  }
+
+  /**
+   * @return the set of automation contents of the given command request.
+   */
+  private Set<String> getAutomationContents(BuildCommandRequest commandRequest) {
+    return new Function<List<AutomationMaterial>, Set<String>>(){
+      @Override
+      public Set<String> apply(List<AutomationMaterial> automationMaterials) {
+        Set<String> automationContents = new HashSet<>();
+
+        for (AutomationMaterial am : automationMaterials) {
+          automationContents.add(am.getAutomationContent());
+        }
+
+        return automationContents;
+      }
+    }.apply(commandRequest.getJobDetail().getMaterials());
+  }
+
+  /**
+   * @return the settings of the project in the given command request.
+   */
+  private TestNgSettings getSettings(BuildCommandRequest commandRequest) {
+    return settings.forProject(commandRequest.getTestScript().getTestDirectory());
+  }
+
+  /**
+   * @return the directory used to store the state of the project in the given command request.
+   */
+  private File getProjectStateDirectory(TestNgSettings projectSettings, BuildCommandRequest commandRequest) {
+    File projectStateDirectory = new File(
+      projectSettings.getStateDirectory(),
+      DigestUtils.md5Hex(FilenameUtils.normalizeNoEndSeparator(commandRequest.getTestScript().getTestDirectory()))
+    );
+
+    if (!projectStateDirectory.exists()) projectStateDirectory.mkdirs();
+    return projectStateDirectory;
+  }
+
+  /**
+   * @return the test duration store of the project in the given command request.
+   */
+  private TestDurationStore getDurationStore(TestNgSettings projectSettings, BuildCommandRequest commandRequest) {
+    return getDurationStore(getProjectStateDirectory(projectSettings, commandRequest));
+  }
+
+  /**
+   * @return the test duration store in the given project state directory.
+   */
+  private TestDurationStore getDurationStore(File projectStateDirectory) {
+    String key = projectStateDirectory.getAbsolutePath();
+    TestDurationStore durationStore = durationStores.get(key);
+    if (durationStore == null) {
+      durationStore = new TestDurationStore(new File(projectStateDirectory, "durations.properties"));
+      TestDurationStore existing = durationStores.putIfAbsent(key, durationStore);
+      if (existing != null) durationStore = existing;
+    }
+
+    return durationStore;
+  }
+
+  /**
+   * @return the test result store in the given project state directory.
+   */
+  private TestResultStore getResultStore(File projectStateDirectory) {
+    String key = projectStateDirectory.getAbsolutePath();
+    TestResultStore resultStore = resultStores.get(key);
+    if (resultStore == null) {
+      resultStore = new TestResultStore(new File(projectStateDirectory, "results.properties"));
+      TestResultStore existing = resultStores.putIfAbsent(key, resultStore);
+      if (existing != null) resultStore = existing;
+    }
+
+    return resultStore;
+  }
+
+  /**
+   * @return the test impact selector in the given project state directory.
+   */
+  private TestImpactSelector getImpactSelector(File projectStateDirectory) {
+    String key = projectStateDirectory.getAbsolutePath();
+    TestImpactSelector impactSelector = impactSelectors.get(key);
+    if (impactSelector == null) {
+      impactSelector = new TestImpactSelector(new File(projectStateDirectory, "class-digests.properties"));
+      TestImpactSelector existing = impactSelectors.putIfAbsent(key, impactSelector);
+      if (existing != null) impactSelector = existing;
+    }
+
+    return impactSelector;
+  }
+
+  /**
+   * @return {@code true} if the job runs in the sharding mode, otherwise {@code false}.
+   */
+  private boolean isSharded(BuildCommandRequest commandRequest, TestNgSettings projectSettings) {
+    int executionModeId = commandRequest.getExecutionMode().getId();
+    return (executionModeId == CommandLineExecutionMode.ID
+        || (executionModeId == AntExecutionMode.ID && projectSettings.getBoolean(TestNgSettings.ANT_PARALLEL, false)))
+      && projectSettings.getShardCount() > 1
+      && commandRequest.getJobDetail() != null
+      && commandRequest.getJobDetail().getMaterials() != null
+      && !commandRequest.getJobDetail().getMaterials().isEmpty();
+  }
+
   /**
    * @return the command based on request.
    */
-  private CommandResponse internalBuildCommand(BuildCommandRequest commandRequest) {
+  private CommandResponse internalBuildCommand(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                                               Map<String, String> environmentVariables) {
+    String suiteFile = environmentVariables.get(SUITE_FILE);
     switch(commandRequest.getExecutionMode().getId()) {
       case AntExecutionMode.ID:
-        return createTestNgAntTask((AntExecutionMode) commandRequest.getExecutionMode(), commandRequest);
+        return createTestNgAntTask((AntExecutionMode) commandRequest.getExecutionMode(), commandRequest, environmentVariables);
       case MavenExecutionMode.ID:
-        return createTestNgMavenTask((MavenExecutionMode) commandRequest.getExecutionMode(), commandRequest);
+        return createTestNgMavenTask((MavenExecutionMode) commandRequest.getExecutionMode(), commandRequest, projectSettings, suiteFile);
       default:
-        return createTestNgExecTask((CommandLineExecutionMode) commandRequest.getExecutionMode(), commandRequest);
+        return createTestNgExecTask((CommandLineExecutionMode) commandRequest.getExecutionMode(), commandRequest, projectSettings,
+          environmentVariables);
     }
   }
 
@@ -146,9 +826,10 @@ public class TestNgCommandBuilder {
    * Builds the command line classpath.
    *
    * @param commandRequest the given command request.
+   * @param expandJars {@code true} to list the jar files instead of the directory wildcards.
    * @return the command line classpath.
    */
-  private List<String> buildCommandLineClassPath(BuildCommandRequest commandRequest) {
+  private List<String> buildCommandLineClassPath(BuildCommandRequest commandRequest, boolean expandJars) {
     File testDirectory = new File(commandRequest.getTestScript().getTestDirectory());
 
     // process libraries.
@@ -165,8 +846,13 @@ public class TestNgCommandBuilder {
       if (!libFile.exists()) libFile = new File(testDirectory, lib);
 
       if (libFile.exists()) {
-        if (libFile.isDirectory()) buildDirectoryClassPath(libFile, classPathLibs);
-        else classPathLibs.add(libFile.getAbsolutePath());
+        if (libFile.isDirectory()) {
+          classPathLibs.addAll(expandJars
+            ? classPathResolver.resolveJars(libFile)
+            : classPathResolver.resolveWildcards(libFile));
+        } else {
+          classPathLibs.add(libFile.getAbsolutePath());
+        }
       }
     }
 
@@ -174,17 +860,30 @@ public class TestNgCommandBuilder {
   }
 
   /**
-   * Builds directory classpath.
+   * Builds the classpath through the pathing jar, falls back to the wildcard classpath when the
+   * pathing jar could not be created.
    *
-   * @param directory the given directory to build.
-   * @param classPathLibs the given classpath libs to storage classpath.
+   * @param commandRequest the given command request.
+   * @param projectSettings the settings of the project in the given command request.
+   * @return the command line classpath.
    */
-  private void buildDirectoryClassPath(File directory, List<String> classPathLibs) {
-    classPathLibs.add(directory.getAbsolutePath() + File.separator + "*");
-    File[] children = directory.listFiles();
+  private List<String> buildPathingJarClassPath(BuildCommandRequest commandRequest, TestNgSettings projectSettings) {
+    List<String> classPathLibs = buildCommandLineClassPath(commandRequest, true);
+    if (classPathLibs.isEmpty()) return classPathLibs;
 
-    for (File child : children) {
-      if (child.isDirectory()) buildDirectoryClassPath(child, classPathLibs);
+    try {
+      File pathingJar = classPathResolver.createPathingJar(
+        classPathLibs,
+        projectSettings.getStateDirectory()
+      );
+
+      List<String> pathingClassPath = new LinkedList<>();
+      pathingClassPath.add(pathingJar.getAbsolutePath());
+      return pathingClassPath;
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG CommandBuilder] could not create pathing jar, message: " + ioe.getMessage());
+      metricRegistry.counter(SETUP_WARNINGS).inc();
+      return buildCommandLineClassPath(commandRequest, false);
     }
   }
 
@@ -192,24 +891,8 @@ public class TestNgCommandBuilder {
    * @return the ant executive file from home.
    */
   private CommandResponse createAntTaskWithHome(CommandResponse antTask, String antHome) {
-    if (StringUtils.isNotEmpty(antHome)) {
-      File antBin = new File(antHome, "bin");
-      if (antBin.exists()) {
-        File antExec;
-        if (Systems.isWindows()) {
-          antExec = new File(antBin, "ant.bat");
-          if (antExec.exists() && antExec.canExecute()) return antTask.withCommand(antExec.getAbsolutePath());
-
-          antExec = new File(antBin, "ant.cmd");
-          if (antExec.exists() && antExec.canExecute()) return antTask.withCommand(antExec.getAbsolutePath());
-        }
-
-        antExec = new File(antBin, "ant");
-        if (antExec.exists() && antExec.canExecute()) return antTask.withCommand(antExec.getAbsolutePath());
-      }
-    }
-
-    return antTask;
+    String antExec = executableResolver.resolveAnt(antHome);
+    return antExec == null ? antTask : antTask.withCommand(antExec);
   }
 
   /**
@@ -217,9 +900,13 @@ public class TestNgCommandBuilder {
    *
    * @param antExecutionMode the given ant execution mode.
    * @param commandRequest the given command request used to build.
+   * @param environmentVariables the environment prepared for this job.
    * @return the ant task for TestNG.
    */
-  private CommandResponse createTestNgAntTask(AntExecutionMode antExecutionMode, BuildCommandRequest commandRequest) {
+  private CommandResponse createTestNgAntTask(AntExecutionMode antExecutionMode, BuildCommandRequest commandRequest,
+                                              Map<String, String> environmentVariables) {
+    String suiteFile = environmentVariables.get(SUITE_FILE);
+    String wrapperFile = environmentVariables.get(ANT_WRAPPER_FILE);
     CommandResponse commandResponse = new CommandResponse();
     commandResponse.withTask("ant");
 
@@ -233,10 +920,15 @@ public class TestNgCommandBuilder {
       antCommandOption += " -Dbuild.sysclasspath=first";
     }
 
+    // the build file refers to the job suite through the property.
+    if (suiteFile != null && antCommandOption.indexOf("-D" + SUITE_FILE_PROPERTY) == -1) {
+      antCommandOption += " -D" + SUITE_FILE_PROPERTY + "=\"" + suiteFile + "\"";
+    }
+
     commandResponse.withOption(antCommandOption)
                    .withWorkingDirectory(commandRequest.getTestScript().getTestDirectory())
-                   .addTaskAttribute("build_file", antExecutionMode.getBuildFile())
-                   .addTaskAttribute("target", antExecutionMode.getTarget());
+                   .addTaskAttribute("build_file", wrapperFile != null ? wrapperFile : antExecutionMode.getBuildFile())
+                   .addTaskAttribute("target", wrapperFile != null ? AntWrapperBuilder.WRAPPER_TARGET : antExecutionMode.getTarget());
 
     return createAntTaskWithHome(commandResponse, antExecutionMode.getHome());
   }
@@ -246,9 +938,12 @@ public class TestNgCommandBuilder {
    *
    * @param mavenExecutionMode the given execution mode.
    * @param commandRequest the build command request.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param suiteFile the suite generated for this job, {@code null} if the template is used.
    * @return the maven command.
    */
-  private CommandResponse createTestNgMavenTask(MavenExecutionMode mavenExecutionMode, BuildCommandRequest commandRequest) {
+  private CommandResponse createTestNgMavenTask(MavenExecutionMode mavenExecutionMode, BuildCommandRequest commandRequest,
+                                                TestNgSettings projectSettings, String suiteFile) {
     CommandResponse commandResponse = new CommandResponse();
     commandResponse.withTask("maven");
 
@@ -267,7 +962,7 @@ public class TestNgCommandBuilder {
               int equalPos = arg.indexOf("=") + 1;
               arg = arg.substring(0, equalPos)
                 + mvnLogCollectorPath
-                + (Systems.isWindows() ? ";" : ":")
+                + (ExecutableResolver.isWindows() ? ";" : ":")
                 + arg.substring(equalPos);
             }
 
@@ -279,6 +974,18 @@ public class TestNgCommandBuilder {
         }
       }
 
+      // surefire runs the job suite instead of the suite configured by user property.
+      if (suiteFile != null && mvnCommandOption.indexOf("-Dsurefire.suiteXmlFiles") == -1) {
+        mvnCommandOption += " -Dsurefire.suiteXmlFiles=\"" + suiteFile + "\"";
+      }
+
+      // tune the surefire forks and threads, the user options win.
+      for (Map.Entry<String, String> property : projectSettings.getSurefireProperties().entrySet()) {
+        if (mvnCommandOption.indexOf("-D" + property.getKey() + "=") == -1) {
+          mvnCommandOption += " -D" + property.getKey() + "=" + property.getValue();
+        }
+      }
+
       // build maven command response.
       commandResponse.addTaskAttribute("build_file", mavenExecutionMode.getPomFile())
                      .addTaskAttribute("target", mavenExecutionMode.getGoal())
@@ -297,27 +1004,8 @@ public class TestNgCommandBuilder {
    * @return the maven task with home.
    */
   private CommandResponse createMavenTaskWithHome(CommandResponse mavenTask, String maventHome) {
-    if (StringUtils.isNotEmpty(maventHome)) {
-      File mvnBin = new File(maventHome, "bin");
-      if (mvnBin.exists()) {
-        File mvnExec;
-
-        if (Systems.isWindows()) {
-          // the mvn.bat is existing?
-          mvnExec = new File(mvnBin, "mvn.bat");
-          if (mvnExec.exists() && mvnExec.canExecute()) return mavenTask.withCommand(mvnExec.getAbsolutePath());
-
-          // the mvn.cmd is existing?
-          mvnExec = new File(mvnBin, "mvn.cmd");
-          if (mvnExec.exists() && mvnExec.canExecute()) return mavenTask.withCommand(mvnExec.getAbsolutePath());
-        }
-
-        mvnExec = new File(mvnBin, "mvn");
-        if (mvnExec.exists() && mvnExec.canExecute()) return mavenTask.withCommand(mvnExec.getAbsolutePath());
-      }
-    }
-
-    return mavenTask;
+    String mvnExec = executableResolver.resolveMaven(maventHome);
+    return mvnExec == null ? mavenTask : mavenTask.withCommand(mvnExec);
   }
 
   /**
@@ -325,33 +1013,86 @@ public class TestNgCommandBuilder {
    *
    * @param commandLineExecutionMode the given command line mode.
    * @param commandRequest the given command request.
+   * @param projectSettings the settings of the project in the given command request.
+   * @param environmentVariables the environment prepared for this job.
    * @return the command response.
    */
   private CommandResponse createTestNgExecTask(CommandLineExecutionMode commandLineExecutionMode,
-                                               BuildCommandRequest commandRequest) {
-    // add class path.
-    List<String> classPathLibs = buildCommandLineClassPath(commandRequest);
-    classPathLibs.add(".");
+                                               BuildCommandRequest commandRequest,
+                                               TestNgSettings projectSettings,
+                                               Map<String, String> environmentVariables) {
+    String logCollectorLibPath = getLogCollectorLibPath(TESTNG_LOG_COLLECTOR_NAME);
+    String archive = environmentVariables.get(CDS_ARCHIVE);
+    boolean classDataSharing = StringUtils.isNotEmpty(archive);
+
+    // add class path, the class data sharing classpath already has the classpath of the option.
+    List<String> classPathLibs;
+    if (classDataSharing) {
+      classPathLibs = new LinkedList<>(Arrays.asList(StringUtils.split(environmentVariables.get(CDS_CLASSPATH), File.pathSeparator)));
+    } else {
+      classPathLibs = (projectSettings.isPathingJar()
+        ? buildPathingJarClassPath(commandRequest, projectSettings)
+        : buildCommandLineClassPath(commandRequest, false));
+      classPathLibs.add(".");
+      classPathLibs.add(logCollectorLibPath);
+    }
+
+    // map or dump the class data sharing archive.
+    List<String> jvmOptions = new LinkedList<>();
+    if (classDataSharing) {
+      jvmOptions.addAll(new ClassDataSharing(new File(archive).getParentFile()).getJvmOptions(
+        new File(archive),
+        environmentVariables.containsKey(CDS_ARCHIVE_LOCK)
+      ));
+    }
 
-    classPathLibs.add(getLogCollectorLibPath(TESTNG_LOG_COLLECTOR_NAME));
     return createTestNgExecTask(
       commandLineExecutionMode,
       commandRequest.getTestScript().getTestDirectory(),
-      classPathLibs
+      classPathLibs,
+      !classDataSharing,
+      jvmOptions,
+      isRetryListenerRegistered(commandRequest, projectSettings) ? getRetryListeners(environmentVariables) : null,
+      environmentVariables.get(SUITE_FILE),
+      getLauncher(commandRequest, projectSettings, environmentVariables),
+      logCollectorLibPath
     );
   }
 
+  /**
+   * @return the launcher main class of the command line job, {@code null} if TestNG is launched
+   * directly.
+   */
+  private String getLauncher(BuildCommandRequest commandRequest, TestNgSettings projectSettings,
+                             Map<String, String> environmentVariables) {
+    if (isSharded(commandRequest, projectSettings)) return TESTNG_SHARD_LAUNCHER;
+    if (environmentVariables.containsKey(RUNNER_DAEMON_DIR)) return TESTNG_RUNNER_CLIENT;
+    return null;
+  }
+
   /**
    * Creates TestNg command line command.
    *
    * @param commandLineExecutionMode the given command line execution mode.
    * @param workingDir the given work directory.
    * @param classPathLibs the given class path lib.
+   * @param optionClassPath {@code true} to append the classpath of the command option.
+   * @param jvmOptions the JVM options of the TestNG JVM.
+   * @param listeners the TestNG listeners of the job, {@code null} if none is added.
+   * @param suiteFile the suite generated for this job, {@code null} if the template is used.
+   * @param launcher the launcher main class, {@code null} if TestNG is launched directly.
+   * @param launcherPath the launcher lib path.
    * @return the TestNg command line command.
    */
   private CommandResponse createTestNgExecTask(CommandLineExecutionMode commandLineExecutionMode,
                                                String workingDir,
-                                               List<String> classPathLibs) {
+                                               List<String> classPathLibs,
+                                               boolean optionClassPath,
+                                               List<String> jvmOptions,
+                                               String listeners,
+                                               String suiteFile,
+                                               String launcher,
+                                               String launcherPath) {
     CommandResponse commandResponse = new CommandResponse();
     commandResponse.withTask("exec");
 
@@ -364,7 +1105,7 @@ public class TestNgCommandBuilder {
       boolean hasTemplate = false;
       if (expectOptionPos >= 0) {
         cmdOption = cmdOption.substring(0, expectOptionPos);
-      } else {
+      } else if (template != null) {
         expectOptionPos = cmdOption.indexOf(template);
         if (expectOptionPos >= 0) {
           hasTemplate = true;
@@ -375,12 +1116,37 @@ public class TestNgCommandBuilder {
       // build command options.
       List<String> commandOptions = mergeWithAdditionalCommandOptions(
         classPathLibs,
-        cmdOption
+        cmdOption,
+        optionClassPath
       );
 
+      commandOptions.addAll(0, jvmOptions);
+
       // add execution point.
       if (!hasTemplate) commandOptions.add("org.testng.TestNG");
-      commandOptions.add(template);
+
+      // the retry transformer is only registered for the jobs of a retry budget.
+      if (!hasTemplate && listeners != null) {
+        commandOptions.add("-listener");
+        commandOptions.add(listeners);
+      }
+
+      // the shard launcher forks one TestNG JVM per shard suite given by the environment.
+      if (!TESTNG_SHARD_LAUNCHER.equals(launcher)) {
+        if (suiteFile == null && template == null) {
+          return commandResponse.addError("The job has neither a generated suite nor a template to run.");
+        }
+
+        commandOptions.add(suiteFile != null ? suiteFile : template);
+      }
+
+      // the launcher gets the TestNG command as its arguments.
+      if (launcher != null) {
+        commandOptions.add(0, commandLineExecutionMode.getCommand());
+        commandOptions.add(0, launcher);
+        commandOptions.add(0, launcherPath);
+        commandOptions.add(0, "-classpath");
+      }
 
       commandResponse.withCommand(commandLineExecutionMode.getCommand())
                      .withOption(CommandLines.toString(commandOptions.toArray(new String[commandOptions.size()]), true))
@@ -397,47 +1163,28 @@ public class TestNgCommandBuilder {
    *
    * @param classpathLibs the given classpath libraries.
    * @param cmdArgumentList the given command options.
+   * @param optionClassPath {@code true} to append the classpath of the command options.
    * @param cmdOptions the list of additional command options.
    * @return the command options.
    */
   private List<String> mergeWithAdditionalCommandOptions(List<String> classpathLibs,
                                                       String cmdArgumentList,
+                                                      boolean optionClassPath,
                                                       String...cmdOptions) {
     List<String> result = new LinkedList<>();
+    List<String> cmdOptionList = translateCommandOptions(cmdArgumentList);
 
-    if (cmdArgumentList == null) cmdArgumentList = "";
-    List<String> cmdOptionList = new ArrayList<>(Arrays.asList(CommandLines.translateCommandLine(cmdArgumentList)));
-
-    if (cmdArgumentList.toLowerCase().indexOf("-cp") >= 0
-      || cmdArgumentList.toLowerCase().indexOf("-classpath") >= 0) {
-      int classpathPos = cmdOptionList.indexOf("-cp");
-      if (classpathPos == -1) {
-        classpathPos = cmdOptionList.indexOf("-classpath");
-      }
-
-      // classpath lib.
-      String currentClasspathLib = cmdOptionList.get(classpathPos + 1);
-      String[] classpaths;
-      if (Systems.isWindows() && currentClasspathLib.indexOf(";") >= 0) {
-        classpaths = currentClasspathLib.split(";");
-      } else if (!Systems.isWindows() && currentClasspathLib.indexOf(":") >= 0){
-        classpaths = currentClasspathLib.split(":");
-      } else {
-        classpaths = new String[] { currentClasspathLib };
-      }
-
+    // remove class path out of the command option.
+    List<String> classpaths = removeOptionClassPath(cmdOptionList);
+    if (optionClassPath) {
       for (String classpath : classpaths) {
         classpathLibs.add(CommandLines.quoteArgument(classpath));
       }
-
-      // remove class path out of the command option.
-      cmdOptionList.remove(classpathPos);
-      cmdOptionList.remove(classpathPos);
     }
 
     if (!classpathLibs.isEmpty()) {
       result.add("-classpath");
-      result.add(Lists.join(classpathLibs, (Systems.isWindows() ? ";" : ":")));
+      result.add(Lists.join(classpathLibs, (ExecutableResolver.isWindows() ? ";" : ":")));
     }
 
     // append the additional command options.
@@ -453,6 +1200,74 @@ public class TestNgCommandBuilder {
     return result;
   }
 
+  /**
+   * @return the list of the given command options.
+   */
+  private static List<String> translateCommandOptions(String cmdArgumentList) {
+    return new ArrayList<>(Arrays.asList(CommandLines.translateCommandLine(cmdArgumentList == null ? "" : cmdArgumentList)));
+  }
+
+  /**
+   * Removes the {@code -cp} or {@code -classpath} option out of the given command options.
+   *
+   * @param cmdOptionList the given command options.
+   * @return the classpath entries of the removed option.
+   */
+  private static List<String> removeOptionClassPath(List<String> cmdOptionList) {
+    int classpathPos = cmdOptionList.indexOf("-cp");
+    if (classpathPos == -1) classpathPos = cmdOptionList.indexOf("-classpath");
+    if (classpathPos == -1 || classpathPos + 1 >= cmdOptionList.size()) return new LinkedList<>();
+
+    // classpath lib.
+    String currentClasspathLib = cmdOptionList.get(classpathPos + 1);
+    String[] classpaths;
+    if (ExecutableResolver.isWindows() && currentClasspathLib.indexOf(";") >= 0) {
+      classpaths = currentClasspathLib.split(";");
+    } else if (!ExecutableResolver.isWindows() && currentClasspathLib.indexOf(":") >= 0){
+      classpaths = currentClasspathLib.split(":");
+    } else {
+      classpaths = new String[] { currentClasspathLib };
+    }
+
+    cmdOptionList.remove(classpathPos);
+    cmdOptionList.remove(classpathPos);
+    return new LinkedList<>(Arrays.asList(classpaths));
+  }
+
+  /**
+   * Resolves the classpath entries of the command option against the working directory, the
+   * wildcard entry is expanded to the jar files of its directory like the JVM does.
+   *
+   * @param classpaths the classpath entries of the command option.
+   * @param workingDirectory the working directory of the job.
+   * @return the absolute classpath entries.
+   */
+  private static List<String> resolveOptionClassPath(List<String> classpaths, File workingDirectory) {
+    List<String> classPathEntries = new LinkedList<>();
+    for (String classpath : classpaths) {
+      if (classpath.isEmpty()) continue;
+
+      boolean wildcard = classpath.equals("*") || classpath.endsWith("/*") || classpath.endsWith(File.separator + "*");
+      File file = new File(wildcard ? classpath.substring(0, classpath.length() - 1) : classpath);
+      if (!file.isAbsolute()) file = new File(workingDirectory, file.getPath());
+
+      if (!wildcard) {
+        classPathEntries.add(file.getAbsolutePath());
+        continue;
+      }
+
+      File[] jars = file.listFiles();
+      if (jars == null) continue;
+
+      Arrays.sort(jars);
+      for (File jar : jars) {
+        if (jar.isFile() && jar.getName().toLowerCase().endsWith(".jar")) classPathEntries.add(jar.getAbsolutePath());
+      }
+    }
+
+    return classPathEntries;
+  }
+
   /**
    * @return the log collector instance.
    */
@@ -463,9 +1278,8 @@ public class TestNgCommandBuilder {
       systemEnvironment.getLogCollectorLibPath().getPath()
     );
 
-    collectorLibPath = new File(collectorLibPath, collectorName);
-    if (collectorLibPath.exists()) return collectorLibPath.getAbsolutePath();
-    return "";
+    String resolvedPath = executableResolver.resolveLibrary(new File(collectorLibPath, collectorName));
+    return resolvedPath == null ? "" : resolvedPath;
   }
 
   /**
@@ -498,6 +1312,22 @@ public class TestNgCommandBuilder {
     }
   }
 
+  /**
+   * @return the existing template file, {@code null} if the job has no template.
+   */
+  private File findTemplateFile(BuildCommandRequest commandRequest, Map<String, String> environmentVariables) {
+    String template = commandRequest.getExecutionMode() == null ? null : commandRequest.getExecutionMode().getTemplate();
+    if (template == null) template = environmentVariables.get("TEMPLATE_FILE");
+    if (template == null) return null;
+
+    File templateFile = new File(template);
+    if (templateFile.exists()) return templateFile;
+
+    if (commandRequest.getTestScript() == null) return null;
+    templateFile = new File(commandRequest.getTestScript().getTestDirectory(), template);
+    return templateFile.exists() ? templateFile : null;
+  }
+
   /**
    * @return the file.
    */
@@ -0,0 +1,424 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.domain.execution.CommandLineExecutionMode;
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import com.qasymphony.qtest.automation.util.SystemEnvironment;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TestNgSettings holds the TestNG plugin options. The option is resolved from the project
+ * settings file ({@value #SETTINGS_FILE}) placed in the test directory first, then from the
+ * agent system properties.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TestNgSettings 2026-10-19 09:10:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TestNgSettings {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(TestNgSettings.class);
+
+  public static final String SETTINGS_FILE = "qtest-testng.properties";
+
+  public static final String STATE_DIRECTORY = "testng.plugin.state.dir";
+  public static final String SHARD_COUNT = "testng.plugin.shard.count";
+  public static final String SUITE_ISOLATED = "testng.plugin.suite.isolated";
+  public static final String PARALLEL_MODE = "testng.plugin.parallel.mode";
+  public static final String PARALLEL_THREAD_COUNT = "testng.plugin.parallel.thread-count";
+  public static final String PARALLEL_DATA_PROVIDER_THREAD_COUNT = "testng.plugin.parallel.data-provider-thread-count";
+  public static final String PARALLEL_SAFE_CLASSES = "testng.plugin.parallel.safe-classes";
+  public static final String CLASSPATH_PATHING_JAR = "testng.plugin.classpath.pathing-jar";
+  public static final String CLASS_DATA_SHARING = "testng.plugin.cds.enabled";
+  public static final String RERUN_FAILED = "testng.plugin.rerun.failed";
+  public static final String BULKHEAD_PREFIX = "testng.plugin.bulkhead.";
+  public static final String RESOLUTION_TTL_SECONDS = "testng.plugin.resolution.ttl-seconds";
+  public static final String ANT_PARALLEL = "testng.plugin.ant.parallel.enabled";
+  public static final String ANT_THREAD_COUNT = "testng.plugin.ant.parallel.thread-count";
+  public static final String ANT_CLASSPATH_REF = "testng.plugin.ant.parallel.classpath-ref";
+  public static final String ANT_PREPARE_TARGET = "testng.plugin.ant.parallel.prepare-target";
+  public static final String SUREFIRE_TUNING = "testng.plugin.maven.surefire.enabled";
+  public static final String SUREFIRE_FORK_COUNT = "testng.plugin.maven.surefire.fork-count";
+  public static final String SUREFIRE_REUSE_FORKS = "testng.plugin.maven.surefire.reuse-forks";
+  public static final String SUREFIRE_PARALLEL = "testng.plugin.maven.surefire.parallel";
+  public static final String SUREFIRE_THREAD_COUNT = "testng.plugin.maven.surefire.thread-count";
+  public static final String IMPACT_SELECTION = "testng.plugin.impact.enabled";
+  public static final String IMPACT_ALWAYS_RUN_GROUPS = "testng.plugin.impact.always-run-groups";
+  public static final String RUNNER_DAEMON = "testng.plugin.daemon.enabled";
+  public static final String RUNNER_DAEMON_IDLE_MINUTES = "testng.plugin.daemon.idle-minutes";
+  public static final String WARM_UP = "testng.plugin.warmup.enabled";
+  public static final String SCAN_CACHE_SIZE = "testng.plugin.scan.cache.size";
+  public static final String SCAN_CACHE_TTL_SECONDS = "testng.plugin.scan.cache.ttl-seconds";
+  public static final String TESTLOG_PULL = "testng.plugin.testlog.pull.enabled";
+  public static final String TESTLOG_BATCH_SIZE = "testng.plugin.testlog.batch-size";
+  public static final String TESTLOG_BATCH_BYTES = "testng.plugin.testlog.batch-bytes";
+  public static final String PROGRESS_INTERVAL_SECONDS = "testng.plugin.progress.interval-seconds";
+  public static final String OUTPUT_CAPTURE = "testng.plugin.output.capture";
+  public static final String OUTPUT_CAPTURE_KB = "testng.plugin.output.capture-kb";
+  public static final String RESOURCE_METRICS = "testng.plugin.resource-metrics.enabled";
+  public static final String RESOURCE_METRICS_TOP = "testng.plugin.resource-metrics.top";
+  public static final String RETRY_BUDGET = "testng.plugin.retry.budget";
+  public static final String ATTACHMENT_UPLOAD = "testng.plugin.attachment.upload.enabled";
+  public static final String ATTACHMENT_MAX_KB = "testng.plugin.attachment.max-kb";
+  public static final String ATTACHMENT_CONCURRENCY = "testng.plugin.attachment.concurrency";
+  public static final String TRACE_BODY_SAMPLE_INTERVAL = "testng.plugin.trace.body-sample-interval";
+  public static final String TRACE_BODY_MAX_LENGTH = "testng.plugin.trace.body-max-length";
+
+  private final SystemEnvironment systemEnvironment;
+  private final Properties projectProperties;
+  private final long projectModified;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TestNgSettings TestNG settings} from agent system properties.
+   *
+   * @param systemEnvironment the given system environment.
+   */
+  public TestNgSettings(SystemEnvironment systemEnvironment) {
+    this(systemEnvironment, new Properties(), 0L);
+  }
+
+  private TestNgSettings(SystemEnvironment systemEnvironment, Properties projectProperties, long projectModified) {
+    this.systemEnvironment = systemEnvironment;
+    this.projectProperties = projectProperties;
+    this.projectModified = projectModified;
+  }
+
+  /**
+   * Creates the settings of the given project, the project settings file override the agent
+   * system properties.
+   *
+   * @param testDirectory the given project test directory.
+   * @return the project settings.
+   */
+  public TestNgSettings forProject(String testDirectory) {
+    if (StringUtils.isEmpty(testDirectory)) return this;
+
+    File settingsFile = new File(testDirectory, SETTINGS_FILE);
+    if (!settingsFile.isFile()) return this;
+
+    Properties properties = new Properties();
+    try (InputStream is = new FileInputStream(settingsFile)) {
+      properties.load(is);
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG Settings] could not load project settings, message: " + ioe.getMessage());
+    }
+
+    return new TestNgSettings(systemEnvironment, properties, settingsFile.lastModified());
+  }
+
+  /**
+   * @return the option value or the default value if the option does not exist.
+   */
+  public String get(String key, String defaultValue) {
+    String value = projectProperties.getProperty(key);
+    if (StringUtils.isBlank(value)) value = systemEnvironment.getProperty(key);
+    return StringUtils.isBlank(value) ? defaultValue : value.trim();
+  }
+
+  /**
+   * @return the integer option value or the default value if the option is not a number.
+   */
+  public int getInt(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    } catch (NumberFormatException nfe) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return the boolean option value or the default value if the option does not exist.
+   */
+  public boolean getBoolean(String key, boolean defaultValue) {
+    return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+  }
+
+  /**
+   * @return the number of suite shards; the value less than 2 disables sharding.
+   */
+  public int getShardCount() {
+    return Math.max(1, getInt(SHARD_COUNT, 1));
+  }
+
+  /**
+   * The command line job always runs its own suite. The Ant and Maven jobs run their own suite
+   * only when enabled, because their build files usually refer to the template directly.
+   *
+   * @param executionModeId the given execution mode identifier.
+   * @return {@code true} if the job runs its own suite and keeps the template unchanged.
+   */
+  public boolean isIsolatedSuite(int executionModeId) {
+    String isolated = get(SUITE_ISOLATED, null);
+    if (isolated == null) return executionModeId == CommandLineExecutionMode.ID;
+    return Boolean.parseBoolean(isolated);
+  }
+
+  /**
+   * @return the in-suite parallelism, the thread count defaults to the number of available cores
+   * and no class is parallel-safe until it matches the allowlist.
+   */
+  public SuiteParallelism getSuiteParallelism() {
+    String mode = get(PARALLEL_MODE, "none");
+    if ("none".equalsIgnoreCase(mode)) return SuiteParallelism.NONE;
+
+    int threadCount = getInt(PARALLEL_THREAD_COUNT, Runtime.getRuntime().availableProcessors());
+    List<String> safeClassPatterns = new LinkedList<>();
+    for (String pattern : get(PARALLEL_SAFE_CLASSES, "").split(",")) {
+      if (StringUtils.isNotBlank(pattern)) safeClassPatterns.add(pattern.trim());
+    }
+
+    return new SuiteParallelism(
+      mode,
+      threadCount,
+      getInt(PARALLEL_DATA_PROVIDER_THREAD_COUNT, threadCount),
+      safeClassPatterns
+    );
+  }
+
+  /**
+   * The surefire forks default to the number of available cores and reuse, the tests run in
+   * parallel by class with one thread per core.
+   *
+   * @return the surefire user properties of the Maven job, empty if the tuning is disabled.
+   */
+  public Map<String, String> getSurefireProperties() {
+    Map<String, String> properties = new LinkedHashMap<>();
+    if (!getBoolean(SUREFIRE_TUNING, false)) return properties;
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    properties.put("forkCount", get(SUREFIRE_FORK_COUNT, String.valueOf(cores)));
+    properties.put("reuseForks", get(SUREFIRE_REUSE_FORKS, "true"));
+
+    String parallel = get(SUREFIRE_PARALLEL, "classes");
+    if (!"none".equalsIgnoreCase(parallel)) {
+      properties.put("parallel", parallel);
+      properties.put("threadCount", String.valueOf(getInt(SUREFIRE_THREAD_COUNT, cores)));
+    }
+
+    return properties;
+  }
+
+  /**
+   * @return {@code true} if the command line classpath is passed through a manifest-only jar.
+   */
+  public boolean isPathingJar() {
+    return getBoolean(CLASSPATH_PATHING_JAR, false);
+  }
+
+  /**
+   * @return {@code true} if the command line job maps the class data sharing archive.
+   */
+  public boolean isClassDataSharing() {
+    return getBoolean(CLASS_DATA_SHARING, false);
+  }
+
+  /**
+   * @return the modified time of the project settings file, {@code 0} if the project has none.
+   */
+  public long getProjectModified() {
+    return projectModified;
+  }
+
+  /**
+   * @return {@code true} if the next job only runs the tests failed or skipped in their last run,
+   * the option is used once until the project settings file is saved again.
+   */
+  public boolean isRerunFailed() {
+    return getBoolean(RERUN_FAILED, false);
+  }
+
+  /**
+   * @return {@code true} if the job only runs the classes changed since their last green run.
+   */
+  public boolean isImpactSelection() {
+    return getBoolean(IMPACT_SELECTION, false);
+  }
+
+  /**
+   * @return the TestNG groups always run in the impact selection.
+   */
+  public List<String> getAlwaysRunGroups() {
+    List<String> groups = new LinkedList<>();
+    for (String group : get(IMPACT_ALWAYS_RUN_GROUPS, "").split(",")) {
+      if (StringUtils.isNotBlank(group)) groups.add(group.trim());
+    }
+
+    return groups;
+  }
+
+  /**
+   * @return {@code true} if the command line job runs on the warm runner daemon.
+   */
+  public boolean isRunnerDaemon() {
+    return getBoolean(RUNNER_DAEMON, false);
+  }
+
+  /**
+   * @return the minutes the runner daemon waits for the next job before it exits.
+   */
+  public int getRunnerDaemonIdleMinutes() {
+    return Math.max(1, getInt(RUNNER_DAEMON_IDLE_MINUTES, 30));
+  }
+
+  /**
+   * @return {@code true} if the plugin warms up its parsers, scanner and tool paths when it is
+   * loaded.
+   */
+  public boolean isWarmUp() {
+    return getBoolean(WARM_UP, true);
+  }
+
+  /**
+   * @return the maximum number of cached scan results, {@code 0} if the scan results are not
+   * cached.
+   */
+  public int getScanCacheSize() {
+    return Math.max(0, getInt(SCAN_CACHE_SIZE, 16));
+  }
+
+  /**
+   * @return the time in milliseconds the cached scan result is trusted without checking the files
+   * of the test and library directories; after it the result is served until a file is modified.
+   */
+  public long getScanCacheTimeToLive() {
+    return TimeUnit.SECONDS.toMillis(Math.max(0, getInt(SCAN_CACHE_TTL_SECONDS, 5)));
+  }
+
+  /**
+   * @return {@code true} if the collector spools the test logs and the agent pulls them by the
+   * collect test-log request, instead of the collector submitting each test log.
+   */
+  public boolean isTestLogPull() {
+    return getBoolean(TESTLOG_PULL, false);
+  }
+
+  /**
+   * @return the maximum number of test logs returned by one collect test-log request.
+   */
+  public int getTestLogBatchSize() {
+    return Math.max(1, getInt(TESTLOG_BATCH_SIZE, 1000));
+  }
+
+  /**
+   * @return the maximum number of bytes returned by one collect test-log request.
+   */
+  public int getTestLogBatchBytes() {
+    return Math.max(1, getInt(TESTLOG_BATCH_BYTES, 4 * 1024 * 1024));
+  }
+
+  /**
+   * @return the time in seconds between two progress snapshots of the collector, {@code 0} if
+   * the collector does not send the progress.
+   */
+  public int getProgressIntervalSeconds() {
+    return Math.max(0, getInt(PROGRESS_INTERVAL_SECONDS, 0));
+  }
+
+  /**
+   * @return the tests whose reporter and console output is attached: {@code failed},
+   * {@code all} or {@code none}.
+   */
+  public String getOutputCapture() {
+    String outputCapture = get(OUTPUT_CAPTURE, "failed").trim().toLowerCase();
+    return ("all".equals(outputCapture) || "none".equals(outputCapture)) ? outputCapture : "failed";
+  }
+
+  /**
+   * @return the maximum size in kilobytes of the reporter and console output kept for each test.
+   */
+  public int getOutputCaptureKb() {
+    return Math.max(1, getInt(OUTPUT_CAPTURE_KB, 64));
+  }
+
+  /**
+   * @return {@code true} if the collector records the heap, GC, CPU and allocation deltas of
+   * each test method.
+   */
+  public boolean isResourceMetrics() {
+    return getBoolean(RESOURCE_METRICS, false);
+  }
+
+  /**
+   * @return the number of most expensive test methods in the resource summary of each test.
+   */
+  public int getResourceMetricsTop() {
+    return Math.max(1, getInt(RESOURCE_METRICS_TOP, 10));
+  }
+
+  /**
+   * @return the number of failed test methods the collector retries in the same JVM for each
+   * job, {@code 0} if the failed tests are not retried. The retry listener is registered for the
+   * command line jobs and the Ant shards run by the wrapper tasks.
+   */
+  public int getRetryBudget() {
+    return Math.max(0, getInt(RETRY_BUDGET, 0));
+  }
+
+  /**
+   * @return {@code true} if the collector uploads the attachments to the agent instead of only
+   * sending their paths.
+   */
+  public boolean isAttachmentUpload() {
+    return getBoolean(ATTACHMENT_UPLOAD, false);
+  }
+
+  /**
+   * @return the maximum size in kilobytes of the uploaded attachment.
+   */
+  public int getAttachmentMaxKb() {
+    return Math.max(1, getInt(ATTACHMENT_MAX_KB, 10 * 1024));
+  }
+
+  /**
+   * @return the maximum number of attachments each test JVM uploads at the same time.
+   */
+  public int getAttachmentConcurrency() {
+    return Math.max(1, getInt(ATTACHMENT_CONCURRENCY, 2));
+  }
+
+  /**
+   * @return the request body is logged for one of this number of requests, {@code 0} if the
+   * request body is never logged.
+   */
+  public int getTraceBodySampleInterval() {
+    return Math.max(0, getInt(TRACE_BODY_SAMPLE_INTERVAL, 100));
+  }
+
+  /**
+   * @return the maximum number of characters of the logged request body.
+   */
+  public int getTraceBodyMaxLength() {
+    return Math.max(0, getInt(TRACE_BODY_MAX_LENGTH, 1024));
+  }
+
+  /**
+   * @return the time in milliseconds the resolved executables are trusted without checking.
+   */
+  public long getResolutionTimeToLive() {
+    return TimeUnit.SECONDS.toMillis(Math.max(0, getInt(RESOLUTION_TTL_SECONDS, 60)));
+  }
+
+  /**
+   * @return the directory used to store plugin state across jobs.
+   */
+  public File getStateDirectory() {
+    String stateDir = get(STATE_DIRECTORY, null);
+    File stateDirectory = (stateDir == null
+      ? new File(systemEnvironment.getUserDirectory(), "testng-plugin")
+      : new File(stateDir));
+
+    if (!stateDirectory.exists()) stateDirectory.mkdirs();
+    return stateDirectory;
+  }
+}
@@ -0,0 +1,168 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import com.qasymphony.qtest.automation.plugin.api.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * TestResultStore keeps the last result of each test method of a project. The result is recorded
+ * from the result journals written by the log collector; the method keeps its last result until
+ * a later job runs it again. The failed or skipped methods are indexed by their class.
+ *
+ * @author Dzung Nguyen
+ * @version $Id TestResultStore 2026-10-19 13:20:30z dzungvnguyen $
+ * @since 1.0
+ */
+public class TestResultStore {
+  //~ class properties ========================================================
+  private static final Logger LOG = Logger.getLogger(TestResultStore.class);
+  private static final String PASS = "PASS";
+  private static final String SKIP = "SKIP";
+  private static final String FAIL = "FAIL";
+
+  private final File storeFile;
+  private Properties methodResults;
+  private Map<String, Set<String>> failedMethods;
+
+  //~ class members ===========================================================
+  /**
+   * Creates {@link TestResultStore test result store} instance.
+   *
+   * @param storeFile the given file to store the last results.
+   */
+  public TestResultStore(File storeFile) {
+    this.storeFile = storeFile;
+  }
+
+  /**
+   * Gets the failed or skipped methods of the given automation contents in their last run.
+   *
+   * @param contents the given automation contents (class or class#method).
+   * @return the set of failed or skipped class#method contents.
+   */
+  public synchronized Set<String> getFailed(Collection<String> contents) {
+    load();
+
+    Set<String> failed = new LinkedHashSet<>();
+    for (String content : contents) {
+      int separator = content.indexOf('#');
+      Set<String> classFailedMethods = failedMethods.get(separator >= 0 ? content.substring(0, separator) : content);
+      if (classFailedMethods == null) continue;
+
+      if (separator < 0) {
+        failed.addAll(classFailedMethods);
+      } else if (classFailedMethods.contains(content)) {
+        failed.add(content);
+      }
+    }
+
+    return failed;
+  }
+
+  /**
+   * Records the result journals in the given directory to the store.
+   *
+   * @param journalDirectory the given journal directory.
+   */
+  public synchronized void record(File journalDirectory) {
+    File[] journals = journalDirectory.listFiles();
+    if (journals == null || journals.length == 0) return;
+
+    // the method fails if one of its invocations fails.
+    Map<String, String> results = new HashMap<>();
+    for (File journal : journals) {
+      if (!TestDurationStore.JOURNAL_EXTENSION.equals(FilenameUtils.getExtension(journal.getName()))) continue;
+
+      try {
+        for (String line : FileUtils.readLines(journal, Charset.forName("UTF-8"))) {
+          String[] fields = line.split("\t");
+          if (fields.length < 2) continue;
+
+          String previous = results.get(fields[0]);
+          if (previous == null || severity(fields[1]) > severity(previous)) results.put(fields[0], fields[1]);
+        }
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG ResultStore] could not read result journal, message: " + ioe.getMessage());
+      }
+    }
+
+    if (results.isEmpty()) return;
+
+    load();
+    methodResults.putAll(results);
+    index();
+    save();
+  }
+
+  /**
+   * @return the severity of the given status.
+   */
+  private static int severity(String status) {
+    if (FAIL.equals(status)) return 2;
+    if (SKIP.equals(status)) return 1;
+    return 0;
+  }
+
+  /**
+   * Loads the store from file.
+   */
+  private void load() {
+    if (methodResults != null) return;
+
+    methodResults = new Properties();
+    if (storeFile.isFile()) {
+      try (InputStream is = new FileInputStream(storeFile)) {
+        methodResults.load(is);
+      } catch (IOException ioe) {
+        LOG.warn("[TestNG ResultStore] could not load result store, message: " + ioe.getMessage());
+      }
+    }
+
+    index();
+  }
+
+  /**
+   * Indexes the failed or skipped methods by their class.
+   */
+  private void index() {
+    failedMethods = new HashMap<>();
+    for (String methodContent : methodResults.stringPropertyNames()) {
+      int separator = methodContent.indexOf('#');
+      if (separator < 0 || PASS.equals(methodResults.getProperty(methodContent))) continue;
+
+      String className = methodContent.substring(0, separator);
+      Set<String> classFailedMethods = failedMethods.get(className);
+      if (classFailedMethods == null) {
+        classFailedMethods = new TreeSet<>();
+        failedMethods.put(className, classFailedMethods);
+      }
+      classFailedMethods.add(methodContent);
+    }
+  }
+
+  /**
+   * Saves the store to file.
+   */
+  private void save() {
+    try (OutputStream os = new FileOutputStream(storeFile)) {
+      methodResults.store(os, "TestNG last method results");
+    } catch (IOException ioe) {
+      LOG.warn("[TestNG ResultStore] could not save result store, message: " + ioe.getMessage());
+    }
+  }
+}
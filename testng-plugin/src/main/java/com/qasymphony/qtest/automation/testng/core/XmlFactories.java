@@ -0,0 +1,59 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * XmlFactories keeps the XML parser and transformer factories looked up once, the lookup goes
+ * through the service loader and is slow to repeat for every suite. The factories are not safe
+ * for concurrent use, so the builders and transformers are created one at a time; the created
+ * ones belong to the caller.
+ *
+ * @author Dzung Nguyen
+ * @version $Id XmlFactories 2026-10-19 16:30:30z dzungvnguyen $
+ * @since 1.0
+ */
+public final class XmlFactories {
+  //~ class properties ========================================================
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+  private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+  //~ class members ===========================================================
+  private XmlFactories() {
+  }
+
+  /**
+   * @return the new document builder ignoring comments and not validating.
+   * @throws ParserConfigurationException if the document builder could not be created.
+   */
+  public static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+    synchronized (DOCUMENT_BUILDER_FACTORY) {
+      return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+    }
+  }
+
+  /**
+   * @return the new transformer.
+   * @throws TransformerConfigurationException if the transformer could not be created.
+   */
+  public static Transformer newTransformer() throws TransformerConfigurationException {
+    synchronized (TRANSFORMER_FACTORY) {
+      return TRANSFORMER_FACTORY.newTransformer();
+    }
+  }
+
+  /**
+   * @return the document builder factory shared by the plugin.
+   */
+  private static DocumentBuilderFactory createDocumentBuilderFactory() {
+    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+    docFactory.setIgnoringComments(true);
+    docFactory.setValidating(false);
+    docFactory.setIgnoringElementContentWhitespace(true);
+    return docFactory;
+  }
+}
@@ -24,6 +24,9 @@ public class XmlTransformerUtils {
   public static final String XML_ELEMENT_EXCLUDE = "exclude";
   public static final String XML_ELEMENT_PACKAGE = "package";
   public static final String XML_ELEMENT_GROUP = "groups";
+  public static final String XML_ATTRIBUTE_PARALLEL = "parallel";
+  public static final String XML_ATTRIBUTE_THREAD_COUNT = "thread-count";
+  public static final String XML_ATTRIBUTE_DATA_PROVIDER_THREAD_COUNT = "data-provider-thread-count";
 
   //~ class members ===========================================================
   public static Node transformXmlStringToTestElement(String xml) {
@@ -0,0 +1,161 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qasymphony.qtest.automation.util.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassDataSharingTest {
+
+  private File archiveDirectory;
+  private File jar;
+  private ClassDataSharing classDataSharing;
+
+  @Before
+  public void init() throws Exception {
+    archiveDirectory = File.createTempFile("cds", "");
+    archiveDirectory.delete();
+    jar = new File(archiveDirectory, "lib/first.jar");
+    FileUtils.writeStringToFile(jar, "first");
+    classDataSharing = new ClassDataSharing(archiveDirectory);
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(archiveDirectory);
+  }
+
+  @Test
+  public void testFingerprintChangesWithClassPath() throws Exception {
+    List<String> options = Arrays.asList("-Xmx512m");
+    List<String> classPath = Arrays.asList(jar.getAbsolutePath(), archiveDirectory.getAbsolutePath());
+    String fingerprint = classDataSharing.fingerprint("java", options, classPath);
+    assertEquals(fingerprint, classDataSharing.fingerprint("java", options, classPath));
+    assertNotEquals(fingerprint, classDataSharing.fingerprint("/opt/jdk-17/bin/java", options, classPath));
+    assertNotEquals(fingerprint, classDataSharing.fingerprint("java", Arrays.asList("-Xmx1g"), classPath));
+    assertNotEquals(fingerprint, classDataSharing.fingerprint("java", options, classPath.subList(0, 1)));
+
+    // the job writes to the directory.
+    FileUtils.writeStringToFile(new File(archiveDirectory, "test-output/index.html"), "report");
+    assertEquals(fingerprint, classDataSharing.fingerprint("java", options, classPath));
+
+    // the jar is rebuilt with the same name.
+    FileUtils.writeStringToFile(jar, "first, rebuilt");
+    assertNotEquals(fingerprint, classDataSharing.fingerprint("java", options, classPath));
+  }
+
+  @Test
+  public void testDumpAndMapArchiveWithDirectoryOnClassPath() throws Exception {
+    String javaCommand = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+    Assume.assumeTrue(ClassDataSharing.isSupported(new ExecutableResolver(0L).resolveJavaVersion(javaCommand, null)));
+
+    // the test classes directory is not empty.
+    File classes = new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    File library = new File(archiveDirectory, "lib/library.jar");
+    new JarOutputStream(FileUtils.openOutputStream(library)).close();
+
+    List<String> classPathEntries = Arrays.asList(library.getAbsolutePath(), classes.getAbsolutePath());
+    List<String> classPath = classDataSharing.createClassPath(classPathEntries, new ClassPathResolver());
+    assertEquals(1, classPath.size());
+    assertEquals(Arrays.asList(library.getAbsolutePath()),
+      classDataSharing.createClassPath(classPathEntries.subList(0, 1), new ClassPathResolver()));
+
+    File archive = classDataSharing.getArchive(classDataSharing.fingerprint(javaCommand, Collections.<String>emptyList(), classPathEntries));
+    assertEquals("dumped", run(javaCommand, classDataSharing.getJvmOptions(archive, true), classPath));
+    assertTrue(archive.isFile());
+    assertEquals("dumped", run(javaCommand, classDataSharing.getJvmOptions(archive, false), classPath));
+  }
+
+  @Test
+  public void testAcquireDumpLockOnce() throws Exception {
+    File lock = classDataSharing.acquireDumpLock("fingerprint");
+    assertNotNull(lock);
+    assertTrue(lock.isFile());
+    assertNull(classDataSharing.acquireDumpLock("fingerprint"));
+    assertNotNull(classDataSharing.acquireDumpLock("other"));
+  }
+
+  @Test
+  public void testReclaimStaleDumpLock() throws Exception {
+    File lock = classDataSharing.acquireDumpLock("fingerprint");
+    lock.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+
+    assertEquals(lock, classDataSharing.acquireDumpLock("fingerprint"));
+    assertNull(classDataSharing.acquireDumpLock("fingerprint"));
+  }
+
+  @Test
+  public void testResolveJavaVersionOfJobCommand() throws Exception {
+    Assume.assumeFalse(ExecutableResolver.isWindows());
+
+    // the fake java counts its runs in the working directory.
+    File java = new File(archiveDirectory, "jdk/bin/java");
+    FileUtils.writeStringToFile(java, "#!/bin/sh\necho run >> probes\necho 'openjdk version \"17.0.2\" 2022-01-18'\n");
+    java.setExecutable(true);
+    File probes = new File(archiveDirectory, "probes");
+
+    ExecutableResolver executableResolver = new ExecutableResolver(0L);
+    assertEquals(17, executableResolver.resolveJavaVersion("jdk/bin/java", archiveDirectory.getAbsolutePath()));
+    assertEquals(17, executableResolver.resolveJavaVersion("./jdk/bin/java", archiveDirectory.getAbsolutePath()));
+    assertEquals(1, FileUtils.readLines(probes).size());
+    assertEquals(0, executableResolver.resolveJavaVersion("jdk/bin/java", jar.getParentFile().getAbsolutePath()));
+
+    // the java file is replaced.
+    java.setLastModified(java.lastModified() - TimeUnit.MINUTES.toMillis(1));
+    assertEquals(17, executableResolver.resolveJavaVersion("jdk/bin/java", archiveDirectory.getAbsolutePath()));
+    assertEquals(2, FileUtils.readLines(probes).size());
+  }
+
+  @Test
+  public void testSupportDynamicArchiveOnly() {
+    assertEquals(8, ExecutableResolver.parseJavaVersion("java version \"1.8.0_292\""));
+    assertEquals(17, ExecutableResolver.parseJavaVersion("openjdk version \"17.0.2\" 2022-01-18"));
+    assertEquals(21, ExecutableResolver.parseJavaVersion("openjdk version \"21-ea\" 2023-09-19"));
+    assertEquals(0, ExecutableResolver.parseJavaVersion("command not found"));
+
+    assertFalse(ClassDataSharing.isSupported(11));
+    assertTrue(ClassDataSharing.isSupported(13));
+
+    File archive = classDataSharing.getArchive("fingerprint");
+    assertEquals(Arrays.asList("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath()),
+      classDataSharing.getJvmOptions(archive, true));
+  }
+
+  private String run(String javaCommand, List<String> jvmOptions, List<String> classPath) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(javaCommand);
+    command.addAll(jvmOptions);
+    command.add("-classpath");
+    command.add(Lists.join(classPath, File.pathSeparator));
+    command.add(Main.class.getName());
+
+    File output = new File(archiveDirectory, "output.txt");
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+    assertEquals(FileUtils.readFileToString(output), 0, process.waitFor());
+    return FileUtils.readFileToString(output).trim();
+  }
+
+  public static class Main {
+    public static void main(String[] args) {
+      System.out.println("dumped");
+    }
+  }
+}
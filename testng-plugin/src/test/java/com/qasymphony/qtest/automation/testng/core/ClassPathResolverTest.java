@@ -0,0 +1,63 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassPathResolverTest {
+
+  private ClassPathResolver classPathResolver;
+  private File libDirectory;
+
+  @Before
+  public void init() throws Exception {
+    classPathResolver = new ClassPathResolver();
+    libDirectory = File.createTempFile("libs", "");
+    libDirectory.delete();
+    libDirectory.mkdirs();
+    FileUtils.touch(new File(libDirectory, "first.jar"));
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(libDirectory);
+  }
+
+  @Test
+  public void testResolveAgainWhenDirectoryModified() throws Exception {
+    assertEquals(1, classPathResolver.resolveWildcards(libDirectory).size());
+    assertEquals(1, classPathResolver.resolveJars(libDirectory).size());
+
+    File nested = new File(libDirectory, "nested");
+    nested.mkdirs();
+    FileUtils.touch(new File(nested, "second.jar"));
+    libDirectory.setLastModified(libDirectory.lastModified() + 2000L);
+
+    assertEquals(2, classPathResolver.resolveWildcards(libDirectory).size());
+    assertEquals(2, classPathResolver.resolveJars(libDirectory).size());
+  }
+
+  @Test
+  public void testCreatePathingJar() throws Exception {
+    File jar = new File(libDirectory, "first.jar");
+    File pathingJar = classPathResolver.createPathingJar(Arrays.asList(jar.getAbsolutePath()), libDirectory);
+
+    try (JarFile jarFile = new JarFile(pathingJar)) {
+      String classPath = jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+      assertEquals(jar.toURI().toASCIIString(), classPath);
+    }
+
+    assertTrue(pathingJar.equals(
+      classPathResolver.createPathingJar(Arrays.asList(jar.getAbsolutePath()), libDirectory)
+    ));
+  }
+}
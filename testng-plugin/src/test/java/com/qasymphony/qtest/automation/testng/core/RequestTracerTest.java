@@ -0,0 +1,42 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestTracerTest {
+
+  @Test
+  public void testSampleAndTruncateBody() {
+    RequestTracer requestTracer = new RequestTracer(2, 5);
+
+    RequestTrace sampled = requestTracer.start("request");
+    assertEquals("01234... (10 chars)", requestTracer.formatBody(sampled, "0123456789"));
+    assertEquals("0123", requestTracer.formatBody(sampled, "0123"));
+    sampled.finish();
+
+    RequestTrace notSampled = requestTracer.start("request");
+    assertNull(requestTracer.formatBody(notSampled, "0123456789"));
+    notSampled.finish();
+  }
+
+  @Test
+  public void testRecordPhasesOfCurrentTrace() {
+    RequestTrace trace = new RequestTracer(0, 0).start("request");
+    assertSame(trace, RequestTrace.current());
+
+    RequestTrace.Span span = RequestTrace.span("parse");
+    assertNull(new RequestTracer(0, 0).formatBody(trace, "body"));
+    span.close();
+
+    // the same phase is added up.
+    RequestTrace.span("parse").close();
+
+    String summary = trace.finish();
+    assertTrue(summary, summary.matches("request \\d+ ms \\(parse \\d+ ms\\)"));
+    assertNull(RequestTrace.current());
+  }
+}
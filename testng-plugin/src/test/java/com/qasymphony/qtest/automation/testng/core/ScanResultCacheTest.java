@@ -0,0 +1,178 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.qasymphony.qtest.automation.domain.testcase.TestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScanResultCacheTest {
+
+  private static final List<String> NO_DIRECTORIES = Collections.emptyList();
+
+  private final AtomicInteger scanCount = new AtomicInteger();
+
+  @Test
+  public void testCacheScanResult() throws Exception {
+    ScanResultCache scanResultCache = new ScanResultCache(2, TimeUnit.MINUTES.toMillis(1));
+    String key = ScanResultCache.keyOf("/tests/", "**/*.class ", "", "/tests/lib/", false);
+
+    List<TestCase> testCases = scanResultCache.get(key, NO_DIRECTORIES, countingScan());
+    assertSame(testCases, scanResultCache.get(ScanResultCache.keyOf("/tests/", "**/*.class", null, "/tests/lib/", false), NO_DIRECTORIES, countingScan()));
+    assertEquals(1, scanCount.get());
+    assertEquals(1, scanResultCache.getHitCount());
+
+    scanResultCache.get(ScanResultCache.keyOf("/tests/", "**/*.class", "", "/tests/lib/", true), NO_DIRECTORIES, countingScan());
+    assertEquals(2, scanCount.get());
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws Exception {
+    // the expired result is served while its files are not modified.
+    ScanResultCache expiredCache = new ScanResultCache(2, 0L);
+    expiredCache.get("key", NO_DIRECTORIES, countingScan());
+    expiredCache.get("key", NO_DIRECTORIES, countingScan());
+    assertEquals(1, scanCount.get());
+
+    ScanResultCache smallCache = new ScanResultCache(1, TimeUnit.MINUTES.toMillis(1));
+    smallCache.get("first", NO_DIRECTORIES, countingScan());
+    smallCache.get("second", NO_DIRECTORIES, countingScan());
+    smallCache.get("first", NO_DIRECTORIES, countingScan());
+    assertEquals(4, scanCount.get());
+  }
+
+  @Test
+  public void testScanAgainWhenFileModified() throws Exception {
+    File testDirectory = File.createTempFile("tests", "");
+    testDirectory.delete();
+    File classFile = new File(testDirectory, "sample/SampleTest.class");
+    FileUtils.touch(classFile);
+
+    try {
+      List<String> directories = Arrays.asList(testDirectory.getAbsolutePath(), null);
+      String key = ScanResultCache.keyOf(testDirectory.getAbsolutePath(), "**/*.class", "", null, false);
+
+      // the files are not checked within the time-to-live.
+      ScanResultCache trustingCache = new ScanResultCache(2, TimeUnit.MINUTES.toMillis(1));
+      trustingCache.get(key, directories, countingScan());
+      classFile.setLastModified(classFile.lastModified() + 2000L);
+      trustingCache.get(key, directories, countingScan());
+      assertEquals(1, scanCount.get());
+
+      ScanResultCache checkingCache = new ScanResultCache(2, 0L);
+      checkingCache.get(key, directories, countingScan());
+      checkingCache.get(key, directories, countingScan());
+      assertEquals(2, scanCount.get());
+
+      // the class is compiled again in place, its directories are not modified.
+      classFile.setLastModified(classFile.lastModified() + 2000L);
+      checkingCache.get(key, directories, countingScan());
+      assertEquals(3, scanCount.get());
+    } finally {
+      FileUtils.deleteQuietly(testDirectory);
+    }
+  }
+
+  @Test
+  public void testNotFollowSymbolicLinks() throws Exception {
+    File testDirectory = File.createTempFile("tests", "");
+    testDirectory.delete();
+    File classFile = new File(testDirectory, "sample/SampleTest.class");
+    FileUtils.touch(classFile);
+
+    try {
+      Files.createSymbolicLink(new File(testDirectory, "sample/loop").toPath(), testDirectory.toPath());
+      assertTrue(ScanResultCache.lastModified(Arrays.asList(testDirectory.getAbsolutePath())) >= classFile.lastModified());
+    } finally {
+      new File(testDirectory, "sample/loop").delete();
+      FileUtils.deleteQuietly(testDirectory);
+    }
+  }
+
+  @Test
+  public void testShareRunningScan() throws Exception {
+    final ScanResultCache scanResultCache = new ScanResultCache(0, 0L);
+    final CountDownLatch scanStarted = new CountDownLatch(1);
+    final CountDownLatch scanReleased = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<TestCase>> first = executor.submit(new Callable<List<TestCase>>() {
+        @Override
+        public List<TestCase> call() throws Exception {
+          return scanResultCache.get("key", NO_DIRECTORIES, new Callable<List<TestCase>>() {
+            @Override
+            public List<TestCase> call() throws Exception {
+              scanStarted.countDown();
+              scanReleased.await();
+              return countingScan().call();
+            }
+          });
+        }
+      });
+
+      scanStarted.await();
+      Future<List<TestCase>> second = executor.submit(new Callable<List<TestCase>>() {
+        @Override
+        public List<TestCase> call() throws Exception {
+          return scanResultCache.get("key", NO_DIRECTORIES, countingScan());
+        }
+      });
+
+      while (scanResultCache.getCoalescedCount() == 0) Thread.sleep(5L);
+      scanReleased.countDown();
+
+      assertSame(first.get(), second.get());
+      assertEquals(1, scanCount.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testNotCacheFailedScan() throws Exception {
+    ScanResultCache scanResultCache = new ScanResultCache(2, TimeUnit.MINUTES.toMillis(1));
+    try {
+      scanResultCache.get("key", NO_DIRECTORIES, new Callable<List<TestCase>>() {
+        @Override
+        public List<TestCase> call() throws Exception {
+          throw new IOException("could not scan");
+        }
+      });
+      fail("the scan error must be thrown");
+    } catch (IOException ioe) {
+      assertEquals("could not scan", ioe.getMessage());
+    }
+
+    scanResultCache.get("key", NO_DIRECTORIES, countingScan());
+    assertEquals(1, scanCount.get());
+  }
+
+  private Callable<List<TestCase>> countingScan() {
+    return new Callable<List<TestCase>>() {
+      @Override
+      public List<TestCase> call() throws Exception {
+        scanCount.incrementAndGet();
+        return Collections.singletonList(new TestCase());
+      }
+    };
+  }
+}
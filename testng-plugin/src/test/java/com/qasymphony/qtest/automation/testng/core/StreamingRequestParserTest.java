@@ -0,0 +1,91 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.qas.api.internal.util.json.JsonObject;
+
+import com.qasymphony.qtest.automation.domain.TestScript;
+import com.qasymphony.qtest.automation.domain.execution.CommandLineExecutionMode;
+import com.qasymphony.qtest.automation.domain.job.AutomationMaterial;
+import com.qasymphony.qtest.automation.domain.job.JobDetail;
+import com.qasymphony.qtest.automation.domain.job.JobState;
+import com.qasymphony.qtest.automation.plugin.access.atm.model.BuildCommandRequest;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingRequestParserTest {
+
+  private final StreamingRequestParser requestParser = new StreamingRequestParser();
+
+  @Test
+  public void testParseBuildCommand() throws Exception {
+    BuildCommandRequest expected = createCommandRequest();
+    BuildCommandRequest actual = requestParser.parseBuildCommand(expected.toJson().toString());
+    assertCommandRequest(new BuildCommandRequest().fromJson(expected.toJson()), actual);
+  }
+
+  @Test
+  public void testParseCleanupEnvironment() throws Exception {
+    BuildCommandRequest expected = createCommandRequest();
+    String body = new JsonObject()
+      .put("command_request", expected.toJson())
+      .put("environments", new JsonObject().put("TESTNG_SUITE_FILE", "suite.xml"))
+      .toString();
+
+    Map<String, String> environmentVariables = new HashMap<>();
+    BuildCommandRequest actual = requestParser.parseCleanupEnvironment(body, environmentVariables);
+    assertCommandRequest(expected, actual);
+    assertEquals("suite.xml", environmentVariables.get("TESTNG_SUITE_FILE"));
+  }
+
+  @Test
+  public void testParseTestScript() throws Exception {
+    TestScript expected = createTestScript();
+    assertEquals(expected, requestParser.parseTestScript(expected.toJson().toString()));
+  }
+
+  private void assertCommandRequest(BuildCommandRequest expected, BuildCommandRequest actual) {
+    assertEquals(expected.getTestScript(), actual.getTestScript());
+    assertEquals(expected.getExecutionMode().getId(), actual.getExecutionMode().getId());
+    assertEquals(expected.getExecutionMode().getTemplate(), actual.getExecutionMode().getTemplate());
+    assertEquals(expected.getJobDetail().getProjectId(), actual.getJobDetail().getProjectId());
+    assertEquals(expected.getJobDetail().getStartDate(), actual.getJobDetail().getStartDate());
+    assertEquals(expected.getJobDetail().getStatus(), actual.getJobDetail().getStatus());
+    assertEquals(expected.getJobDetail().getMaterials().size(), actual.getJobDetail().getMaterials().size());
+    for (int index = 0; index < expected.getJobDetail().getMaterials().size(); index++) {
+      assertEquals(expected.getJobDetail().getMaterials().get(index).toString(),
+        actual.getJobDetail().getMaterials().get(index).toString());
+    }
+  }
+
+  private BuildCommandRequest createCommandRequest() {
+    JobDetail jobDetail = new JobDetail();
+    jobDetail.setProjectId(12L);
+    jobDetail.setStartDate(new Date(1000L));
+    jobDetail.setEndDate(new Date(2000L));
+    jobDetail.setStatus(JobState.SCHEDULED);
+    jobDetail.setMaterials(Arrays.asList(
+      new AutomationMaterial().withTestRunId(1L).withTestCaseId(2L).withAutomationContent("sample.FirstTest"),
+      new AutomationMaterial().withTestRunId(3L).withTestCaseId(4L).withAutomationContent("sample.SecondTest#test")
+    ));
+
+    CommandLineExecutionMode executionMode = new CommandLineExecutionMode("java", "java", "-ea", "testng.xml");
+    return new BuildCommandRequest()
+      .withJobDetail(jobDetail)
+      .withTestScript(createTestScript())
+      .withExecutionMode(executionMode);
+  }
+
+  private TestScript createTestScript() {
+    return new TestScript()
+      .withTestDirectory("/tmp/tests")
+      .withLibraryDirectory("/tmp/tests/lib")
+      .withIncludePattern("**/*Test.class")
+      .withExcludePattern("")
+      .withScanLibrary(true);
+  }
+}
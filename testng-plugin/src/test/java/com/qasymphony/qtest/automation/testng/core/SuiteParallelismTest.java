@@ -0,0 +1,177 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SuiteParallelismTest {
+
+  private static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+  private static final String SUITE = "<suite name=\"suite\">"
+    + "<test name=\"safe\"><classes><class name=\"sample.safe.A\"/><class name=\"sample.safe.B\"/></classes></test>"
+    + "<test name=\"unsafe\"><classes><class name=\"sample.safe.C\"/><class name=\"sample.Shared\"/></classes></test>"
+    + "</suite>";
+
+  @Test
+  public void testRunOnlyAllowlistedTestsInParallel() throws Exception {
+    Document doc = parse(SUITE);
+    new SuiteParallelism("classes", 4, 2, Arrays.asList("sample.safe.*")).apply(doc);
+
+    Element suite = (Element) doc.getElementsByTagName("suite").item(0);
+    assertFalse(suite.hasAttribute("parallel"));
+    assertEquals("2", suite.getAttribute("data-provider-thread-count"));
+
+    Element safeTest = getTest(doc, "safe");
+    assertEquals("classes", safeTest.getAttribute("parallel"));
+    assertEquals("4", safeTest.getAttribute("thread-count"));
+    assertFalse(getTest(doc, "unsafe").hasAttribute("parallel"));
+  }
+
+  @Test
+  public void testGroupClassesWhenAllClassesAllowlisted() throws Exception {
+    Document doc = parse(SUITE);
+    new SuiteParallelism("methods", 4, 4, Arrays.asList("sample.safe.*", "sample.Shared")).apply(doc);
+
+    Element suite = (Element) doc.getElementsByTagName("suite").item(0);
+    assertFalse(suite.hasAttribute("parallel"));
+    assertEquals(1, doc.getElementsByTagName("test").getLength());
+
+    Element safeTest = getTest(doc, "safe");
+    assertEquals("methods", safeTest.getAttribute("parallel"));
+    assertEquals("4", safeTest.getAttribute("thread-count"));
+    assertEquals(4, safeTest.getElementsByTagName("class").getLength());
+  }
+
+  @Test
+  public void testMergeMethodsOfGroupedClass() throws Exception {
+    Document doc = parse("<suite name=\"suite\">"
+      + "<test name=\"A#one\"><classes><class name=\"sample.A\"><methods><include name=\"one\"/></methods></class></classes></test>"
+      + "<test name=\"A#two\"><classes><class name=\"sample.A\"><methods><include name=\"two\"/></methods></class></classes></test>"
+      + "<test name=\"B#one\"><classes><class name=\"sample.B\"><methods><include name=\"one\"/></methods></class></classes></test>"
+      + "<test name=\"B\"><classes><class name=\"sample.B\"/></classes></test>"
+      + "</suite>");
+    new SuiteParallelism("classes", 4, 4, Arrays.asList("sample.*")).apply(doc);
+
+    Element test = getTest(doc, "A#one");
+    assertEquals(1, doc.getElementsByTagName("test").getLength());
+    assertEquals(2, test.getElementsByTagName("class").getLength());
+    assertEquals(2, ((Element) test.getElementsByTagName("class").item(0)).getElementsByTagName("include").getLength());
+    assertEquals(0, ((Element) test.getElementsByTagName("class").item(1)).getElementsByTagName("methods").getLength());
+  }
+
+  @Test
+  public void testWriteTestsModeOnlyOnSuite() throws Exception {
+    Document doc = parse(SUITE);
+    new SuiteParallelism("tests", 4, 4, Arrays.asList("sample.safe.*")).apply(doc);
+
+    assertFalse(((Element) doc.getElementsByTagName("suite").item(0)).hasAttribute("parallel"));
+    assertFalse(getTest(doc, "safe").hasAttribute("parallel"));
+
+    doc = parse(SUITE);
+    new SuiteParallelism("tests", 4, 4, Arrays.asList("sample.*")).apply(doc);
+
+    assertEquals("tests", ((Element) doc.getElementsByTagName("suite").item(0)).getAttribute("parallel"));
+    assertEquals(2, doc.getElementsByTagName("test").getLength());
+    assertFalse(getTest(doc, "safe").hasAttribute("parallel"));
+  }
+
+  @Test
+  public void testRunGroupedClassesConcurrently() throws Exception {
+    Document doc = parse("<suite name=\"suite\">"
+      + "<test name=\"first\"><classes><class name=\"" + FirstClass.class.getName() + "\"/></classes></test>"
+      + "<test name=\"second\"><classes><class name=\"" + SecondClass.class.getName() + "\"/></classes></test>"
+      + "</suite>");
+    new SuiteParallelism("classes", 2, 1, Arrays.asList(FirstClass.class.getName(), SecondClass.class.getName())).apply(doc);
+
+    File outputDirectory = File.createTempFile("testng", "");
+    outputDirectory.delete();
+    outputDirectory.mkdirs();
+    try {
+      File suiteFile = new File(outputDirectory, "suite.xml");
+      XmlFactories.newTransformer().transform(new DOMSource(doc), new StreamResult(suiteFile));
+
+      // both classes only pass when they meet at the barrier at the same time.
+      BARRIER.reset();
+      TestListenerAdapter results = new TestListenerAdapter();
+      TestNG testNG = new TestNG(false);
+      testNG.setVerbose(0);
+      testNG.setOutputDirectory(outputDirectory.getAbsolutePath());
+      testNG.setTestSuites(Collections.singletonList(suiteFile.getAbsolutePath()));
+      testNG.addListener(results);
+      testNG.run();
+
+      assertEquals(2, results.getPassedTests().size());
+    } finally {
+      FileUtils.deleteQuietly(outputDirectory);
+    }
+  }
+
+  @Test
+  public void testKeepSuiteWithoutAllowlist() throws Exception {
+    Document doc = parse(SUITE);
+    new SuiteParallelism("classes", 4, 4, Collections.<String>emptyList()).apply(doc);
+
+    Element suite = (Element) doc.getElementsByTagName("suite").item(0);
+    assertFalse(suite.hasAttribute("parallel"));
+    assertFalse(getTest(doc, "safe").hasAttribute("parallel"));
+    assertFalse(getTest(doc, "unsafe").hasAttribute("parallel"));
+  }
+
+  @Test
+  public void testKeepParallelOfTemplate() throws Exception {
+    Document doc = parse("<suite name=\"suite\" parallel=\"tests\" thread-count=\"2\">"
+      + "<test name=\"safe\"><classes><class name=\"sample.safe.A\"/></classes></test></suite>");
+    new SuiteParallelism("classes", 4, 4, Arrays.asList("*")).apply(doc);
+
+    Element suite = (Element) doc.getElementsByTagName("suite").item(0);
+    assertEquals("tests", suite.getAttribute("parallel"));
+    assertEquals("2", suite.getAttribute("thread-count"));
+    assertFalse(getTest(doc, "safe").hasAttribute("parallel"));
+  }
+
+  public static class FirstClass {
+    @org.testng.annotations.Test
+    public void meet() throws Exception {
+      BARRIER.await(5L, TimeUnit.SECONDS);
+    }
+  }
+
+  public static class SecondClass {
+    @org.testng.annotations.Test
+    public void meet() throws Exception {
+      BARRIER.await(5L, TimeUnit.SECONDS);
+    }
+  }
+
+  private static Document parse(String xml) throws Exception {
+    return XmlFactories.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+  }
+
+  private static Element getTest(Document doc, String name) {
+    NodeList tests = doc.getElementsByTagName("test");
+    for (int i = 0; i < tests.getLength(); i++) {
+      Element test = (Element) tests.item(i);
+      if (name.equals(test.getAttribute("name"))) return test;
+    }
+
+    throw new AssertionError("no test " + name);
+  }
+}
@@ -0,0 +1,73 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SuitePartitionerTest {
+
+  private SuitePartitioner suitePartitioner;
+
+  @Before
+  public void init() {
+    suitePartitioner = new SuitePartitioner();
+  }
+
+  @Test
+  public void testKeepClassContentsInSameShard() {
+    List<Set<String>> shards = suitePartitioner.partition(Arrays.asList(
+      "sample.A#one", "sample.B", "sample.A#two", "sample.C"
+    ), 2);
+
+    assertEquals(2, shards.size());
+    for (Set<String> shard : shards) {
+      if (shard.contains("sample.A#one")) assertTrue(shard.contains("sample.A#two"));
+    }
+  }
+
+  @Test
+  public void testShardsNeverExceedClasses() {
+    List<Set<String>> shards = suitePartitioner.partition(Arrays.asList("sample.A#one", "sample.A#two"), 8);
+
+    assertEquals(1, shards.size());
+    assertEquals(2, shards.get(0).size());
+  }
+
+  @Test
+  public void testBalanceShardsByDuration() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("sample.A", 100L);
+    durations.put("sample.B", 60L);
+    durations.put("sample.C", 50L);
+    durations.put("sample.D", 10L);
+
+    List<Set<String>> shards = suitePartitioner.partition(Arrays.asList(
+      "sample.D", "sample.C", "sample.B", "sample.A"
+    ), 2, durations);
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("sample.A", "sample.D")), shards.get(0));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("sample.B", "sample.C")), shards.get(1));
+  }
+
+  @Test
+  public void testOrderLongestFirst() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("sample.A#fast", 1L);
+    durations.put("sample.A#slow", 30L);
+    durations.put("sample.B", 10L);
+
+    Set<String> ordered = suitePartitioner.order(Arrays.asList("sample.B", "sample.A#fast", "sample.A#slow"), durations);
+
+    assertEquals(Arrays.asList("sample.A#slow", "sample.A#fast", "sample.B"), new ArrayList<>(ordered));
+  }
+}
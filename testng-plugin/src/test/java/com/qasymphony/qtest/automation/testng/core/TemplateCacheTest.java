@@ -0,0 +1,48 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+
+public class TemplateCacheTest {
+
+  private TemplateCache templateCache;
+  private File templateFile;
+
+  @Before
+  public void init() throws Exception {
+    templateCache = new TemplateCache(4);
+    templateFile = File.createTempFile("testng", ".xml");
+    FileUtils.writeStringToFile(templateFile, "<suite name=\"first\"><test name=\"t\"/></suite>");
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(templateFile);
+  }
+
+  @Test
+  public void testReturnIndependentCopy() throws Exception {
+    Document first = templateCache.get(templateFile);
+    first.getDocumentElement().removeChild(first.getDocumentElement().getFirstChild());
+
+    Document second = templateCache.get(templateFile);
+    assertEquals(1, second.getElementsByTagName("test").getLength());
+  }
+
+  @Test
+  public void testReparseModifiedTemplate() throws Exception {
+    assertEquals("first", templateCache.get(templateFile).getDocumentElement().getAttribute("name"));
+
+    FileUtils.writeStringToFile(templateFile, "<suite name=\"second-suite\"/>");
+    templateFile.setLastModified(templateFile.lastModified() + 2000L);
+
+    assertEquals("second-suite", templateCache.get(templateFile).getDocumentElement().getAttribute("name"));
+  }
+}
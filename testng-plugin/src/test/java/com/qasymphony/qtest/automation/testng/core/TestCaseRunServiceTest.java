@@ -1,11 +1,18 @@
 package com.qasymphony.qtest.automation.testng.core;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class TestCaseRunServiceTest {
   
   private TestCaseRunService testCaseRunService;
@@ -28,4 +35,23 @@ public class TestCaseRunServiceTest {
 //  testCaseRunService.generateTestNGXml(testRuns, "C:\\Users\\thongmgnguyen\\Desktop\\xml");
     
   }
+
+  @Test
+  public void testRemoveListeners() throws Exception {
+    File suiteFile = File.createTempFile("suite", ".xml");
+    try {
+      FileUtils.writeStringToFile(suiteFile, "<suite name=\"demo\"><listeners>"
+        + "<listener class-name=\"sample.Transformer\"/><listener class-name=\"sample.Reporter\"/>"
+        + "</listeners><test name=\"demo\"><classes><class name=\"sample.Demo\"/></classes></test></suite>", "UTF-8");
+
+      assertEquals(Arrays.asList("sample.Transformer", "sample.Reporter"), testCaseRunService.removeListeners(suiteFile.getPath()));
+
+      String suite = FileUtils.readFileToString(suiteFile, "UTF-8");
+      assertFalse(suite, suite.contains("listener"));
+      assertTrue(suite, suite.contains("sample.Demo"));
+      assertTrue(testCaseRunService.removeListeners(suiteFile.getPath()).isEmpty());
+    } finally {
+      FileUtils.deleteQuietly(suiteFile);
+    }
+  }
 }
@@ -0,0 +1,73 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestImpactSelectorTest {
+
+  private static final String CLASS_NAME = SuitePartitionerTest.class.getName();
+
+  private File testDirectory;
+  private File journalDirectory;
+  private File classFile;
+  private TestImpactSelector impactSelector;
+
+  @Before
+  public void init() throws Exception {
+    testDirectory = File.createTempFile("classes", "");
+    testDirectory.delete();
+    journalDirectory = new File(testDirectory, "journal");
+    journalDirectory.mkdirs();
+
+    classFile = new File(testDirectory, "target/" + CLASS_NAME.replace('.', '/') + ".class");
+    try (InputStream is = SuitePartitionerTest.class.getResourceAsStream("SuitePartitionerTest.class")) {
+      FileUtils.copyInputStreamToFile(is, classFile);
+    }
+
+    impactSelector = new TestImpactSelector(new File(testDirectory, "class-digests.properties"));
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(testDirectory);
+  }
+
+  @Test
+  public void testSelectOnlyChangedClasses() throws Exception {
+    List<String> contents = Arrays.asList(CLASS_NAME, "sample.Missing");
+    assertEquals(2, select(contents).size());
+
+    FileUtils.writeStringToFile(new File(journalDirectory, "job.journal"), CLASS_NAME + "#testOrderLongestFirst\tPASS\t0\t1\n");
+    impactSelector.record(journalDirectory);
+    assertEquals(Collections.singleton("sample.Missing"), select(contents));
+
+    FileUtils.writeByteArrayToFile(classFile, new byte[] { 1 }, true);
+    assertTrue(select(contents).contains(CLASS_NAME));
+  }
+
+  @Test
+  public void testKeepFailedClassesSelected() throws Exception {
+    List<String> contents = Collections.singletonList(CLASS_NAME);
+    select(contents);
+
+    FileUtils.writeStringToFile(new File(journalDirectory, "job.journal"), CLASS_NAME + "#testOrderLongestFirst\tFAIL\t0\t1\n");
+    impactSelector.record(journalDirectory);
+    assertEquals(1, select(contents).size());
+  }
+
+  private Set<String> select(List<String> contents) {
+    return impactSelector.select(testDirectory, contents, Collections.<String>emptyList(), journalDirectory);
+  }
+}
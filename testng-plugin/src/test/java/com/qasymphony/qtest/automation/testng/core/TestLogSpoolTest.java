@@ -0,0 +1,102 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLogSpoolTest {
+
+  private File spoolRoot;
+  private TestLogSpool testLogSpool;
+
+  @Before
+  public void init() throws Exception {
+    spoolRoot = File.createTempFile("spool", "");
+    spoolRoot.delete();
+    testLogSpool = new TestLogSpool(spoolRoot);
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(spoolRoot);
+  }
+
+  @Test
+  public void testReadBatchesFromCursor() throws Exception {
+    File spoolDirectory = testLogSpool.createSpoolDirectory(1L);
+    File firstSpool = new File(spoolDirectory, "a.spool");
+    FileUtils.writeStringToFile(firstSpool, "{\"id\":1}\n{\"id\":2}\n{\"id\":3", "UTF-8");
+    FileUtils.writeStringToFile(new File(spoolDirectory, "b.spool"), "{\"id\":4}\n", "UTF-8");
+
+    TestLogSpool.Batch batch = testLogSpool.read(1L, "", 3, 1024);
+    assertEquals(Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":4}"), batch.getTestLogs());
+    assertFalse(batch.isCompleted());
+
+    // the partial line is returned once it is complete.
+    FileUtils.writeStringToFile(firstSpool, "}\n", "UTF-8", true);
+    batch = testLogSpool.read(1L, batch.getCursor(), 1, 1024);
+    assertEquals(Arrays.asList("{\"id\":3}"), batch.getTestLogs());
+
+    testLogSpool.complete(1L);
+    batch = testLogSpool.read(1L, batch.getCursor(), 10, 1024);
+    assertTrue(batch.getTestLogs().isEmpty());
+    assertTrue(batch.isCompleted());
+    assertFalse(spoolDirectory.exists());
+  }
+
+  @Test
+  public void testKeepSpoolUntilFinalCursorAcknowledged() throws Exception {
+    File spoolDirectory = testLogSpool.createSpoolDirectory(4L);
+    FileUtils.writeStringToFile(new File(spoolDirectory, "a.spool"), "{\"id\":1}\n", "UTF-8");
+    testLogSpool.complete(4L);
+
+    TestLogSpool.Batch lastBatch = testLogSpool.read(4L, "", 10, 1024);
+    assertTrue(lastBatch.isCompleted());
+    assertTrue(spoolDirectory.exists());
+
+    // the response of the last batch is lost, the agent pulls with the same cursor.
+    TestLogSpool.Batch retriedBatch = testLogSpool.read(4L, "", 10, 1024);
+    assertEquals(lastBatch.getTestLogs(), retriedBatch.getTestLogs());
+    assertEquals(lastBatch.getCursor(), retriedBatch.getCursor());
+
+    TestLogSpool.Batch acknowledged = testLogSpool.read(4L, retriedBatch.getCursor(), 10, 1024);
+    assertTrue(acknowledged.getTestLogs().isEmpty());
+    assertTrue(acknowledged.isCompleted());
+    assertFalse(spoolDirectory.exists());
+  }
+
+  @Test
+  public void testLimitBatchBytes() throws Exception {
+    File spoolDirectory = testLogSpool.createSpoolDirectory(2L);
+    FileUtils.writeStringToFile(new File(spoolDirectory, "a.spool"), "{\"id\":1}\n{\"id\":2}\n", "UTF-8");
+    testLogSpool.complete(2L);
+
+    TestLogSpool.Batch batch = testLogSpool.read(2L, null, 10, 1);
+    assertEquals(Arrays.asList("{\"id\":1}"), batch.getTestLogs());
+    assertFalse(batch.isCompleted());
+
+    batch = testLogSpool.read(2L, batch.getCursor(), 10, 1);
+    assertEquals(Arrays.asList("{\"id\":2}"), batch.getTestLogs());
+    assertTrue(batch.isCompleted());
+  }
+
+  @Test
+  public void testReadLatestProgress() throws Exception {
+    File spoolDirectory = testLogSpool.createSpoolDirectory(3L);
+    FileUtils.writeStringToFile(new File(spoolDirectory, "a.spool"), "{\"id\":1}\n", "UTF-8");
+    FileUtils.writeStringToFile(new File(spoolDirectory, "a.progress"), "{\"completed\":1}", "UTF-8");
+    FileUtils.writeStringToFile(new File(spoolDirectory, "b.progress.tmp"), "{\"completed\":", "UTF-8");
+
+    TestLogSpool.Batch batch = testLogSpool.read(3L, null, 10, 1024);
+    assertEquals(Arrays.asList("{\"id\":1}"), batch.getTestLogs());
+    assertEquals(Arrays.asList("{\"completed\":1}"), batch.getProgress());
+  }
+}
@@ -0,0 +1,82 @@
+package com.qasymphony.qtest.automation.testng.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestResultStoreTest {
+
+  private File journalDirectory;
+  private File storeFile;
+
+  @Before
+  public void init() throws Exception {
+    journalDirectory = File.createTempFile("journal", "");
+    journalDirectory.delete();
+    journalDirectory.mkdirs();
+    storeFile = File.createTempFile("results", ".properties");
+    storeFile.delete();
+  }
+
+  @After
+  public void destroy() {
+    FileUtils.deleteQuietly(journalDirectory);
+    FileUtils.deleteQuietly(storeFile);
+  }
+
+  @Test
+  public void testSelectFailedMethodsOfContents() throws Exception {
+    FileUtils.writeStringToFile(new File(journalDirectory, "first.journal"),
+      "sample.A#one\tPASS\t0\t1\n"
+      + "sample.A#two\tFAIL\t0\t1\n"
+      + "sample.A#two\tPASS\t0\t1\n"
+      + "sample.B#one\tSKIP\t0\t1\n"
+      + "sample.C#one\tFAIL\t0\t1\n");
+    new TestResultStore(storeFile).record(journalDirectory);
+
+    TestResultStore resultStore = new TestResultStore(storeFile);
+    assertEquals(
+      new LinkedHashSet<>(Arrays.asList("sample.A#two", "sample.B#one")),
+      resultStore.getFailed(Arrays.asList("sample.A", "sample.B#one"))
+    );
+  }
+
+  @Test
+  public void testSelectFailedMethodsOfRecordedResults() throws Exception {
+    FileUtils.writeStringToFile(new File(journalDirectory, "first.journal"),
+      "sample.A#one\tPASS\t0\t1\n"
+      + "sample.AB#one\tFAIL\t0\t1\n");
+    TestResultStore resultStore = new TestResultStore(storeFile);
+    assertEquals(0, resultStore.getFailed(Arrays.asList("sample.A")).size());
+
+    resultStore.record(journalDirectory);
+    assertEquals(0, resultStore.getFailed(Arrays.asList("sample.A", "sample.A#one", "sample.C")).size());
+    assertEquals(
+      new LinkedHashSet<>(Arrays.asList("sample.AB#one")),
+      resultStore.getFailed(Arrays.asList("sample.AB"))
+    );
+  }
+
+  @Test
+  public void testKeepLastResultOfMethodsNotRunAgain() throws Exception {
+    File journal = new File(journalDirectory, "first.journal");
+    FileUtils.writeStringToFile(journal, "sample.A#one\tFAIL\t0\t1\nsample.A#two\tFAIL\t0\t1\n");
+    TestResultStore resultStore = new TestResultStore(storeFile);
+    resultStore.record(journalDirectory);
+
+    FileUtils.writeStringToFile(journal, "sample.A#one\tPASS\t0\t1\n");
+    resultStore.record(journalDirectory);
+
+    assertEquals(
+      new LinkedHashSet<>(Arrays.asList("sample.A#two")),
+      resultStore.getFailed(Arrays.asList("sample.A"))
+    );
+  }
+}